@@ -2,207 +2,236 @@ package com.sail.aws;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.apigateway.ApiGatewayAsyncClient;
 import software.amazon.awssdk.services.apigateway.ApiGatewayClient;
 import software.amazon.awssdk.services.apigateway.model.*;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
 
 @Service
 public class ApiGatewayService {
 
+    private static final String SERVICE_NAME = "ApiGateway";
+
     private final ApiGatewayClient apiGatewayClient;
+    private final ApiGatewayAsyncClient apiGatewayAsyncClient;
+    private final AwsRateLimiter rateLimiter;
     private final String region;
     private final String apiNamePrefix;
+    private final String cacheSizeGb;
+    private final int cacheTtlSeconds;
 
     public ApiGatewayService(ApiGatewayClient apiGatewayClient,
+                             ApiGatewayAsyncClient apiGatewayAsyncClient,
+                             AwsRateLimiter rateLimiter,
                              @Value("${aws.region}") String region,
-                             @Value("${aws.api.gateway.name.prefix}") String apiNamePrefix) {
+                             @Value("${aws.api.gateway.name.prefix}") String apiNamePrefix,
+                             @Value("${sail.api.cache.size.gb:0.5}") String cacheSizeGb,
+                             @Value("${sail.api.cache.ttl.seconds:300}") int cacheTtlSeconds) {
         this.apiGatewayClient = apiGatewayClient;
+        this.apiGatewayAsyncClient = apiGatewayAsyncClient;
+        this.rateLimiter = rateLimiter;
         this.region = region;
         this.apiNamePrefix = apiNamePrefix;
+        this.cacheSizeGb = cacheSizeGb;
+        this.cacheTtlSeconds = cacheTtlSeconds;
+    }
+
+    /**
+     * The same service against another region's clients (multi-region deploys).
+     */
+    public ApiGatewayService forRegion(String regionName, ApiGatewayClient regionalClient,
+                                       ApiGatewayAsyncClient regionalAsyncClient) {
+        return new ApiGatewayService(regionalClient, regionalAsyncClient, rateLimiter, regionName, apiNamePrefix,
+                cacheSizeGb, cacheTtlSeconds);
+    }
+
+    public String getApiNameForProject(String projectId) {
+        return apiNamePrefix + projectId;
     }
 
-    public String createRestApi(String apiName) {
+    public boolean restApiExists(String restApiId) {
         try {
-            CreateRestApiRequest createRequest = CreateRestApiRequest.builder()
-                    .name(apiName)
-                    .description("SAIL-generated API for Spring Boot application")
-                    .endpointConfiguration(EndpointConfiguration.builder()
-                            .types(EndpointType.REGIONAL)
-                            .build())
-                    .build();
-
-            CreateRestApiResponse response = apiGatewayClient.createRestApi(createRequest);
-            return response.id();
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to create API Gateway: " + e.getMessage(), e);
+            apiGatewayClient.getRestApi(GetRestApiRequest.builder().restApiId(restApiId).build());
+            return true;
+        } catch (NotFoundException e) {
+            return false;
         }
     }
 
-    public String getApiUrl(String apiId) {
-        return String.format("https://%s.execute-api.%s.amazonaws.com/", apiId, region);
+    public String getStageUrl(String restApiId, String stageName) {
+        return String.format("https://%s.execute-api.%s.amazonaws.com/%s",
+                restApiId, region, stageName);
     }
 
-    public String generateApiName() {
-        return apiNamePrefix + System.currentTimeMillis();
+    // ---------- Async variants used by the deploy graph ----------
+
+    /**
+     * Creates a REST API from an OpenAPI document in a single call; returns its id.
+     */
+    public CompletableFuture<String> importRestApiAsync(String openApiDefinition) {
+        return send("ImportRestApi", () -> apiGatewayAsyncClient.importRestApi(ImportRestApiRequest.builder()
+                        .body(SdkBytes.fromUtf8String(openApiDefinition))
+                        .parameters(Map.of("endpointConfigurationTypes", "REGIONAL"))
+                        .failOnWarnings(true)
+                        .build()))
+                .thenApply(ImportRestApiResponse::id);
     }
-    
-    public String setupLambdaProxy(String restApiId, String functionArn, String stageName) {
-        // 1. Find the root resource ("/")
-        GetResourcesResponse resources = apiGatewayClient.getResources(
-                GetResourcesRequest.builder()
+
+    /**
+     * Replaces the resources, methods and integrations of an existing REST API with the
+     * OpenAPI document in a single call.
+     */
+    public CompletableFuture<Void> putRestApiAsync(String restApiId, String openApiDefinition) {
+        return send("PutRestApi", () -> apiGatewayAsyncClient.putRestApi(PutRestApiRequest.builder()
                         .restApiId(restApiId)
-                        .build()
-        );
-
-        String rootId = resources.items().stream()
-                .filter(r -> "/".equals(r.path()))
-                .findFirst()
-                .orElseThrow(() -> new RuntimeException("Root resource not found"))
-                .id();
-
-        // 2. Create resource {proxy+}
-        CreateResourceResponse proxyResource = apiGatewayClient.createResource(
-                CreateResourceRequest.builder()
+                        .mode(PutMode.OVERWRITE)
+                        .body(SdkBytes.fromUtf8String(openApiDefinition))
+                        .failOnWarnings(true)
+                        .build()))
+                .thenApply(response -> null);
+    }
+
+    /**
+     * Merges the document into an existing API: its paths are added or replaced, every
+     * other resource of the API is left as it is.
+     */
+    public CompletableFuture<Void> mergeRestApiAsync(String restApiId, String openApiDefinition) {
+        return send("PutRestApi", () -> apiGatewayAsyncClient.putRestApi(PutRestApiRequest.builder()
                         .restApiId(restApiId)
-                        .parentId(rootId)
-                        .pathPart("{proxy+}")
-                        .build()
-        );
-        String proxyResourceId = proxyResource.id();
-
-        // 3. Create ANY method on {proxy+}
-        String httpMethod = "ANY";
-        apiGatewayClient.putMethod(
-                PutMethodRequest.builder()
+                        .mode(PutMode.MERGE)
+                        .body(SdkBytes.fromUtf8String(openApiDefinition))
+                        .failOnWarnings(true)
+                        .build()))
+                .thenApply(response -> null);
+    }
+
+    /**
+     * Every resource of the API, following the pages of GetResources.
+     */
+    public CompletableFuture<List<Resource>> getResourcesAsync(String restApiId) {
+        return getResourcesAsync(restApiId, null, new ArrayList<>());
+    }
+
+    private CompletableFuture<List<Resource>> getResourcesAsync(String restApiId, String position,
+                                                                List<Resource> resources) {
+        return send("GetResources", () -> apiGatewayAsyncClient.getResources(GetResourcesRequest.builder()
                         .restApiId(restApiId)
-                        .resourceId(proxyResourceId)
-                        .httpMethod(httpMethod)
-                        .authorizationType("NONE")
-                        .build()
-        );
-
-        // 4. Set Lambda proxy integration
-        String uri = String.format("arn:aws:apigateway:%s:lambda:path/2015-03-31/functions/%s/invocations",
-                region, functionArn);
-
-        apiGatewayClient.putIntegration(
-                PutIntegrationRequest.builder()
+                        .limit(500)
+                        .position(position)
+                        .build()))
+                .thenCompose(page -> {
+                    resources.addAll(page.items());
+                    return page.position() != null
+                            ? getResourcesAsync(restApiId, page.position(), resources)
+                            : CompletableFuture.completedFuture(resources);
+                });
+    }
+
+    /**
+     * Deletes the resource together with its child resources and their methods; a missing
+     * resource is ignored.
+     */
+    public CompletableFuture<Void> deleteResourceAsync(String restApiId, String resourceId) {
+        return send("DeleteResource", () -> apiGatewayAsyncClient.deleteResource(DeleteResourceRequest.builder()
                         .restApiId(restApiId)
-                        .resourceId(proxyResourceId)
-                        .httpMethod(httpMethod)
-                        .type(IntegrationType.AWS_PROXY)
-                        .integrationHttpMethod("POST")
-                        .uri(uri)
-                        .build()
-        );
-
-        // ========== NEW: ENABLE CORS ==========
-        // 5. Enable CORS on {proxy+} resource
-        enableCorsOnResource(restApiId, proxyResourceId);
-        
-        // 6. Enable CORS on root resource (for direct endpoint calls)
-        enableCorsOnResource(restApiId, rootId);
-        // ======================================
-
-        // 7. Deploy API to a stage (previously step 5)
-        apiGatewayClient.createDeployment(
-                CreateDeploymentRequest.builder()
+                        .resourceId(resourceId)
+                        .build()))
+                .handle((response, error) -> {
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    if (cause != null && !(cause instanceof NotFoundException)) {
+                        throw new CompletionException(cause);
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * Deploys the API to the stage and returns the stage base URL.
+     */
+    public CompletableFuture<String> deployStageAsync(String restApiId, String stageName) {
+        return send("CreateDeployment", () -> apiGatewayAsyncClient.createDeployment(CreateDeploymentRequest.builder()
                         .restApiId(restApiId)
                         .stageName(stageName)
-                        .build()
-        );
+                        .build()))
+                .thenApply(deployment -> getStageUrl(restApiId, stageName));
+    }
 
-        // 8. Return stage base URL (previously step 6)
-        return String.format("https://%s.execute-api.%s.amazonaws.com/%s",
-                restApiId, region, stageName);
+    /**
+     * Deletes the REST API with its stages; a missing API is ignored.
+     */
+    public CompletableFuture<Void> deleteRestApiAsync(String restApiId) {
+        return send("DeleteRestApi", () -> apiGatewayAsyncClient.deleteRestApi(DeleteRestApiRequest.builder()
+                        .restApiId(restApiId)
+                        .build()))
+                .handle((response, error) -> {
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    if (cause != null && !(cause instanceof NotFoundException)) {
+                        throw new CompletionException(cause);
+                    }
+                    return null;
+                });
     }
 
     /**
-     * NEW METHOD: Enable CORS on a specific API Gateway resource
-     * This adds OPTIONS method to handle preflight requests from browsers
+     * Enables the stage cache cluster and turns caching on (with the configured TTL) for the
+     * GET method of each given resource path only; every other method stays uncached.
      */
-    private void enableCorsOnResource(String restApiId, String resourceId) {
-        try {
-            System.out.println("Enabling CORS on resource: " + resourceId);
-            
-            // Create OPTIONS method for CORS preflight requests
-            apiGatewayClient.putMethod(
-                    PutMethodRequest.builder()
-                            .restApiId(restApiId)
-                            .resourceId(resourceId)
-                            .httpMethod("OPTIONS")
-                            .authorizationType("NONE")
-                            .build()
-            );
-
-            // Mock integration for OPTIONS (returns 200 immediately)
-            Map<String, String> requestTemplates = new HashMap<>();
-            requestTemplates.put("application/json", "{\"statusCode\": 200}");
-            
-            apiGatewayClient.putIntegration(
-                    PutIntegrationRequest.builder()
-                            .restApiId(restApiId)
-                            .resourceId(resourceId)
-                            .httpMethod("OPTIONS")
-                            .type(IntegrationType.MOCK)
-                            .requestTemplates(requestTemplates)
-                            .build()
-            );
-
-            // Configure method response for OPTIONS with CORS headers
-            Map<String, Boolean> methodResponseParams = new HashMap<>();
-            methodResponseParams.put("method.response.header.Access-Control-Allow-Headers", false);
-            methodResponseParams.put("method.response.header.Access-Control-Allow-Methods", false);
-            methodResponseParams.put("method.response.header.Access-Control-Allow-Origin", false);
-            
-            apiGatewayClient.putMethodResponse(
-                    PutMethodResponseRequest.builder()
-                            .restApiId(restApiId)
-                            .resourceId(resourceId)
-                            .httpMethod("OPTIONS")
-                            .statusCode("200")
-                            .responseParameters(methodResponseParams)
-                            .build()
-            );
-
-            // Configure integration response with actual CORS header values
-            Map<String, String> integrationResponseParams = new HashMap<>();
-            integrationResponseParams.put("method.response.header.Access-Control-Allow-Headers",
-                    "'Content-Type,X-Amz-Date,Authorization,X-Api-Key,X-Amz-Security-Token'");
-            integrationResponseParams.put("method.response.header.Access-Control-Allow-Methods",
-                    "'GET,POST,PUT,DELETE,OPTIONS'");
-            integrationResponseParams.put("method.response.header.Access-Control-Allow-Origin",
-                    "'*'");
-            
-            Map<String, String> responseTemplates = new HashMap<>();
-            responseTemplates.put("application/json", "");
-            
-            apiGatewayClient.putIntegrationResponse(
-                    PutIntegrationResponseRequest.builder()
-                            .restApiId(restApiId)
-                            .resourceId(resourceId)
-                            .httpMethod("OPTIONS")
-                            .statusCode("200")
-                            .responseParameters(integrationResponseParams)
-                            .responseTemplates(responseTemplates)
-                            .build()
-            );
-
-            System.out.println("✓ CORS enabled successfully on resource: " + resourceId);
-
-        } catch (ConflictException e) {
-            // OPTIONS method already exists, which is fine
-            System.out.println("✓ CORS already configured on resource: " + resourceId);
-        } catch (Exception e) {
-            // Log warning but don't fail the deployment
-            System.err.println("⚠ Warning: Could not enable CORS on resource " + resourceId + ": " + e.getMessage());
-            // Don't throw exception - CORS is a nice-to-have, shouldn't break deployment
+    public CompletableFuture<Void> enableStageCacheAsync(String restApiId, String stageName, List<String> cachedPaths) {
+        List<PatchOperation> operations = new ArrayList<>();
+        operations.add(replace("/cacheClusterEnabled", "true"));
+        operations.add(replace("/cacheClusterSize", cacheSizeGb));
+        // Stage default: API Gateway would otherwise cache every GET once the cluster exists
+        operations.add(replace("/*/*/caching/enabled", "false"));
+        for (String path : cachedPaths) {
+            String methodPath = "/" + path.replace("~", "~0").replace("/", "~1") + "/GET";
+            operations.add(replace(methodPath + "/caching/enabled", "true"));
+            operations.add(replace(methodPath + "/caching/ttlInSeconds", String.valueOf(cacheTtlSeconds)));
         }
+
+        return send("UpdateStage", () -> apiGatewayAsyncClient.updateStage(UpdateStageRequest.builder()
+                        .restApiId(restApiId)
+                        .stageName(stageName)
+                        .patchOperations(operations)
+                        .build()))
+                .thenAccept(response -> System.out.println("Stage cache (" + cacheSizeGb + " GB, TTL "
+                        + cacheTtlSeconds + " s) enabled for " + cachedPaths.size() + " GET routes on "
+                        + restApiId + "/" + stageName));
+    }
+
+    /**
+     * Deletes the stage cache cluster (billed per hour while it exists) and turns method caching off.
+     */
+    public CompletableFuture<Void> disableStageCacheAsync(String restApiId, String stageName) {
+        return send("UpdateStage", () -> apiGatewayAsyncClient.updateStage(UpdateStageRequest.builder()
+                        .restApiId(restApiId)
+                        .stageName(stageName)
+                        .patchOperations(List.of(replace("/cacheClusterEnabled", "false"),
+                                replace("/*/*/caching/enabled", "false")))
+                        .build()))
+                .thenAccept(response -> System.out.println("Stage cache disabled on " + restApiId + "/" + stageName));
     }
 
-    // Note: Full API Gateway setup with resources, methods, and integration
-    // requires multiple steps. This is a simplified version.
-    // For production, consider using AWS SAM or CloudFormation.
-}
\ No newline at end of file
+    /**
+     * Async calls wait for their rate-limit token without blocking a thread.
+     */
+    private <T> CompletableFuture<T> send(String operation, Supplier<CompletableFuture<T>> call) {
+        return rateLimiter.whenPermitted(region, SERVICE_NAME, operation, call);
+    }
+
+    // ---------- Request builders ----------
+
+    private PatchOperation replace(String path, String value) {
+        return PatchOperation.builder()
+                .op(Op.REPLACE)
+                .path(path)
+                .value(value)
+                .build();
+    }
+}
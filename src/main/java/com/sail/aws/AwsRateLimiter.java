@@ -0,0 +1,171 @@
+package com.sail.aws;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.awscore.AwsExecutionAttribute;
+import software.amazon.awssdk.core.ClientType;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Client-side rate limiter for AWS control-plane calls, registered on every SDK client.
+ *
+ * Each service operation (e.g. ApiGateway.CreateDeployment) has its own token bucket per
+ * region (AWS quotas are regional), refilled at the configured rate for that operation,
+ * else for its service, else the default. Concurrent deploys queue up instead of being
+ * throttled:
+ *  - sync clients: every attempt, retries included, waits for a token before it is sent
+ *  - async clients: callers send through whenPermitted, which chains the call on a timer
+ *    instead of blocking a thread; the SDK's own retries are paced by its jittered backoff
+ *
+ * The rate adapts: a throttled response (429, or 503 SlowDown from S3) halves the
+ * operation's rate, down to a tenth of its limit, and each success raises it again by a
+ * tenth of the limit.
+ */
+@Component
+public class AwsRateLimiter implements ExecutionInterceptor {
+
+    private final Map<String, Double> limits = new HashMap<>();
+    private final double defaultLimit;
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "aws-rate-limiter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param limits comma-separated Service=rate or Service.Operation=rate pairs (requests per second)
+     */
+    public AwsRateLimiter(@Value("${sail.aws.rate.limits:}") String limits,
+                          @Value("${sail.aws.rate.default:10}") double defaultLimit) {
+        this.defaultLimit = defaultLimit;
+        for (String entry : limits.split(",")) {
+            String[] pair = entry.split("=");
+            if (pair.length == 2 && !pair[0].isBlank()) {
+                this.limits.put(pair[0].trim(), Double.parseDouble(pair[1].trim()));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Sends a call on an async client once the operation has a token. A caller that has to
+     * wait gets a future right away; the call is made from a timer when the token is due, so
+     * no thread (deploy step, SDK completion or retry thread) sleeps in the meantime.
+     */
+    public <T> CompletableFuture<T> whenPermitted(String region, String service, String operation,
+                                                  Supplier<CompletableFuture<T>> call) {
+        long waitNanos = bucket(region, service, service + "." + operation).reserve();
+        if (waitNanos <= 0) {
+            return call.get();
+        }
+        CompletableFuture<Void> permit = new CompletableFuture<>();
+        scheduler.schedule(() -> permit.complete(null), waitNanos, TimeUnit.NANOSECONDS);
+        return permit.thenCompose(ignored -> call.get());
+    }
+
+    @Override
+    public void beforeTransmission(Context.BeforeTransmission context, ExecutionAttributes executionAttributes) {
+        // Async calls took their token in whenPermitted; sleeping here would block SDK threads
+        if (executionAttributes.getAttribute(SdkExecutionAttribute.CLIENT_TYPE) != ClientType.ASYNC) {
+            bucket(executionAttributes).acquire();
+        }
+    }
+
+    @Override
+    public void afterTransmission(Context.AfterTransmission context, ExecutionAttributes executionAttributes) {
+        int status = context.httpResponse().statusCode();
+        TokenBucket bucket = bucket(executionAttributes);
+        if (isThrottled(executionAttributes.getAttribute(SdkExecutionAttribute.SERVICE_NAME), status)) {
+            bucket.onThrottled();
+        } else if (status < 400) {
+            bucket.onSuccess();
+        }
+    }
+
+    /**
+     * 429 from any service; 503 only means "slow down" for S3, elsewhere it is an outage.
+     */
+    static boolean isThrottled(String service, int status) {
+        return status == 429 || (status == 503 && "S3".equals(service));
+    }
+
+    private TokenBucket bucket(ExecutionAttributes executionAttributes) {
+        String service = executionAttributes.getAttribute(SdkExecutionAttribute.SERVICE_NAME);
+        String operation = service + "." + executionAttributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME);
+        String region = String.valueOf(executionAttributes.getAttribute(AwsExecutionAttribute.AWS_REGION));
+        return bucket(region, service, operation);
+    }
+
+    private TokenBucket bucket(String region, String service, String operation) {
+        return buckets.computeIfAbsent(region + "/" + operation, key -> new TokenBucket(key,
+                limits.getOrDefault(operation, limits.getOrDefault(service, defaultLimit))));
+    }
+
+    /**
+     * Token bucket holding at most one second of requests. Tokens may go negative: a caller
+     * reserves the next token and waits until it is due, so waiting callers are served in order.
+     */
+    static class TokenBucket {
+        private final String name;
+        private final double maxRate;
+        private final double minRate;
+        private double rate;
+        private double tokens;
+        private long lastRefillNanos = System.nanoTime();
+
+        TokenBucket(String name, double maxRate) {
+            this.name = name;
+            this.maxRate = maxRate;
+            this.minRate = maxRate / 10;
+            this.rate = maxRate;
+            this.tokens = Math.max(1, maxRate);
+        }
+
+        void acquire() {
+            long waitNanos = reserve();
+            if (waitNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for AWS rate limit on " + name, e);
+                }
+            }
+        }
+
+        synchronized long reserve() {
+            long now = System.nanoTime();
+            tokens = Math.min(Math.max(1, rate), tokens + (now - lastRefillNanos) / 1e9 * rate);
+            lastRefillNanos = now;
+            tokens -= 1;
+            return tokens >= 0 ? 0 : (long) (-tokens / rate * 1e9);
+        }
+
+        synchronized void onThrottled() {
+            rate = Math.max(minRate, rate / 2);
+            System.out.println("AWS rate limit: " + name + " throttled, now " + String.format("%.2f", rate) + "/s");
+        }
+
+        synchronized void onSuccess() {
+            rate = Math.min(maxRate, rate + maxRate / 10);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.sail.aws;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.apigatewayv2.ApiGatewayV2AsyncClient;
+import software.amazon.awssdk.services.apigatewayv2.ApiGatewayV2Client;
+import software.amazon.awssdk.services.apigatewayv2.model.Cors;
+import software.amazon.awssdk.services.apigatewayv2.model.CreateApiRequest;
+import software.amazon.awssdk.services.apigatewayv2.model.DeleteApiRequest;
+import software.amazon.awssdk.services.apigatewayv2.model.GetApiRequest;
+import software.amazon.awssdk.services.apigatewayv2.model.NotFoundException;
+import software.amazon.awssdk.services.apigatewayv2.model.ProtocolType;
+import software.amazon.awssdk.services.apigatewayv2.model.UpdateApiRequest;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * API Gateway HTTP APIs (v2) in front of a function.
+ *
+ * Uses quick create: one CreateApi call with the function as target creates the API, a
+ * $default route with a Lambda proxy integration (payload format 2.0) and an auto-deployed
+ * $default stage. CORS is configured on the API itself, so there are no OPTIONS methods.
+ */
+@Service
+public class HttpApiService {
+
+    private static final List<String> ALLOW_HEADERS = List.of("Content-Type", "X-Amz-Date", "Authorization",
+            "X-Api-Key", "X-Amz-Security-Token");
+    private static final String SERVICE_NAME = "ApiGatewayV2";
+
+    private final ApiGatewayV2Client apiGatewayV2Client;
+    private final ApiGatewayV2AsyncClient apiGatewayV2AsyncClient;
+    private final AwsRateLimiter rateLimiter;
+    private final String region;
+
+    public HttpApiService(ApiGatewayV2Client apiGatewayV2Client,
+                          ApiGatewayV2AsyncClient apiGatewayV2AsyncClient,
+                          AwsRateLimiter rateLimiter,
+                          @Value("${aws.region}") String region) {
+        this.apiGatewayV2Client = apiGatewayV2Client;
+        this.apiGatewayV2AsyncClient = apiGatewayV2AsyncClient;
+        this.rateLimiter = rateLimiter;
+        this.region = region;
+    }
+
+    /**
+     * The same service against another region's client (multi-region deploys).
+     */
+    public HttpApiService forRegion(String regionName, ApiGatewayV2Client regionalClient,
+                                    ApiGatewayV2AsyncClient regionalAsyncClient) {
+        return new HttpApiService(regionalClient, regionalAsyncClient, rateLimiter, regionName);
+    }
+
+    /**
+     * Creates an HTTP API that proxies every request to the given function (or alias) ARN.
+     * Returns the API id.
+     */
+    public CompletableFuture<String> createHttpApiAsync(String apiName, String functionArn) {
+        return send("CreateApi", () -> apiGatewayV2AsyncClient.createApi(CreateApiRequest.builder()
+                        .name(apiName)
+                        .description("SAIL-generated HTTP API for Spring Boot application")
+                        .protocolType(ProtocolType.HTTP)
+                        .target(functionArn)
+                        .corsConfiguration(corsConfiguration())
+                        .build()))
+                .thenApply(response -> {
+                    System.out.println("Created HTTP API " + response.apiId() + " at " + response.apiEndpoint());
+                    return response.apiId();
+                });
+    }
+
+    /**
+     * Points the quick-create integration of an existing HTTP API at another function (or alias) ARN.
+     */
+    public CompletableFuture<Void> updateTargetAsync(String apiId, String functionArn) {
+        return send("UpdateApi", () -> apiGatewayV2AsyncClient.updateApi(UpdateApiRequest.builder()
+                        .apiId(apiId)
+                        .target(functionArn)
+                        .corsConfiguration(corsConfiguration())
+                        .build()))
+                .thenAccept(response -> System.out.println("Updated HTTP API " + apiId + " target to " + functionArn));
+    }
+
+    public boolean httpApiExists(String apiId) {
+        try {
+            apiGatewayV2Client.getApi(GetApiRequest.builder().apiId(apiId).build());
+            return true;
+        } catch (NotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Deletes the HTTP API with its routes and stage; a missing API is ignored.
+     */
+    public CompletableFuture<Void> deleteHttpApiAsync(String apiId) {
+        return send("DeleteApi", () -> apiGatewayV2AsyncClient.deleteApi(DeleteApiRequest.builder().apiId(apiId).build()))
+                .handle((response, error) -> {
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    if (cause != null && !(cause instanceof NotFoundException)) {
+                        throw new CompletionException(cause);
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * Invoke URL of the auto-deployed $default stage.
+     */
+    public String getApiUrl(String apiId) {
+        return String.format("https://%s.execute-api.%s.amazonaws.com/", apiId, region);
+    }
+
+    /**
+     * Calls wait for their rate-limit token without blocking a thread.
+     */
+    private <T> CompletableFuture<T> send(String operation, Supplier<CompletableFuture<T>> call) {
+        return rateLimiter.whenPermitted(region, SERVICE_NAME, operation, call);
+    }
+
+    private Cors corsConfiguration() {
+        return Cors.builder()
+                .allowOrigins(List.of("*"))
+                .allowMethods(List.of("*"))
+                .allowHeaders(ALLOW_HEADERS)
+                .build();
+    }
+}
@@ -4,30 +4,95 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.CreateBucketConfiguration;
 import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
 import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Stores Lambda code packages (JARs) in S3 for use with CreateFunction/UpdateFunction.
+ *
+ * Packages are content-addressed: the key is derived from the SHA-256 of the file,
+ * so an unchanged JAR is detected with a single HeadObject and never uploaded twice.
+ *
+ * Lambda only reads code from a bucket in the function's own region, so multi-region
+ * deploys use one code bucket per region (see forRegion) and copy packages into it.
  */
 @Service
 public class LambdaCodeStorageService {
 
     private final S3Client s3Client;
+    private final String region;
     private final String codeBucketName;
+    private final String regionalBucketTemplate;
+    private final boolean inlineEnabled;
+    private final long inlineMaxBytes;
+    private final long multipartThresholdBytes;
+    private final long multipartPartBytes;
+    private final int multipartParallelism;
 
     public LambdaCodeStorageService(S3Client s3Client,
-                                    @Value("${aws.lambda.code.bucket}") String codeBucketName) {
+                                    @Value("${aws.region}") String region,
+                                    @Value("${aws.lambda.code.bucket}") String codeBucketName,
+                                    @Value("${aws.lambda.code.bucket.regional:}") String regionalBucketTemplate,
+                                    @Value("${aws.lambda.code.inline.enabled:false}") boolean inlineEnabled,
+                                    @Value("${aws.lambda.code.inline.max.bytes:10485760}") long inlineMaxBytes,
+                                    @Value("${aws.lambda.code.multipart.threshold.bytes:16777216}") long multipartThresholdBytes,
+                                    @Value("${aws.lambda.code.multipart.part.bytes:8388608}") long multipartPartBytes,
+                                    @Value("${aws.lambda.code.multipart.parallelism:4}") int multipartParallelism) {
         this.s3Client = s3Client;
+        this.region = region;
         this.codeBucketName = codeBucketName;
+        this.regionalBucketTemplate = regionalBucketTemplate;
+        this.inlineEnabled = inlineEnabled;
+        this.inlineMaxBytes = inlineMaxBytes;
+        this.multipartThresholdBytes = multipartThresholdBytes;
+        this.multipartPartBytes = multipartPartBytes;
+        this.multipartParallelism = multipartParallelism;
 
         ensureBucketExists();
     }
 
+    /**
+     * Code storage in another region: same settings, the region's own code bucket
+     * (aws.lambda.code.bucket.regional with {region} replaced, or "<code bucket>-<region>").
+     */
+    public LambdaCodeStorageService forRegion(S3Client regionalS3Client, String regionName) {
+        String bucketName = regionalBucketTemplate.isBlank()
+                ? codeBucketName + "-" + regionName
+                : regionalBucketTemplate.replace("{region}", regionName);
+        return new LambdaCodeStorageService(regionalS3Client, regionName, bucketName, regionalBucketTemplate,
+                inlineEnabled, inlineMaxBytes, multipartThresholdBytes, multipartPartBytes, multipartParallelism);
+    }
+
     private void ensureBucketExists() {
         try {
             s3Client.headBucket(HeadBucketRequest.builder()
@@ -36,32 +101,180 @@ public class LambdaCodeStorageService {
             System.out.println("Lambda code bucket exists: " + codeBucketName);
         } catch (NoSuchBucketException e) {
             System.out.println("Creating Lambda code bucket: " + codeBucketName);
-            s3Client.createBucket(CreateBucketRequest.builder()
-                    .bucket(codeBucketName)
-                    .build());
+            CreateBucketRequest.Builder request = CreateBucketRequest.builder().bucket(codeBucketName);
+            if (!"us-east-1".equals(region)) {
+                // Required outside us-east-1
+                request.createBucketConfiguration(CreateBucketConfiguration.builder()
+                        .locationConstraint(region)
+                        .build());
+            }
+            s3Client.createBucket(request.build());
         }
     }
 
     /**
-     * Uploads the given file to S3 under a key based on the functionName.
+     * Uploads the given file to S3 under a content-addressed key
+     * ("functions/sha256/<hash>.jar") unless an object with that key already exists.
      * Returns the S3 key.
      */
     public String uploadCodePackage(File file, String functionName) {
-        String key = "functions/" + functionName + "/" + file.getName();
-        System.out.println("Uploading Lambda code to s3://" + codeBucketName + "/" + key);
+        String key = getContentAddressedKey(file);
+
+        if (objectExists(key)) {
+            System.out.println("Lambda code for " + functionName + " unchanged, reusing s3://"
+                    + codeBucketName + "/" + key);
+            return key;
+        }
+
+        System.out.println("Uploading Lambda code for " + functionName + " to s3://" + codeBucketName + "/" + key);
+
+        if (file.length() >= multipartThresholdBytes) {
+            uploadMultipart(file, key);
+        } else {
+            s3Client.putObject(
+                    PutObjectRequest.builder()
+                            .bucket(codeBucketName)
+                            .key(key)
+                            .build(),
+                    RequestBody.fromFile(file)
+            );
+        }
+
+        return key;
+    }
+
+    /**
+     * Copies a package already uploaded to the source bucket into this bucket with a
+     * server-side CopyObject (nothing is uploaded again from this host), unless it is
+     * there already. Returns the S3 key.
+     */
+    public String replicateCodePackage(File file, LambdaCodeStorageService source) {
+        String key = getContentAddressedKey(file);
+        if (objectExists(key)) {
+            System.out.println("Lambda code already in s3://" + codeBucketName + "/" + key);
+            return key;
+        }
+
+        System.out.println("Copying Lambda code from s3://" + source.codeBucketName + " to s3://"
+                + codeBucketName + "/" + key);
+        s3Client.copyObject(CopyObjectRequest.builder()
+                .sourceBucket(source.codeBucketName)
+                .sourceKey(key)
+                .destinationBucket(codeBucketName)
+                .destinationKey(key)
+                .build());
+        return key;
+    }
+
+    /**
+     * True when the package is small enough to be sent inline as FunctionCode.zipFile,
+     * skipping S3 entirely.
+     */
+    public boolean canSendInline(File file) {
+        return inlineEnabled && file.length() <= inlineMaxBytes;
+    }
+
+    public String getContentAddressedKey(File file) {
+        String extension = file.getName().endsWith(".zip") ? ".zip" : ".jar";
+        return "functions/sha256/" + sha256(file) + extension;
+    }
+
+    public String sha256(File file) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = new DigestInputStream(Files.newInputStream(file.toPath()), digest)) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new RuntimeException("Failed to hash Lambda code package: " + e.getMessage(), e);
+        }
+    }
+
+    private boolean objectExists(String key) {
+        try {
+            s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(codeBucketName)
+                    .key(key)
+                    .build());
+            return true;
+        } catch (NoSuchKeyException e) {
+            return false;
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    private void uploadMultipart(File file, String key) {
+        String uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(codeBucketName)
+                .key(key)
+                .build()).uploadId();
+
+        long fileSize = file.length();
+        int partCount = (int) ((fileSize + multipartPartBytes - 1) / multipartPartBytes);
+        System.out.println("Multipart upload of " + fileSize + " bytes in " + partCount + " parts");
 
-        s3Client.putObject(
-                PutObjectRequest.builder()
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(multipartParallelism, partCount));
+        try {
+            List<Future<CompletedPart>> futures = new ArrayList<>();
+            for (int i = 0; i < partCount; i++) {
+                int partNumber = i + 1;
+                long offset = i * multipartPartBytes;
+                int length = (int) Math.min(multipartPartBytes, fileSize - offset);
+                futures.add(executor.submit(() -> uploadPart(file, key, uploadId, partNumber, offset, length)));
+            }
+
+            List<CompletedPart> parts = new ArrayList<>();
+            for (Future<CompletedPart> future : futures) {
+                parts.add(future.get());
+            }
+            parts.sort(Comparator.comparing(CompletedPart::partNumber));
+
+            s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(codeBucketName)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                    .build());
+        } catch (Exception e) {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(codeBucketName)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .build());
+            throw new RuntimeException("Multipart upload of Lambda code failed: " + e.getMessage(), e);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private CompletedPart uploadPart(File file, String key, String uploadId,
+                                     int partNumber, long offset, int length) throws IOException {
+        byte[] buffer = new byte[length];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(offset);
+            raf.readFully(buffer);
+        }
+
+        String eTag = s3Client.uploadPart(UploadPartRequest.builder()
                         .bucket(codeBucketName)
                         .key(key)
+                        .uploadId(uploadId)
+                        .partNumber(partNumber)
                         .build(),
-                RequestBody.fromFile(file)
-        );
+                RequestBody.fromBytes(buffer)).eTag();
 
-        return key;
+        return CompletedPart.builder()
+                .partNumber(partNumber)
+                .eTag(eTag)
+                .build();
     }
 
     public String getCodeBucketName() {
         return codeBucketName;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,214 @@
+package com.sail.aws;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Chooses the JVM flags (JAVA_TOOL_OPTIONS) for a function from the built artifact
+ * (class count, size), the detected database type and the memory size.
+ *
+ * All JVM tuning profiles live here; LambdaService applies the result on both the
+ * create and update paths, and local runs use the same options.
+ */
+@Service
+public class LambdaJvmTuningService {
+
+    /**
+     * Lambda allocates one full vCPU at 1769 MB and a second one from 3538 MB.
+     */
+    private static final int FULL_VCPU_MEMORY_MB = 1769;
+
+    /**
+     * Flags every profile shares: CDS when available, no hsperfdata file,
+     * smaller thread stacks and IPv4 (no IPv6 lookups in the Lambda sandbox).
+     */
+    private static final String COMMON_OPTIONS =
+            "-Xshare:auto -XX:-UsePerfData -Xss512k -Djava.net.preferIPv4Stack=true";
+
+    /**
+     * JVM tuning profiles.
+     *  STARTUP        - small apps on at most one vCPU: C1 only, serial GC
+     *  METADATA_HEAVY - many classes or JPA: as STARTUP, with a smaller heap share so
+     *                   metaspace and code cache fit, and a larger code cache
+     *  THROUGHPUT     - two or more vCPUs: parallel GC and full tiered compilation (C2),
+     *                   since the extra cores can compile in the background
+     */
+    public enum JvmProfile {
+        STARTUP("-XX:+TieredCompilation -XX:TieredStopAtLevel=1 -XX:+UseSerialGC", 75),
+        METADATA_HEAVY("-XX:+TieredCompilation -XX:TieredStopAtLevel=1 -XX:+UseSerialGC "
+                + "-XX:ReservedCodeCacheSize=64m", 60),
+        THROUGHPUT("-XX:+TieredCompilation -XX:+UseParallelGC", 75);
+
+        private final String options;
+        private final int maxRamPercentage;
+
+        JvmProfile(String options, int maxRamPercentage) {
+            this.options = options;
+            this.maxRamPercentage = maxRamPercentage;
+        }
+    }
+
+    private final LambdaCodeStorageService codeStorageService;
+    private final int metadataHeavyClassCount;
+    // Artifact sha256 -> class count; a deploy asks for the same artifact several times
+    private final Map<String, Integer> classCountCache = new ConcurrentHashMap<>();
+
+    public LambdaJvmTuningService(LambdaCodeStorageService codeStorageService,
+                                  @Value("${sail.lambda.jvm.metadata.heavy.classes:15000}") int metadataHeavyClassCount) {
+        this.codeStorageService = codeStorageService;
+        this.metadataHeavyClassCount = metadataHeavyClassCount;
+    }
+
+    /**
+     * Analyzes the artifact and returns the tuning for the given database type and memory size.
+     */
+    public JvmTuning tune(File artifact, LambdaDatabaseConfigurationService.DatabaseType dbType, int memorySizeMb) {
+        int classCount = countClasses(artifact);
+        JvmProfile profile = selectProfile(classCount, dbType, memorySizeMb);
+
+        JvmTuning tuning = new JvmTuning();
+        tuning.profile = profile;
+        tuning.classCount = classCount;
+        tuning.artifactBytes = artifact != null ? artifact.length() : 0;
+        tuning.javaToolOptions = optionsFor(profile, memorySizeMb);
+
+        System.out.println("JVM tuning: profile " + profile + " (" + classCount + " classes, "
+                + tuning.artifactBytes + " bytes, " + dbType + ", " + memorySizeMb + " MB)");
+        return tuning;
+    }
+
+    public JvmProfile selectProfile(int classCount,
+                                    LambdaDatabaseConfigurationService.DatabaseType dbType,
+                                    int memorySizeMb) {
+        if (memorySizeMb >= 2 * FULL_VCPU_MEMORY_MB) {
+            return JvmProfile.THROUGHPUT;
+        }
+        boolean usesDatabase = dbType != null && dbType != LambdaDatabaseConfigurationService.DatabaseType.NONE;
+        if (classCount >= metadataHeavyClassCount || (usesDatabase && memorySizeMb <= 1024)) {
+            return JvmProfile.METADATA_HEAVY;
+        }
+        return JvmProfile.STARTUP;
+    }
+
+    /**
+     * Full JAVA_TOOL_OPTIONS for a profile at the given memory size.
+     */
+    public String optionsFor(JvmProfile profile, int memorySizeMb) {
+        StringBuilder options = new StringBuilder(profile.options)
+                .append(" -XX:MaxRAMPercentage=").append(profile.maxRamPercentage);
+        if (profile == JvmProfile.THROUGHPUT) {
+            int vcpus = Math.max(1, memorySizeMb / FULL_VCPU_MEMORY_MB);
+            options.append(" -XX:ParallelGCThreads=").append(vcpus);
+        }
+        return options.append(' ').append(COMMON_OPTIONS).toString();
+    }
+
+    /**
+     * .class entries in the package, including those inside nested dependency jars, plus those
+     * of a LAYERED build's dependency jars (see layerJars). Counted once per artifact content
+     * and per dependency jar.
+     */
+    private int countClasses(File artifact) {
+        if (artifact == null || !artifact.isFile()) {
+            return 0;
+        }
+        int count = classCountCache.computeIfAbsent(codeStorageService.sha256(artifact), hash -> scanClasses(artifact));
+        for (File jar : layerJars(artifact)) {
+            // Versioned Maven file names; not hashed, the layer service already reads every jar
+            count += classCountCache.computeIfAbsent(jar.getName() + ":" + jar.length(), key -> scanClasses(jar));
+        }
+        return count;
+    }
+
+    /**
+     * LAYERED builds copy the dependency jars to target/lambda-layer/java/lib, next to the
+     * thin app jar. Other modes have no such directory, since every build starts with mvn clean.
+     */
+    private List<File> layerJars(File artifact) {
+        Path libDir = artifact.getAbsoluteFile().toPath().resolveSibling("lambda-layer").resolve("java").resolve("lib");
+        if (!Files.isDirectory(libDir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(libDir)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".jar"))
+                    .map(Path::toFile)
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            System.out.println("JVM tuning: could not list " + libDir + ": " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    private int scanClasses(File artifact) {
+        int count = 0;
+        try (ZipFile zip = new ZipFile(artifact)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.getName().endsWith(".class")) {
+                    count++;
+                } else if (entry.getName().endsWith(".jar")) {
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        count += countNestedClasses(in);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("JVM tuning: could not analyze " + artifact + ": " + e.getMessage());
+        }
+        return count;
+    }
+
+    private int countNestedClasses(InputStream jar) throws IOException {
+        int count = 0;
+        ZipInputStream zip = new ZipInputStream(jar);
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (entry.getName().endsWith(".class")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Selected profile and the analysis behind it.
+     */
+    public static class JvmTuning {
+        private JvmProfile profile;
+        private int classCount;
+        private long artifactBytes;
+        private String javaToolOptions;
+
+        public JvmProfile getProfile() {
+            return profile;
+        }
+
+        public int getClassCount() {
+            return classCount;
+        }
+
+        public long getArtifactBytes() {
+            return artifactBytes;
+        }
+
+        public String getJavaToolOptions() {
+            return javaToolOptions;
+        }
+    }
+}
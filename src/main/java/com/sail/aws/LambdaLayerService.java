@@ -0,0 +1,163 @@
+package com.sail.aws;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.lambda.LambdaClient;
+import software.amazon.awssdk.services.lambda.model.LayerVersionContentInput;
+import software.amazon.awssdk.services.lambda.model.LayerVersionsListItem;
+import software.amazon.awssdk.services.lambda.model.ListLayerVersionsRequest;
+import software.amazon.awssdk.services.lambda.model.PublishLayerVersionRequest;
+import software.amazon.awssdk.services.lambda.model.PublishLayerVersionResponse;
+import software.amazon.awssdk.services.lambda.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.lambda.model.Runtime;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Publishes the dependency jars of a build as a Lambda layer (java/lib/*.jar),
+ * keyed by a hash of the dependency set.
+ *
+ * A layer is published once per unique dependency set and reused by every function
+ * and deploy that resolves to the same set, so code uploads only carry app classes.
+ */
+@Service
+public class LambdaLayerService {
+
+    private final LambdaClient lambdaClient;
+    private final LambdaCodeStorageService codeStorageService;
+    private final String layerPrefix;
+    private final Map<String, String> layerArnCache = new ConcurrentHashMap<>();
+
+    public LambdaLayerService(LambdaClient lambdaClient,
+                              LambdaCodeStorageService codeStorageService,
+                              @Value("${aws.lambda.layer.prefix:sail-deps-}") String layerPrefix) {
+        this.lambdaClient = lambdaClient;
+        this.codeStorageService = codeStorageService;
+        this.layerPrefix = layerPrefix;
+    }
+
+    /**
+     * Layers are regional: the same dependency set is published once per region.
+     */
+    public LambdaLayerService forRegion(LambdaClient regionalClient, LambdaCodeStorageService regionalCodeStorage) {
+        return new LambdaLayerService(regionalClient, regionalCodeStorage, layerPrefix);
+    }
+
+    /**
+     * Returns the layer version ARN for the dependencies under layerRoot/java/lib,
+     * publishing a new layer only if this dependency set has never been seen.
+     */
+    public String getOrPublishDependencyLayer(Path layerRoot) {
+        try {
+            Path libDir = layerRoot.resolve("java").resolve("lib");
+            if (!Files.isDirectory(libDir)) {
+                throw new RuntimeException("Dependency directory not found: " + libDir);
+            }
+
+            String dependencyHash = hashDependencySet(libDir);
+            String layerName = layerPrefix + dependencyHash.substring(0, 16);
+
+            String cached = layerArnCache.get(layerName);
+            if (cached != null) {
+                System.out.println("Reusing cached dependency layer: " + cached);
+                return cached;
+            }
+
+            Optional<String> existing = findLatestLayerVersion(layerName);
+            if (existing.isPresent()) {
+                System.out.println("Reusing published dependency layer: " + existing.get());
+                layerArnCache.put(layerName, existing.get());
+                return existing.get();
+            }
+
+            File layerZip = zipLayer(layerRoot);
+            String s3Key = codeStorageService.uploadCodePackage(layerZip, layerName);
+
+            PublishLayerVersionResponse response = lambdaClient.publishLayerVersion(
+                    PublishLayerVersionRequest.builder()
+                            .layerName(layerName)
+                            .description("SAIL dependency layer " + dependencyHash)
+                            .compatibleRuntimes(Runtime.JAVA17)
+                            .content(LayerVersionContentInput.builder()
+                                    .s3Bucket(codeStorageService.getCodeBucketName())
+                                    .s3Key(s3Key)
+                                    .build())
+                            .build()
+            );
+
+            System.out.println("Published dependency layer: " + response.layerVersionArn());
+            layerArnCache.put(layerName, response.layerVersionArn());
+            return response.layerVersionArn();
+
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to publish dependency layer: " + e.getMessage(), e);
+        }
+    }
+
+    private Optional<String> findLatestLayerVersion(String layerName) {
+        try {
+            return lambdaClient.listLayerVersions(ListLayerVersionsRequest.builder()
+                            .layerName(layerName)
+                            .build())
+                    .layerVersions().stream()
+                    .max((a, b) -> Long.compare(a.version(), b.version()))
+                    .map(LayerVersionsListItem::layerVersionArn);
+        } catch (ResourceNotFoundException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * SHA-256 over the sorted "name:contentHash" lines of every dependency jar.
+     */
+    private String hashDependencySet(Path libDir) throws IOException {
+        List<Path> jars;
+        try (Stream<Path> paths = Files.list(libDir)) {
+            jars = paths.filter(p -> p.toString().endsWith(".jar"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Path jar : jars) {
+                String line = jar.getFileName() + ":" + codeStorageService.sha256(jar.toFile()) + "\n";
+                digest.update(line.getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 not available", e);
+        }
+    }
+
+    private File zipLayer(Path layerRoot) throws IOException {
+        Path zipPath = layerRoot.resolveSibling(layerRoot.getFileName() + ".zip");
+        try (OutputStream out = Files.newOutputStream(zipPath);
+             ZipOutputStream zip = new ZipOutputStream(out);
+             Stream<Path> paths = Files.walk(layerRoot)) {
+            for (Path p : paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList())) {
+                String entryName = layerRoot.relativize(p).toString().replace("\\", "/");
+                zip.putNextEntry(new ZipEntry(entryName));
+                Files.copy(p, zip);
+                zip.closeEntry();
+            }
+        }
+        return zipPath.toFile();
+    }
+}
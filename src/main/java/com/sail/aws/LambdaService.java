@@ -2,48 +2,138 @@ package com.sail.aws;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.lambda.LambdaAsyncClient;
 import software.amazon.awssdk.services.lambda.LambdaClient;
 import software.amazon.awssdk.services.lambda.model.AddPermissionRequest;
+import software.amazon.awssdk.services.lambda.model.Cors;
+import software.amazon.awssdk.services.lambda.model.CreateFunctionUrlConfigRequest;
+import software.amazon.awssdk.services.lambda.model.CreateAliasRequest;
 import software.amazon.awssdk.services.lambda.model.CreateFunctionRequest;
 import software.amazon.awssdk.services.lambda.model.CreateFunctionResponse;
+import software.amazon.awssdk.services.lambda.model.DeleteFunctionRequest;
+import software.amazon.awssdk.services.lambda.model.DeleteFunctionUrlConfigRequest;
 import software.amazon.awssdk.services.lambda.model.Environment;
 import software.amazon.awssdk.services.lambda.model.FunctionCode;
+import software.amazon.awssdk.services.lambda.model.FunctionUrlAuthType;
+import software.amazon.awssdk.services.lambda.model.GetFunctionConfigurationRequest;
+import software.amazon.awssdk.services.lambda.model.GetFunctionRequest;
+import software.amazon.awssdk.services.lambda.model.ListVersionsByFunctionRequest;
+import software.amazon.awssdk.services.lambda.model.PublishVersionRequest;
+import software.amazon.awssdk.services.lambda.model.PublishVersionResponse;
 import software.amazon.awssdk.services.lambda.model.ResourceConflictException;
+import software.amazon.awssdk.services.lambda.model.RemovePermissionRequest;
+import software.amazon.awssdk.services.lambda.model.ResourceNotFoundException;
 import software.amazon.awssdk.services.lambda.model.Runtime;
+import software.amazon.awssdk.services.lambda.model.SnapStart;
+import software.amazon.awssdk.services.lambda.model.SnapStartApplyOn;
+import software.amazon.awssdk.services.lambda.model.UpdateAliasRequest;
 import software.amazon.awssdk.services.lambda.model.UpdateFunctionCodeRequest;
 import software.amazon.awssdk.services.lambda.model.UpdateFunctionCodeResponse;
 import software.amazon.awssdk.services.lambda.model.UpdateFunctionConfigurationRequest;
+import software.amazon.awssdk.services.lambda.model.UpdateFunctionUrlConfigRequest;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 @Service
 public class LambdaService {
 
+    private static final int MAX_FUNCTION_NAME_LENGTH = 64;
+
     private final LambdaClient lambdaClient;
+    private final LambdaAsyncClient lambdaAsyncClient;
+    private final AwsRateLimiter rateLimiter;
     private final String region;
     private final String functionPrefix;
     private final String lambdaExecutionRole;
     private final String accountId;
     private final LambdaCodeStorageService codeStorageService;
     private final LambdaDatabaseConfigurationService dbConfigService;
+    private final LambdaJvmTuningService jvmTuningService;
+    private final boolean snapStartEnabled;
+    private final boolean versionsEnabled;
+    private final int versionsRetained;
+    private final int defaultMemorySizeMb;
+    private final int defaultTimeoutSeconds;
 
     public LambdaService(LambdaClient lambdaClient,
+                         LambdaAsyncClient lambdaAsyncClient,
+                         AwsRateLimiter rateLimiter,
                          @Value("${aws.region}") String region,
                          @Value("${aws.lambda.function.prefix}") String functionPrefix,
                          @Value("${aws.lambda.execution.role:}") String lambdaExecutionRole,
                          @Value("${aws.account.id}") String accountId,
                          LambdaCodeStorageService codeStorageService,
-                         LambdaDatabaseConfigurationService dbConfigService) {
+                         LambdaDatabaseConfigurationService dbConfigService,
+                         LambdaJvmTuningService jvmTuningService,
+                         @Value("${sail.lambda.snapstart.enabled:false}") boolean snapStartEnabled,
+                         @Value("${sail.lambda.versions.enabled:true}") boolean versionsEnabled,
+                         @Value("${sail.lambda.versions.retain:3}") int versionsRetained,
+                         @Value("${aws.lambda.memory.mb:512}") int defaultMemorySizeMb,
+                         @Value("${aws.lambda.timeout.seconds:60}") int defaultTimeoutSeconds) {
         this.lambdaClient = lambdaClient;
+        this.lambdaAsyncClient = lambdaAsyncClient;
+        this.rateLimiter = rateLimiter;
         this.region = region;
         this.functionPrefix = functionPrefix;
         this.lambdaExecutionRole = lambdaExecutionRole;
         this.accountId = accountId;
         this.codeStorageService = codeStorageService;
         this.dbConfigService = dbConfigService;
+        this.jvmTuningService = jvmTuningService;
+        this.snapStartEnabled = snapStartEnabled;
+        this.versionsEnabled = versionsEnabled;
+        this.versionsRetained = versionsRetained;
+        this.defaultMemorySizeMb = defaultMemorySizeMb;
+        this.defaultTimeoutSeconds = defaultTimeoutSeconds;
+    }
+
+    /**
+     * The same service against another region's clients and code bucket (multi-region deploys).
+     */
+    public LambdaService forRegion(String regionName, LambdaClient regionalClient,
+                                   LambdaAsyncClient regionalAsyncClient,
+                                   LambdaCodeStorageService regionalCodeStorage) {
+        return new LambdaService(regionalClient, regionalAsyncClient, rateLimiter, regionName, functionPrefix,
+                lambdaExecutionRole, accountId, regionalCodeStorage, dbConfigService, jvmTuningService,
+                snapStartEnabled, versionsEnabled, versionsRetained, defaultMemorySizeMb, defaultTimeoutSeconds);
+    }
+
+    public int getDefaultMemorySizeMb() {
+        return defaultMemorySizeMb;
+    }
+
+    public int getDefaultTimeoutSeconds() {
+        return defaultTimeoutSeconds;
+    }
+
+    public boolean isSnapStartEnabled() {
+        return snapStartEnabled;
+    }
+
+    /**
+     * Whether each deploy publishes a version and moves the live alias to it, with callers
+     * (API Gateway, function URL) invoking the alias. Always the case with SnapStart.
+     */
+    public boolean usesAlias() {
+        return snapStartEnabled || versionsEnabled;
     }
 
     /**
@@ -62,30 +152,40 @@ public class LambdaService {
      */
     public String createFunction(String functionName, File jarFile, String handler, 
                                  LambdaDatabaseConfigurationService.DatabaseType dbType) {
+        return createFunction(functionName, jarFile, handler, dbType, List.of(), Map.of(), Runtime.JAVA17,
+                defaultMemorySizeMb, defaultTimeoutSeconds);
+    }
+
+    /**
+     * Creates the function with the given layers attached (e.g. a shared dependency layer
+     * when the package only contains the application's own classes), additional environment
+     * variables (e.g. a cold-start profile, overriding the SAIL defaults), runtime (e.g.
+     * PROVIDED_AL2023 for a native executable packaged with a bootstrap script) and sizing
+     * (e.g. from MemoryProfilerService).
+     */
+    public String createFunction(String functionName, File jarFile, String handler,
+                                 LambdaDatabaseConfigurationService.DatabaseType dbType,
+                                 List<String> layerArns,
+                                 Map<String, String> extraEnvironment,
+                                 Runtime runtime,
+                                 int memorySizeMb,
+                                 int timeoutSeconds) {
         try {
             // 1. Prepare deployment package (plain JAR)
             File deploymentPackage = createDeploymentPackage(jarFile);
 
-            // 2. Upload to S3 code bucket
-            String s3Key = codeStorageService.uploadCodePackage(deploymentPackage, functionName);
-            String s3Bucket = codeStorageService.getCodeBucketName();
-
-            // 3. Build FunctionCode using S3 bucket + key
-            FunctionCode functionCode = FunctionCode.builder()
-                    .s3Bucket(s3Bucket)
-                    .s3Key(s3Key)
-                    .build();
+            // 2-3. Build FunctionCode (inline bytes for small packages, otherwise S3 bucket + key)
+            FunctionCode functionCode = buildFunctionCode(deploymentPackage, functionName);
 
             System.out.println("Creating Lambda function " + functionName +
                                " with handler=" + handler +
-                               " and code from s3://" + s3Bucket + "/" + s3Key);
+                               (functionCode.s3Key() != null
+                                       ? " and code from s3://" + functionCode.s3Bucket() + "/" + functionCode.s3Key()
+                                       : " and inline code"));
 
-            // 4. Get database configuration based on detected type
-            Map<String, String> environmentVariables = dbConfigService.getFreeTierDatabaseConfig(dbType);
-            
-            // 5. Add additional Lambda-specific environment variables
-            environmentVariables.put("SAIL_DEPLOYMENT_TYPE", "FREE_TIER_STUDENT");
-            environmentVariables.put("JAVA_TOOL_OPTIONS", "-XX:+TieredCompilation -XX:TieredStopAtLevel=1");
+            // 4-5. Database configuration for the detected type + Lambda-specific variables
+            Map<String, String> environmentVariables = getFunctionEnvironment(dbType, extraEnvironment,
+                    deploymentPackage, memorySizeMb, isJavaRuntime(runtime));
             
             System.out.println("Database type: " + dbType + " - Environment configured for free tier");
 
@@ -93,12 +193,14 @@ public class LambdaService {
             CreateFunctionResponse response = lambdaClient.createFunction(
                     CreateFunctionRequest.builder()
                             .functionName(functionName)
-                            .runtime(Runtime.JAVA17)
+                            .runtime(runtime)
                             .role(getLambdaExecutionRole())
                             .handler(handler)
                             .code(functionCode)
-                            .timeout(60)  // Increased for Spring Boot startup
-                            .memorySize(512)  // Kept low for free tier
+                            .timeout(timeoutSeconds)
+                            .memorySize(memorySizeMb)
+                            .layers(layerArns)
+                            .snapStart(snapStartConfig(runtime))
                             .environment(Environment.builder()
                                     .variables(environmentVariables)
                                     .build())
@@ -108,13 +210,69 @@ public class LambdaService {
             return response.functionArn();
 
         } catch (ResourceConflictException e) {
-            // Function already exists -> update code
-            return updateFunctionCode(functionName, jarFile, dbType);
+            // Function already exists -> update code and handler (it may be a JVM/native switch)
+            return updateFunctionCode(functionName, jarFile, handler, dbType, layerArns, extraEnvironment, runtime,
+                    memorySizeMb, timeoutSeconds);
         } catch (Exception e) {
             throw new RuntimeException("Failed to create Lambda function: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Creates a function with a tiny inline Node.js placeholder answering 503 to every request,
+     * and waits until it is active. Used for pre-provisioned functions, whose code, runtime and
+     * handler are replaced by the deploy that claims them.
+     */
+    public String createPlaceholderFunction(String functionName) {
+        try {
+            CreateFunctionResponse response = lambdaClient.createFunction(CreateFunctionRequest.builder()
+                    .functionName(functionName)
+                    .runtime(Runtime.NODEJS20_X)
+                    .role(getLambdaExecutionRole())
+                    .handler("index.handler")
+                    .code(FunctionCode.builder()
+                            .zipFile(SdkBytes.fromByteArray(placeholderPackage()))
+                            .build())
+                    .timeout(defaultTimeoutSeconds)
+                    .memorySize(defaultMemorySizeMb)
+                    .build());
+            lambdaClient.waiter().waitUntilFunctionActiveV2(GetFunctionRequest.builder()
+                    .functionName(functionName)
+                    .build());
+            return response.functionArn();
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to create placeholder function: " + e.getMessage(), e);
+        }
+    }
+
+    private byte[] placeholderPackage() throws IOException {
+        String source = "exports.handler = async () => ({ statusCode: 503, "
+                + "headers: { 'Retry-After': '5' }, body: 'Deployment in progress' });\n";
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.putNextEntry(new ZipEntry("index.js"));
+            zip.write(source.getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Deletes the function with all its versions, aliases and URL; a missing function is ignored.
+     */
+    public CompletableFuture<Void> deleteFunctionAsync(String functionName) {
+        return send("DeleteFunction", () -> lambdaAsyncClient.deleteFunction(DeleteFunctionRequest.builder()
+                        .functionName(functionName)
+                        .build()))
+                .handle((response, error) -> {
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    if (cause != null && !(cause instanceof ResourceNotFoundException)) {
+                        throw new CompletionException(cause);
+                    }
+                    return null;
+                });
+    }
+
     /**
      * BACKWARD COMPATIBLE METHOD - updates function code without changing environment.
      */
@@ -128,29 +286,55 @@ public class LambdaService {
      */
     public String updateFunctionCode(String functionName, File jarFile, 
                                     LambdaDatabaseConfigurationService.DatabaseType dbType) {
+        return updateFunctionCode(functionName, jarFile, null, dbType, List.of(), Map.of(), Runtime.JAVA17,
+                defaultMemorySizeMb, defaultTimeoutSeconds);
+    }
+
+    /**
+     * Updates function code and configuration: handler (null keeps the current one, e.g. for a
+     * function that was created with placeholder code), layers, environment, sizing, and the
+     * runtime if it changed (e.g. between JAVA17 and PROVIDED_AL2023 when the build path changes).
+     */
+    public String updateFunctionCode(String functionName, File jarFile, String handler,
+                                    LambdaDatabaseConfigurationService.DatabaseType dbType,
+                                    List<String> layerArns,
+                                    Map<String, String> extraEnvironment,
+                                    Runtime runtime,
+                                    int memorySizeMb,
+                                    int timeoutSeconds) {
         try {
             File deploymentPackage = createDeploymentPackage(jarFile);
 
-            String s3Key = codeStorageService.uploadCodePackage(deploymentPackage, functionName);
-            String s3Bucket = codeStorageService.getCodeBucketName();
+            FunctionCode functionCode = buildFunctionCode(deploymentPackage, functionName);
 
             // Update code
             UpdateFunctionCodeResponse codeResponse = lambdaClient.updateFunctionCode(
                 UpdateFunctionCodeRequest.builder()
                     .functionName(functionName)
-                    .s3Bucket(s3Bucket)
-                    .s3Key(s3Key)
+                    .zipFile(functionCode.zipFile())
+                    .s3Bucket(functionCode.s3Bucket())
+                    .s3Key(functionCode.s3Key())
                     .build()
             );
 
             // Also update environment variables with database configuration
-            Map<String, String> environmentVariables = dbConfigService.getFreeTierDatabaseConfig(dbType);
-            environmentVariables.put("SAIL_DEPLOYMENT_TYPE", "FREE_TIER_STUDENT");
-            environmentVariables.put("JAVA_TOOL_OPTIONS", "-XX:+TieredCompilation -XX:TieredStopAtLevel=1");
+            Map<String, String> environmentVariables = getFunctionEnvironment(dbType, extraEnvironment,
+                    deploymentPackage, memorySizeMb, isJavaRuntime(runtime));
+
+            // The configuration update is rejected while the code update is still in progress
+            lambdaClient.waiter().waitUntilFunctionUpdatedV2(GetFunctionRequest.builder()
+                    .functionName(functionName)
+                    .build());
 
             lambdaClient.updateFunctionConfiguration(
                 UpdateFunctionConfigurationRequest.builder()
                     .functionName(functionName)
+                    .runtime(runtime)
+                    .handler(handler)
+                    .memorySize(memorySizeMb)
+                    .timeout(timeoutSeconds)
+                    .layers(layerArns)
+                    .snapStart(snapStartConfig(runtime))
                     .environment(Environment.builder()
                             .variables(environmentVariables)
                             .build())
@@ -163,6 +347,175 @@ public class LambdaService {
         }
     }
 
+    /**
+     * Full Lambda environment for a function without artifact analysis, at the default memory size.
+     */
+    public Map<String, String> getFunctionEnvironment(LambdaDatabaseConfigurationService.DatabaseType dbType,
+                                                 Map<String, String> extraEnvironment) {
+        return getFunctionEnvironment(dbType, extraEnvironment, null, defaultMemorySizeMb);
+    }
+
+    /**
+     * Full Lambda environment for a function: database configuration for the detected type,
+     * SAIL defaults and the JVM tuning chosen for the artifact, then extraEnvironment on top.
+     * JAVA_TOOL_OPTIONS in extraEnvironment are appended to the tuned options.
+     * Also used to reproduce the environment for local runs.
+     */
+    public Map<String, String> getFunctionEnvironment(LambdaDatabaseConfigurationService.DatabaseType dbType,
+                                                 Map<String, String> extraEnvironment,
+                                                 File artifact,
+                                                 int memorySizeMb) {
+        return getFunctionEnvironment(dbType, extraEnvironment, artifact, memorySizeMb, true);
+    }
+
+    /**
+     * A native executable (javaRuntime false) runs without a JVM, so it gets no tuned options.
+     */
+    private Map<String, String> getFunctionEnvironment(LambdaDatabaseConfigurationService.DatabaseType dbType,
+                                                       Map<String, String> extraEnvironment,
+                                                       File artifact,
+                                                       int memorySizeMb,
+                                                       boolean javaRuntime) {
+        Map<String, String> environmentVariables = dbConfigService.getFreeTierDatabaseConfig(dbType);
+        environmentVariables.put("SAIL_DEPLOYMENT_TYPE", "FREE_TIER_STUDENT");
+        environmentVariables.putAll(extraEnvironment);
+        if (!javaRuntime) {
+            return environmentVariables;
+        }
+
+        String javaToolOptions = jvmTuningService.tune(artifact, dbType, memorySizeMb).getJavaToolOptions();
+        if (extraEnvironment.containsKey("JAVA_TOOL_OPTIONS")) {
+            javaToolOptions = javaToolOptions + " " + extraEnvironment.get("JAVA_TOOL_OPTIONS");
+        }
+        environmentVariables.put("JAVA_TOOL_OPTIONS", javaToolOptions);
+        return environmentVariables;
+    }
+
+    /**
+     * Publishes a new version of the function and points the alias at it, creating the
+     * alias on first use. With SnapStart enabled, publishing is what takes the snapshot,
+     * so this waits until the version is active. Returns the alias ARN.
+     */
+    public String publishVersionAndAlias(String functionName, String aliasName) {
+        try {
+            GetFunctionRequest getFunction = GetFunctionRequest.builder()
+                    .functionName(functionName)
+                    .build();
+            lambdaClient.waiter().waitUntilFunctionActiveV2(getFunction);
+            lambdaClient.waiter().waitUntilFunctionUpdatedV2(getFunction);
+
+            PublishVersionResponse version = lambdaClient.publishVersion(PublishVersionRequest.builder()
+                    .functionName(functionName)
+                    .build());
+            System.out.println("Published version " + version.version() + " of " + functionName);
+
+            lambdaClient.waiter().waitUntilPublishedVersionActive(GetFunctionConfigurationRequest.builder()
+                    .functionName(functionName)
+                    .qualifier(version.version())
+                    .build());
+
+            String aliasArn;
+            try {
+                aliasArn = lambdaClient.createAlias(CreateAliasRequest.builder()
+                        .functionName(functionName)
+                        .name(aliasName)
+                        .functionVersion(version.version())
+                        .build()).aliasArn();
+            } catch (ResourceConflictException e) {
+                // Alias already exists -> move it to the new version
+                aliasArn = lambdaClient.updateAlias(UpdateAliasRequest.builder()
+                        .functionName(functionName)
+                        .name(aliasName)
+                        .functionVersion(version.version())
+                        .build()).aliasArn();
+            }
+            pruneVersions(functionName, version.version());
+            return aliasArn;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to publish Lambda version/alias: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Deletes published versions older than the newest sail.lambda.versions.retain (the live one
+     * included), so versions do not pile up against the code storage quota. Best effort: versions
+     * still referenced elsewhere are kept, and failures never fail the deploy.
+     */
+    private void pruneVersions(String functionName, String liveVersion) {
+        try {
+            List<Long> versions = new ArrayList<>();
+            lambdaClient.listVersionsByFunctionPaginator(ListVersionsByFunctionRequest.builder()
+                            .functionName(functionName)
+                            .build())
+                    .versions()
+                    .forEach(v -> {
+                        if (!"$LATEST".equals(v.version())) {
+                            versions.add(Long.parseLong(v.version()));
+                        }
+                    });
+            Collections.sort(versions);
+            for (int i = 0; i < versions.size() - Math.max(versionsRetained, 1); i++) {
+                String version = String.valueOf(versions.get(i));
+                if (version.equals(liveVersion)) {
+                    continue;
+                }
+                try {
+                    lambdaClient.deleteFunction(DeleteFunctionRequest.builder()
+                            .functionName(functionName)
+                            .qualifier(version)
+                            .build());
+                    System.out.println("Deleted old version " + version + " of " + functionName);
+                } catch (ResourceConflictException e) {
+                    // Still the target of another alias or event source mapping
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Could not prune old versions of " + functionName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * SnapStart is only available on the managed Java runtimes.
+     */
+    private SnapStart snapStartConfig(Runtime runtime) {
+        return SnapStart.builder()
+                .applyOn(snapStartEnabled && isJavaRuntime(runtime)
+                        ? SnapStartApplyOn.PUBLISHED_VERSIONS : SnapStartApplyOn.NONE)
+                .build();
+    }
+
+    private boolean isJavaRuntime(Runtime runtime) {
+        return runtime.toString().startsWith("java");
+    }
+
+    /**
+     * ARN of the function (or of one of its aliases when a qualifier is given), known
+     * before the function exists so API Gateway can be set up in parallel with the build.
+     */
+    public String getFunctionArn(String functionName, String qualifier) {
+        String arn = String.format("arn:aws:lambda:%s:%s:function:%s", region, accountId, functionName);
+        return qualifier != null ? arn + ":" + qualifier : arn;
+    }
+
+    /**
+     * Stable function name for a project, so redeploys update the same function. Names over
+     * Lambda's 64-character limit keep their start followed by a hash of the full name, so
+     * project IDs that only differ at the end do not share a function.
+     */
+    public String getFunctionNameForProject(String projectId) {
+        String name = functionPrefix + projectId;
+        if (name.length() <= MAX_FUNCTION_NAME_LENGTH) {
+            return name;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(name.getBytes(StandardCharsets.UTF_8));
+            String hash = HexFormat.of().formatHex(digest, 0, 4);
+            return name.substring(0, MAX_FUNCTION_NAME_LENGTH - hash.length() - 1) + "-" + hash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     public String generateFunctionName() {
         return functionPrefix + System.currentTimeMillis();
     }
@@ -173,6 +526,26 @@ public class LambdaService {
         return jarFile;
     }
 
+    /**
+     * Small packages are sent inline as zipFile (when enabled); everything else goes
+     * through the content-addressed S3 code bucket.
+     */
+    private FunctionCode buildFunctionCode(File deploymentPackage, String functionName) throws IOException {
+        if (codeStorageService.canSendInline(deploymentPackage)) {
+            System.out.println("Sending Lambda code for " + functionName + " inline ("
+                    + deploymentPackage.length() + " bytes)");
+            return FunctionCode.builder()
+                    .zipFile(SdkBytes.fromByteArray(Files.readAllBytes(deploymentPackage.toPath())))
+                    .build();
+        }
+
+        String s3Key = codeStorageService.uploadCodePackage(deploymentPackage, functionName);
+        return FunctionCode.builder()
+                .s3Bucket(codeStorageService.getCodeBucketName())
+                .s3Key(s3Key)
+                .build();
+    }
+
     private String getLambdaExecutionRole() {
         if (lambdaExecutionRole != null && !lambdaExecutionRole.isEmpty()) {
             return lambdaExecutionRole;
@@ -181,16 +554,138 @@ public class LambdaService {
         throw new IllegalStateException("AWS Lambda execution role must be configured via aws.lambda.execution.role property");
     }
 
-    public void addInvokePermissionForApi(String functionArn, String restApiId, String region) {
-        String sourceArn = String.format("arn:aws:execute-api:%s:%s:%s/*/*/*",
+    /**
+     * Uses a statement id per API, so granting the same API again is a no-op.
+     */
+    public CompletableFuture<Void> addInvokePermissionForApiAsync(String functionArn, String restApiId, String region) {
+        return send("AddPermission", () -> lambdaAsyncClient.addPermission(invokePermissionRequest(functionArn,
+                        restApiId, region, "sail-apigw-" + restApiId)))
+                .handle((response, error) -> {
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    if (cause != null && !(cause instanceof ResourceConflictException)) {
+                        throw new CompletionException(cause);
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * Revokes the grant of addInvokePermissionForApiAsync, e.g. once the API was deleted; a
+     * missing statement is ignored.
+     */
+    public CompletableFuture<Void> removeInvokePermissionForApiAsync(String functionArn, String restApiId) {
+        return send("RemovePermission", () -> lambdaAsyncClient.removePermission(RemovePermissionRequest.builder()
+                        .functionName(functionArn)
+                        .statementId("sail-apigw-" + restApiId)
+                        .build()))
+                .handle((response, error) -> {
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    if (cause != null && !(cause instanceof ResourceNotFoundException)) {
+                        throw new CompletionException(cause);
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * Covers every stage and route of the API: REST API methods as well as the $default
+     * route of an HTTP API.
+     */
+    private AddPermissionRequest invokePermissionRequest(String functionArn, String restApiId, String region,
+                                                         String statementId) {
+        String sourceArn = String.format("arn:aws:execute-api:%s:%s:%s/*",
                 region, accountId, restApiId);
 
-        lambdaClient.addPermission(AddPermissionRequest.builder()
+        return AddPermissionRequest.builder()
                 .functionName(functionArn) // ARN or name
-                .statementId(UUID.randomUUID().toString())
+                .statementId(statementId)
                 .action("lambda:InvokeFunction")
                 .principal("apigateway.amazonaws.com")
                 .sourceArn(sourceArn)
-                .build());
+                .build();
+    }
+
+    /**
+     * Creates (or updates) a public function URL with CORS configured by Lambda, and allows
+     * unauthenticated calls to it. The qualifier is the alias to expose, or null for $LATEST.
+     * Returns the URL.
+     */
+    public CompletableFuture<String> createFunctionUrlAsync(String functionName, String qualifier) {
+        Cors cors = Cors.builder()
+                .allowOrigins(List.of("*"))
+                .allowMethods(List.of("*"))
+                .allowHeaders(List.of("Content-Type", "X-Amz-Date", "Authorization", "X-Api-Key",
+                        "X-Amz-Security-Token"))
+                .build();
+
+        CompletableFuture<String> functionUrl = send("CreateFunctionUrlConfig", () -> lambdaAsyncClient
+                        .createFunctionUrlConfig(CreateFunctionUrlConfigRequest.builder()
+                                .functionName(functionName)
+                                .qualifier(qualifier)
+                                .authType(FunctionUrlAuthType.NONE)
+                                .cors(cors)
+                                .build()))
+                .thenApply(response -> response.functionUrl())
+                .exceptionallyCompose(error -> {
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    if (!(cause instanceof ResourceConflictException)) {
+                        return CompletableFuture.failedFuture(cause);
+                    }
+                    // URL already exists (redeploy) -> keep it, refresh its configuration
+                    return send("UpdateFunctionUrlConfig", () -> lambdaAsyncClient
+                                    .updateFunctionUrlConfig(UpdateFunctionUrlConfigRequest.builder()
+                                            .functionName(functionName)
+                                            .qualifier(qualifier)
+                                            .authType(FunctionUrlAuthType.NONE)
+                                            .cors(cors)
+                                            .build()))
+                            .thenApply(response -> response.functionUrl());
+                });
+
+        return functionUrl.thenCompose(url -> send("AddPermission", () -> lambdaAsyncClient
+                        .addPermission(AddPermissionRequest.builder()
+                                .functionName(functionName)
+                                .qualifier(qualifier)
+                                .statementId("sail-function-url")
+                                .action("lambda:InvokeFunctionUrl")
+                                .principal("*")
+                                .functionUrlAuthType(FunctionUrlAuthType.NONE)
+                                .build()))
+                .handle((response, error) -> {
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    if (cause != null && !(cause instanceof ResourceConflictException)) {
+                        throw new CompletionException(cause);
+                    }
+                    return url;
+                }));
+    }
+
+    /**
+     * Deletes the function URL of the qualifier (null for the unqualified function). Completes
+     * with whether there was one.
+     */
+    public CompletableFuture<Boolean> deleteFunctionUrlAsync(String functionName, String qualifier) {
+        return send("DeleteFunctionUrlConfig", () -> lambdaAsyncClient.deleteFunctionUrlConfig(
+                        DeleteFunctionUrlConfigRequest.builder()
+                                .functionName(functionName)
+                                .qualifier(qualifier)
+                                .build()))
+                .handle((response, error) -> {
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    if (cause instanceof ResourceNotFoundException) {
+                        return false;
+                    }
+                    if (cause != null) {
+                        throw new CompletionException(cause);
+                    }
+                    return true;
+                });
+    }
+
+    /**
+     * Async calls wait for their rate-limit token without blocking a thread.
+     */
+    private <T> CompletableFuture<T> send(String operation, Supplier<CompletableFuture<T>> call) {
+        return rateLimiter.whenPermitted(region, "Lambda", operation, call);
     }
-}
\ No newline at end of file
+}
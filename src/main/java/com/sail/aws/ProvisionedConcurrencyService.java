@@ -0,0 +1,340 @@
+package com.sail.aws;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.applicationautoscaling.ApplicationAutoScalingClient;
+import software.amazon.awssdk.services.applicationautoscaling.model.DeregisterScalableTargetRequest;
+import software.amazon.awssdk.services.applicationautoscaling.model.ObjectNotFoundException;
+import software.amazon.awssdk.services.applicationautoscaling.model.PutScheduledActionRequest;
+import software.amazon.awssdk.services.applicationautoscaling.model.RegisterScalableTargetRequest;
+import software.amazon.awssdk.services.applicationautoscaling.model.ScalableDimension;
+import software.amazon.awssdk.services.applicationautoscaling.model.ScalableTargetAction;
+import software.amazon.awssdk.services.applicationautoscaling.model.ServiceNamespace;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchClient;
+import software.amazon.awssdk.services.cloudwatch.model.Datapoint;
+import software.amazon.awssdk.services.cloudwatch.model.Dimension;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricStatisticsRequest;
+import software.amazon.awssdk.services.cloudwatch.model.Statistic;
+import software.amazon.awssdk.services.lambda.LambdaClient;
+import software.amazon.awssdk.services.lambda.model.DeleteProvisionedConcurrencyConfigRequest;
+import software.amazon.awssdk.services.lambda.model.PutProvisionedConcurrencyConfigRequest;
+import software.amazon.awssdk.services.lambda.model.ResourceNotFoundException;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Provisioned concurrency on a function's live alias, sized from its traffic.
+ *
+ * Modes:
+ *  OFF       - none (removed again if an earlier deploy configured it)
+ *  FIXED     - provisioned around the clock
+ *  SCHEDULED - provisioned only within the schedule window (e.g. business hours), through two
+ *              Application Auto Scaling scheduled actions on the alias
+ *
+ * The size is the peak concurrency times a headroom factor. The peak comes from the project's
+ * traffic profile if one was given (peak requests per second x average duration), otherwise
+ * from the function's CloudWatch ConcurrentExecutions metric: the highest hourly Maximum over
+ * the lookback period, so short bursts within an hour are kept rather than averaged away.
+ * Without any traffic yet, the initial concurrency is used.
+ */
+@Service
+public class ProvisionedConcurrencyService {
+
+    public enum Mode {
+        OFF,
+        FIXED,
+        SCHEDULED
+    }
+
+    public static final String SOURCE_PROFILE = "PROFILE";
+    public static final String SOURCE_CLOUDWATCH = "CLOUDWATCH";
+    public static final String SOURCE_INITIAL = "INITIAL";
+
+    private static final String SCHEDULE_START_ACTION = "sail-provisioned-start";
+    private static final String SCHEDULE_END_ACTION = "sail-provisioned-end";
+    private static final double HOURS_PER_MONTH = 730;
+    private static final double WEEKS_PER_MONTH = 52.0 / 12;
+    private static final int METRIC_PERIOD_SECONDS = 3600;
+
+    private final LambdaClient lambdaClient;
+    private final ApplicationAutoScalingClient autoScalingClient;
+    private final CloudWatchClient cloudWatchClient;
+    private final Mode mode;
+    private final String scheduleDays;
+    private final int scheduleStartHour;
+    private final int scheduleEndHour;
+    private final String scheduleTimezone;
+    private final double headroom;
+    private final int maxConcurrency;
+    private final int initialConcurrency;
+    private final int lookbackDays;
+    private final double defaultDurationMs;
+
+    public ProvisionedConcurrencyService(LambdaClient lambdaClient,
+                                         ApplicationAutoScalingClient autoScalingClient,
+                                         CloudWatchClient cloudWatchClient,
+                                         @Value("${sail.lambda.provisioned.mode:OFF}") Mode mode,
+                                         @Value("${sail.lambda.provisioned.schedule.days:MON-FRI}") String scheduleDays,
+                                         @Value("${sail.lambda.provisioned.schedule.start.hour:8}") int scheduleStartHour,
+                                         @Value("${sail.lambda.provisioned.schedule.end.hour:18}") int scheduleEndHour,
+                                         @Value("${sail.lambda.provisioned.schedule.timezone:UTC}") String scheduleTimezone,
+                                         @Value("${sail.lambda.provisioned.headroom:1.2}") double headroom,
+                                         @Value("${sail.lambda.provisioned.max:50}") int maxConcurrency,
+                                         @Value("${sail.lambda.provisioned.initial:1}") int initialConcurrency,
+                                         @Value("${sail.lambda.provisioned.lookback.days:7}") int lookbackDays,
+                                         @Value("${cost.lambda.avg.duration.ms:100}") double defaultDurationMs) {
+        if (scheduleStartHour < 0 || scheduleEndHour > 23 || scheduleStartHour >= scheduleEndHour) {
+            throw new IllegalArgumentException("Provisioned concurrency schedule needs 0 <= start.hour < end.hour <= 23");
+        }
+        this.lambdaClient = lambdaClient;
+        this.autoScalingClient = autoScalingClient;
+        this.cloudWatchClient = cloudWatchClient;
+        this.mode = mode;
+        this.scheduleDays = scheduleDays.trim().toUpperCase();
+        this.scheduleStartHour = scheduleStartHour;
+        this.scheduleEndHour = scheduleEndHour;
+        this.scheduleTimezone = scheduleTimezone;
+        this.headroom = headroom;
+        this.maxConcurrency = maxConcurrency;
+        this.initialConcurrency = initialConcurrency;
+        this.lookbackDays = lookbackDays;
+        this.defaultDurationMs = defaultDurationMs;
+    }
+
+    /**
+     * The same service against another region's clients; metrics are per region too.
+     */
+    public ProvisionedConcurrencyService forRegion(LambdaClient regionalLambdaClient,
+                                                   ApplicationAutoScalingClient regionalAutoScalingClient,
+                                                   CloudWatchClient regionalCloudWatchClient) {
+        return new ProvisionedConcurrencyService(regionalLambdaClient, regionalAutoScalingClient,
+                regionalCloudWatchClient, mode, scheduleDays, scheduleStartHour, scheduleEndHour,
+                scheduleTimezone, headroom, maxConcurrency, initialConcurrency, lookbackDays, defaultDurationMs);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public boolean isEnabled() {
+        return mode != Mode.OFF;
+    }
+
+    /**
+     * Hours per month the provisioned concurrency is allocated (and billed) in the current mode.
+     */
+    public double getActiveHoursPerMonth() {
+        return switch (mode) {
+            case OFF -> 0;
+            case FIXED -> HOURS_PER_MONTH;
+            case SCHEDULED -> scheduledDays().size() * (scheduleEndHour - scheduleStartHour) * WEEKS_PER_MONTH;
+        };
+    }
+
+    /**
+     * Concurrency for the function from the traffic profile (peakRps, and avgDurationMs or the
+     * default duration), or from CloudWatch when peakRps is null.
+     */
+    public Sizing size(String functionName, Double peakRps, Double avgDurationMs) {
+        if (peakRps != null) {
+            // Little's law: requests in flight = arrival rate x time in the system
+            double durationMs = avgDurationMs != null ? avgDurationMs : defaultDurationMs;
+            double peakConcurrency = peakRps * durationMs / 1000;
+            return new Sizing(SOURCE_PROFILE, peakConcurrency, concurrencyFor(peakConcurrency));
+        }
+
+        Instant end = Instant.now();
+        Instant start = end.minus(lookbackDays, ChronoUnit.DAYS);
+        double peakConcurrency = 0;
+        for (Datapoint datapoint : cloudWatchClient.getMetricStatistics(GetMetricStatisticsRequest.builder()
+                        .namespace("AWS/Lambda")
+                        .metricName("ConcurrentExecutions")
+                        .dimensions(Dimension.builder().name("FunctionName").value(functionName).build())
+                        .startTime(start)
+                        .endTime(end)
+                        .period(METRIC_PERIOD_SECONDS)
+                        .statistics(Statistic.MAXIMUM)
+                        .build())
+                .datapoints()) {
+            peakConcurrency = Math.max(peakConcurrency, datapoint.maximum());
+        }
+        if (peakConcurrency == 0) {
+            return new Sizing(SOURCE_INITIAL, 0, Math.min(initialConcurrency, maxConcurrency));
+        }
+        return new Sizing(SOURCE_CLOUDWATCH, peakConcurrency, concurrencyFor(peakConcurrency));
+    }
+
+    /**
+     * ceil(peak concurrency x headroom), at least 1 and at most max.
+     */
+    private int concurrencyFor(double peakConcurrency) {
+        if (peakConcurrency <= 0) {
+            return 0;
+        }
+        int concurrency = (int) Math.ceil(peakConcurrency * headroom);
+        return Math.min(Math.max(concurrency, 1), maxConcurrency);
+    }
+
+    /**
+     * Applies the mode to the alias: a fixed config, the schedule (plus the config right away
+     * when inside the window), or neither. A concurrency of 0 removes both.
+     */
+    public void apply(String functionName, String aliasName, int concurrency) {
+        try {
+            String resourceId = "function:" + functionName + ":" + aliasName;
+            if (mode == Mode.SCHEDULED && concurrency > 0) {
+                applySchedule(resourceId, concurrency);
+                if (isWithinSchedule(ZonedDateTime.now(ZoneId.of(scheduleTimezone)))) {
+                    putConfig(functionName, aliasName, concurrency);
+                } else {
+                    deleteConfig(functionName, aliasName);
+                }
+                System.out.println("Provisioned concurrency " + concurrency + " on " + resourceId + " during "
+                        + scheduleDays + " " + scheduleStartHour + ":00-" + scheduleEndHour + ":00 " + scheduleTimezone);
+                return;
+            }
+
+            deregisterSchedule(resourceId);
+            if (mode == Mode.FIXED && concurrency > 0) {
+                putConfig(functionName, aliasName, concurrency);
+                System.out.println("Provisioned concurrency " + concurrency + " on " + resourceId);
+            } else {
+                deleteConfig(functionName, aliasName);
+                System.out.println("No provisioned concurrency on " + resourceId);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to apply provisioned concurrency: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Scalable target (0..concurrency) with a scheduled action raising it to concurrency at the
+     * window start and one lowering it to 0 at the window end, both on the configured days.
+     */
+    private void applySchedule(String resourceId, int concurrency) {
+        autoScalingClient.registerScalableTarget(RegisterScalableTargetRequest.builder()
+                .serviceNamespace(ServiceNamespace.LAMBDA)
+                .resourceId(resourceId)
+                .scalableDimension(ScalableDimension.LAMBDA_FUNCTION_PROVISIONED_CONCURRENCY)
+                .minCapacity(0)
+                .maxCapacity(concurrency)
+                .build());
+        putScheduledAction(resourceId, SCHEDULE_START_ACTION, scheduleStartHour, concurrency);
+        putScheduledAction(resourceId, SCHEDULE_END_ACTION, scheduleEndHour, 0);
+    }
+
+    private void putScheduledAction(String resourceId, String name, int hour, int capacity) {
+        autoScalingClient.putScheduledAction(PutScheduledActionRequest.builder()
+                .serviceNamespace(ServiceNamespace.LAMBDA)
+                .scheduledActionName(name)
+                .resourceId(resourceId)
+                .scalableDimension(ScalableDimension.LAMBDA_FUNCTION_PROVISIONED_CONCURRENCY)
+                .schedule("cron(0 " + hour + " ? * " + scheduleDays + " *)")
+                .timezone(scheduleTimezone)
+                .scalableTargetAction(ScalableTargetAction.builder()
+                        .minCapacity(capacity)
+                        .maxCapacity(capacity)
+                        .build())
+                .build());
+    }
+
+    /**
+     * Deregistering the target also deletes its scheduled actions.
+     */
+    private void deregisterSchedule(String resourceId) {
+        try {
+            autoScalingClient.deregisterScalableTarget(DeregisterScalableTargetRequest.builder()
+                    .serviceNamespace(ServiceNamespace.LAMBDA)
+                    .resourceId(resourceId)
+                    .scalableDimension(ScalableDimension.LAMBDA_FUNCTION_PROVISIONED_CONCURRENCY)
+                    .build());
+        } catch (ObjectNotFoundException e) {
+            // Never scheduled
+        }
+    }
+
+    private void putConfig(String functionName, String aliasName, int concurrency) {
+        lambdaClient.putProvisionedConcurrencyConfig(PutProvisionedConcurrencyConfigRequest.builder()
+                .functionName(functionName)
+                .qualifier(aliasName)
+                .provisionedConcurrentExecutions(concurrency)
+                .build());
+    }
+
+    private void deleteConfig(String functionName, String aliasName) {
+        try {
+            lambdaClient.deleteProvisionedConcurrencyConfig(DeleteProvisionedConcurrencyConfigRequest.builder()
+                    .functionName(functionName)
+                    .qualifier(aliasName)
+                    .build());
+        } catch (ResourceNotFoundException e) {
+            // Nothing provisioned
+        }
+    }
+
+    private boolean isWithinSchedule(ZonedDateTime now) {
+        return scheduledDays().contains(now.getDayOfWeek())
+                && now.getHour() >= scheduleStartHour && now.getHour() < scheduleEndHour;
+    }
+
+    /**
+     * Days of the cron day-of-week field, e.g. MON-FRI or MON,WED,FRI.
+     */
+    private Set<DayOfWeek> scheduledDays() {
+        Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+        for (String part : scheduleDays.split(",")) {
+            String[] range = part.trim().split("-");
+            DayOfWeek first = dayOfWeek(range[0]);
+            DayOfWeek last = range.length > 1 ? dayOfWeek(range[1]) : first;
+            for (DayOfWeek day = first; ; day = day.plus(1)) {
+                days.add(day);
+                if (day == last) {
+                    break;
+                }
+            }
+        }
+        return days;
+    }
+
+    private static DayOfWeek dayOfWeek(String name) {
+        for (DayOfWeek day : DayOfWeek.values()) {
+            if (day.name().substring(0, 3).equals(name.trim())) {
+                return day;
+            }
+        }
+        throw new IllegalArgumentException("Unknown day in sail.lambda.provisioned.schedule.days: " + name);
+    }
+
+    /**
+     * Peak concurrency and the provisioned concurrency derived from it.
+     */
+    public static class Sizing {
+        private final String source;
+        private final double peakConcurrency;
+        private final int concurrency;
+
+        Sizing(String source, double peakConcurrency, int concurrency) {
+            this.source = source;
+            this.peakConcurrency = peakConcurrency;
+            this.concurrency = concurrency;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public double getPeakConcurrency() {
+            return peakConcurrency;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.sail.aws;
+
+import com.sail.config.AwsConfig;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.core.SdkClient;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.apigateway.ApiGatewayAsyncClient;
+import software.amazon.awssdk.services.apigateway.ApiGatewayClient;
+import software.amazon.awssdk.services.apigatewayv2.ApiGatewayV2AsyncClient;
+import software.amazon.awssdk.services.apigatewayv2.ApiGatewayV2Client;
+import software.amazon.awssdk.services.applicationautoscaling.ApplicationAutoScalingClient;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchClient;
+import software.amazon.awssdk.services.lambda.LambdaAsyncClient;
+import software.amazon.awssdk.services.lambda.LambdaClient;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * AWS clients and the services built on them, per region, for multi-region deploys.
+ *
+ * A region's client set is created on first use and kept for the lifetime of the
+ * application (closed on shutdown). Its clients share the HTTP transport, credentials provider, rate limiter
+ * and retry policy of the primary region's clients (see AwsConfig). The primary region
+ * (aws.region) maps to the application's own beans.
+ */
+@Service
+public class RegionalServices {
+
+    private final AwsConfig awsConfig;
+    private final SdkHttpClient awsHttpClient;
+    private final SdkAsyncHttpClient awsAsyncHttpClient;
+    private final AwsCredentialsProvider awsCredentialsProvider;
+    private final AwsRateLimiter rateLimiter;
+    private final LambdaService lambdaService;
+    private final LambdaLayerService lambdaLayerService;
+    private final LambdaCodeStorageService codeStorageService;
+    private final ApiGatewayService apiGatewayService;
+    private final HttpApiService httpApiService;
+    private final ProvisionedConcurrencyService provisionedConcurrencyService;
+    private final String primaryRegion;
+    // Completed once the region's services are created; creation (which may create the code
+    // bucket) runs outside the map, so other regions are not held up meanwhile
+    private final Map<String, CompletableFuture<Services>> byRegion = new ConcurrentHashMap<>();
+    private final List<SdkClient> regionalClients = new CopyOnWriteArrayList<>();
+
+    public RegionalServices(AwsConfig awsConfig,
+                            SdkHttpClient awsHttpClient,
+                            SdkAsyncHttpClient awsAsyncHttpClient,
+                            AwsCredentialsProvider awsCredentialsProvider,
+                            AwsRateLimiter rateLimiter,
+                            LambdaService lambdaService,
+                            LambdaLayerService lambdaLayerService,
+                            LambdaCodeStorageService codeStorageService,
+                            ApiGatewayService apiGatewayService,
+                            HttpApiService httpApiService,
+                            ProvisionedConcurrencyService provisionedConcurrencyService,
+                            @Value("${aws.region}") String primaryRegion) {
+        this.awsConfig = awsConfig;
+        this.awsHttpClient = awsHttpClient;
+        this.awsAsyncHttpClient = awsAsyncHttpClient;
+        this.awsCredentialsProvider = awsCredentialsProvider;
+        this.rateLimiter = rateLimiter;
+        this.lambdaService = lambdaService;
+        this.lambdaLayerService = lambdaLayerService;
+        this.codeStorageService = codeStorageService;
+        this.apiGatewayService = apiGatewayService;
+        this.httpApiService = httpApiService;
+        this.provisionedConcurrencyService = provisionedConcurrencyService;
+        this.primaryRegion = primaryRegion;
+    }
+
+    public String getPrimaryRegion() {
+        return primaryRegion;
+    }
+
+    /**
+     * Services for the region, creating its clients (and its code bucket, if missing) on first use.
+     */
+    public Services forRegion(String region) {
+        CompletableFuture<Services> created = new CompletableFuture<>();
+        CompletableFuture<Services> existing = byRegion.putIfAbsent(region, created);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        try {
+            Services services = createServices(region);
+            created.complete(services);
+            return services;
+        } catch (RuntimeException e) {
+            // Not cached: the next deploy to the region tries again
+            byRegion.remove(region, created);
+            created.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (SdkClient client : regionalClients) {
+            try {
+                client.close();
+            } catch (RuntimeException e) {
+                System.err.println("Failed to close " + client.serviceName() + " client: " + e.getMessage());
+            }
+        }
+        regionalClients.clear();
+    }
+
+    /**
+     * Requested regions other than the primary one, without duplicates and in request order.
+     * Unknown region names are rejected.
+     */
+    public List<String> additionalRegions(Collection<String> regions) {
+        List<String> additional = new ArrayList<>();
+        for (String region : regions) {
+            String name = region.trim();
+            if (name.isEmpty() || name.equals(primaryRegion) || additional.contains(name)) {
+                continue;
+            }
+            if (!Region.regions().contains(Region.of(name))) {
+                throw new RuntimeException("Unknown AWS region: " + name);
+            }
+            additional.add(name);
+        }
+        return additional;
+    }
+
+    private Services createServices(String region) {
+        if (region.equals(primaryRegion)) {
+            return new Services(region, lambdaService, lambdaLayerService, codeStorageService,
+                    apiGatewayService, httpApiService, provisionedConcurrencyService);
+        }
+
+        System.out.println("Creating AWS clients for region " + region);
+        Region awsRegion = Region.of(region);
+        ClientOverrideConfiguration overrideConfiguration = awsConfig.overrideConfiguration(rateLimiter);
+
+        S3Client s3Client = S3Client.builder()
+                .region(awsRegion)
+                .credentialsProvider(awsCredentialsProvider)
+                .httpClient(awsHttpClient)
+                .overrideConfiguration(overrideConfiguration)
+                .build();
+        LambdaClient lambdaClient = LambdaClient.builder()
+                .region(awsRegion)
+                .credentialsProvider(awsCredentialsProvider)
+                .httpClient(awsHttpClient)
+                .overrideConfiguration(overrideConfiguration)
+                .build();
+        LambdaAsyncClient lambdaAsyncClient = LambdaAsyncClient.builder()
+                .region(awsRegion)
+                .credentialsProvider(awsCredentialsProvider)
+                .httpClient(awsAsyncHttpClient)
+                .overrideConfiguration(overrideConfiguration)
+                .build();
+        ApiGatewayClient apiGatewayClient = ApiGatewayClient.builder()
+                .region(awsRegion)
+                .credentialsProvider(awsCredentialsProvider)
+                .httpClient(awsHttpClient)
+                .overrideConfiguration(overrideConfiguration)
+                .build();
+        ApiGatewayAsyncClient apiGatewayAsyncClient = ApiGatewayAsyncClient.builder()
+                .region(awsRegion)
+                .credentialsProvider(awsCredentialsProvider)
+                .httpClient(awsAsyncHttpClient)
+                .overrideConfiguration(overrideConfiguration)
+                .build();
+        ApiGatewayV2Client apiGatewayV2Client = ApiGatewayV2Client.builder()
+                .region(awsRegion)
+                .credentialsProvider(awsCredentialsProvider)
+                .httpClient(awsHttpClient)
+                .overrideConfiguration(overrideConfiguration)
+                .build();
+        ApiGatewayV2AsyncClient apiGatewayV2AsyncClient = ApiGatewayV2AsyncClient.builder()
+                .region(awsRegion)
+                .credentialsProvider(awsCredentialsProvider)
+                .httpClient(awsAsyncHttpClient)
+                .overrideConfiguration(overrideConfiguration)
+                .build();
+        ApplicationAutoScalingClient autoScalingClient = ApplicationAutoScalingClient.builder()
+                .region(awsRegion)
+                .credentialsProvider(awsCredentialsProvider)
+                .httpClient(awsHttpClient)
+                .overrideConfiguration(overrideConfiguration)
+                .build();
+        CloudWatchClient cloudWatchClient = CloudWatchClient.builder()
+                .region(awsRegion)
+                .credentialsProvider(awsCredentialsProvider)
+                .httpClient(awsHttpClient)
+                .overrideConfiguration(overrideConfiguration)
+                .build();
+
+        regionalClients.addAll(List.of(s3Client, lambdaClient, lambdaAsyncClient, apiGatewayClient,
+                apiGatewayAsyncClient, apiGatewayV2Client, apiGatewayV2AsyncClient, autoScalingClient, cloudWatchClient));
+
+        LambdaCodeStorageService regionalCodeStorage = codeStorageService.forRegion(s3Client, region);
+        return new Services(region,
+                lambdaService.forRegion(region, lambdaClient, lambdaAsyncClient, regionalCodeStorage),
+                lambdaLayerService.forRegion(lambdaClient, regionalCodeStorage),
+                regionalCodeStorage,
+                apiGatewayService.forRegion(region, apiGatewayClient, apiGatewayAsyncClient),
+                httpApiService.forRegion(region, apiGatewayV2Client, apiGatewayV2AsyncClient),
+                provisionedConcurrencyService.forRegion(lambdaClient, autoScalingClient, cloudWatchClient));
+    }
+
+    /**
+     * The deploy services of one region.
+     */
+    public static class Services {
+        private final String region;
+        private final LambdaService lambdaService;
+        private final LambdaLayerService lambdaLayerService;
+        private final LambdaCodeStorageService codeStorageService;
+        private final ApiGatewayService apiGatewayService;
+        private final HttpApiService httpApiService;
+        private final ProvisionedConcurrencyService provisionedConcurrencyService;
+
+        Services(String region, LambdaService lambdaService, LambdaLayerService lambdaLayerService,
+                 LambdaCodeStorageService codeStorageService, ApiGatewayService apiGatewayService,
+                 HttpApiService httpApiService, ProvisionedConcurrencyService provisionedConcurrencyService) {
+            this.region = region;
+            this.lambdaService = lambdaService;
+            this.lambdaLayerService = lambdaLayerService;
+            this.codeStorageService = codeStorageService;
+            this.apiGatewayService = apiGatewayService;
+            this.httpApiService = httpApiService;
+            this.provisionedConcurrencyService = provisionedConcurrencyService;
+        }
+
+        public String getRegion() {
+            return region;
+        }
+
+        public LambdaService getLambdaService() {
+            return lambdaService;
+        }
+
+        public LambdaLayerService getLambdaLayerService() {
+            return lambdaLayerService;
+        }
+
+        public LambdaCodeStorageService getCodeStorageService() {
+            return codeStorageService;
+        }
+
+        public ApiGatewayService getApiGatewayService() {
+            return apiGatewayService;
+        }
+
+        public HttpApiService getHttpApiService() {
+            return httpApiService;
+        }
+
+        public ProvisionedConcurrencyService getProvisionedConcurrencyService() {
+            return provisionedConcurrencyService;
+        }
+    }
+}
@@ -11,7 +11,9 @@ import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class S3Service {
@@ -19,6 +21,7 @@ public class S3Service {
     private final S3Client s3Client;
     private final String region;
     private final String bucketPrefix;
+    private final Set<String> configuredSharedBuckets = ConcurrentHashMap.newKeySet();
 
     public S3Service(S3Client s3Client, 
                      @Value("${aws.region}") String region,
@@ -60,30 +63,41 @@ public class S3Service {
     public void uploadDirectory(String bucketName, String directoryPath) {
         try {
             Path dirPath = Paths.get(directoryPath);
-            Files.walk(dirPath)
-                    .filter(Files::isRegularFile)
-                    .forEach(file -> {
-                        String key = dirPath.relativize(file).toString().replace("\\", "/");
-                        uploadFile(bucketName, key, file.toFile());
-                    });
+            try (var stream = Files.walk(dirPath)) {
+                stream.filter(Files::isRegularFile)
+                      .forEach(file -> {
+                          String key = dirPath.relativize(file).toString().replace("\\", "/");
+                          uploadFile(bucketName, key, file.toFile());
+                      });
+            }
         } catch (Exception e) {
             throw new RuntimeException("Failed to upload directory to S3: " + e.getMessage(), e);
         }
     }
  // inside S3Service
     public void uploadStaticSite(String bucketName, String siteRootPath) {
+        uploadStaticSite(bucketName, "", siteRootPath);
+    }
+
+    /**
+     * Uploads a static site under the given key prefix (e.g. "sites/<projectId>/").
+     * An empty prefix uploads to the bucket root.
+     */
+    public void uploadStaticSite(String bucketName, String keyPrefix, String siteRootPath) {
         try {
             Path root = Paths.get(siteRootPath);
 
             // 1. Find the main HTML file in the root folder (entry point)
-            Path entryHtml = Files.list(root)
-                    .filter(Files::isRegularFile)
-                    .filter(p -> p.getFileName().toString().toLowerCase().endsWith(".html"))
-                    .findFirst()
-                    .orElseThrow(() -> new RuntimeException("No HTML file found in " + siteRootPath));
+            Path entryHtml;
+            try (var stream = Files.list(root)) {
+                entryHtml = stream.filter(Files::isRegularFile)
+                        .filter(p -> p.getFileName().toString().toLowerCase().endsWith(".html"))
+                        .findFirst()
+                        .orElseThrow(() -> new RuntimeException("No HTML file found in " + siteRootPath));
+            }
 
             // 2. Upload entry HTML as ROOT index.html (rename if needed)
-            uploadFile(bucketName, "index.html", entryHtml.toFile());
+            uploadFile(bucketName, keyPrefix + "index.html", entryHtml.toFile());
 
             // 3. Upload sibling CSS and JS files (same folder)
             try (var stream = Files.list(root)) {
@@ -93,7 +107,17 @@ public class S3Service {
                           return name.endsWith(".css") || name.endsWith(".js");
                       })
                       .forEach(p -> {
-                          String key = p.getFileName().toString(); // keep original name
+                          String key = keyPrefix + p.getFileName().toString(); // keep original name
+                          uploadFile(bucketName, key, p.toFile());
+                      });
+            }
+
+            // 4. Upload images (including generated width variants) with their relative paths
+            try (var stream = Files.walk(root)) {
+                stream.filter(Files::isRegularFile)
+                      .filter(p -> isImage(p.getFileName().toString()))
+                      .forEach(p -> {
+                          String key = keyPrefix + root.relativize(p).toString().replace("\\", "/");
                           uploadFile(bucketName, key, p.toFile());
                       });
             }
@@ -121,6 +145,24 @@ public class S3Service {
         return String.format("http://%s.s3-website.%s.amazonaws.com", bucketName, region);
     }
 
+    /**
+     * Prepares a pre-provisioned bucket that hosts many sites under per-project prefixes.
+     * Bucket-level setup (public access block, website hosting, read policy) runs only
+     * once per bucket for the lifetime of the application.
+     */
+    public void ensureSharedHostingBucket(String bucketName) {
+        if (configuredSharedBuckets.contains(bucketName)) {
+            return;
+        }
+        synchronized (configuredSharedBuckets) {
+            if (!configuredSharedBuckets.contains(bucketName)) {
+                createBucket(bucketName);
+                configuredSharedBuckets.add(bucketName);
+                System.out.println("Shared hosting bucket ready: " + bucketName);
+            }
+        }
+    }
+
     public String generateBucketName() {
         return bucketPrefix + UUID.randomUUID().toString().substring(0, 8);
     }
@@ -203,6 +245,12 @@ public class S3Service {
         }
     }
     
+    private boolean isImage(String fileName) {
+        String name = fileName.toLowerCase();
+        return name.endsWith(".png") || name.endsWith(".jpg") || name.endsWith(".jpeg")
+                || name.endsWith(".gif") || name.endsWith(".svg") || name.endsWith(".webp");
+    }
+
     private String getContentType(String fileName) {
         String extension = fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase();
         switch (extension) {
@@ -214,6 +262,7 @@ public class S3Service {
             case "jpg": case "jpeg": return "image/jpeg";
             case "gif": return "image/gif";
             case "svg": return "image/svg+xml";
+            case "webp": return "image/webp";
             default: return "application/octet-stream";
         }
     }
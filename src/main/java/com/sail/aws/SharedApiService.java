@@ -0,0 +1,176 @@
+package com.sail.aws;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.apigateway.model.Resource;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One pre-provisioned REST API shared by all projects of an environment (SHARED API mode).
+ *
+ * Each project is mounted under /p/{projectId} by replacing that subtree with its paths, so
+ * no API is created per deploy. Changes to the API are applied one at a time, and stage
+ * deployments requested within the batch window are served by a single CreateDeployment.
+ */
+@Service
+public class SharedApiService {
+
+    private final ApiGatewayService apiGatewayService;
+    private final String apiMode;
+    private final String sharedApiId;
+    private final String stageName;
+    private final long batchWindowMs;
+    private final int maxResources;
+
+    // Last queued change to the shared API; the next one starts after it
+    private CompletableFuture<?> lastChange = CompletableFuture.completedFuture(null);
+    private CompletableFuture<String> pendingDeployment;
+    private int pendingRequests;
+
+    public SharedApiService(ApiGatewayService apiGatewayService,
+                            @Value("${sail.api.mode:API_PER_PROJECT}") String apiMode,
+                            @Value("${sail.api.shared.id:}") String sharedApiId,
+                            @Value("${sail.api.shared.stage:prod}") String stageName,
+                            @Value("${sail.api.shared.deploy.batch.window.ms:2000}") long batchWindowMs,
+                            @Value("${sail.api.shared.max.resources:300}") int maxResources) {
+        this.apiGatewayService = apiGatewayService;
+        this.apiMode = apiMode;
+        this.sharedApiId = sharedApiId;
+        this.stageName = stageName;
+        this.batchWindowMs = batchWindowMs;
+        this.maxResources = maxResources;
+    }
+
+    public boolean isEnabled() {
+        if (!"SHARED".equalsIgnoreCase(apiMode)) {
+            return false;
+        }
+        if (sharedApiId == null || sharedApiId.isEmpty()) {
+            throw new IllegalStateException("sail.api.shared.id must be configured for SHARED API mode");
+        }
+        return true;
+    }
+
+    public String getApiId() {
+        return sharedApiId;
+    }
+
+    public String getApiName() {
+        return apiGatewayService.getApiNameForProject("shared");
+    }
+
+    public String getBasePath(String projectId) {
+        return "/p/" + projectId;
+    }
+
+    public String getProjectUrl(String projectId) {
+        return apiGatewayService.getStageUrl(sharedApiId, stageName) + getBasePath(projectId) + "/";
+    }
+
+    /**
+     * Mounts a project's paths under its base path, after any change already in flight. The
+     * previous subtree is deleted first, since a merge never removes routes the project
+     * dropped. Fails without changing the API if the result would exceed maxResources
+     * (API Gateway's resources-per-API quota).
+     */
+    public synchronized CompletableFuture<Void> mountProjectAsync(String basePath, String openApiDefinition,
+                                                                  List<String> paths) {
+        CompletableFuture<Void> mount = lastChange
+                .handle((ignored, error) -> null)
+                .thenCompose(ignored -> apiGatewayService.getResourcesAsync(sharedApiId))
+                .thenCompose(resources -> {
+                    Set<String> kept = new HashSet<>();
+                    Resource mounted = null;
+                    for (Resource resource : resources) {
+                        if (resource.path().equals(basePath)) {
+                            mounted = resource;
+                        } else if (!resource.path().startsWith(basePath + "/")) {
+                            kept.add(resource.path());
+                        }
+                    }
+                    Set<String> added = resourcePaths(paths);
+                    added.removeAll(kept);
+                    if (kept.size() + added.size() > maxResources) {
+                        throw new IllegalStateException("Mounting " + basePath + " would take shared API "
+                                + sharedApiId + " to " + (kept.size() + added.size()) + " resources (limit "
+                                + maxResources + ", sail.api.shared.max.resources)");
+                    }
+                    CompletableFuture<Void> prune = mounted != null
+                            ? apiGatewayService.deleteResourceAsync(sharedApiId, mounted.id())
+                            : CompletableFuture.completedFuture(null);
+                    return prune.thenCompose(pruned -> apiGatewayService.mergeRestApiAsync(sharedApiId,
+                            openApiDefinition));
+                });
+        lastChange = mount;
+        return mount;
+    }
+
+    /**
+     * Enables stage caching for a project's cached GET routes, after any change already in flight.
+     */
+    public synchronized CompletableFuture<Void> enableCacheAsync(List<String> cachedPaths) {
+        CompletableFuture<Void> update = lastChange
+                .handle((ignored, error) -> null)
+                .thenCompose(ignored -> apiGatewayService.enableStageCacheAsync(sharedApiId, stageName, cachedPaths));
+        lastChange = update;
+        return update;
+    }
+
+    /**
+     * Requests a stage deployment. Requests arriving within the batch window share one
+     * deployment, which starts after every change queued before it. Returns the stage URL.
+     */
+    public synchronized CompletableFuture<String> deployAsync() {
+        pendingRequests++;
+        if (pendingDeployment == null) {
+            CompletableFuture<String> batch = new CompletableFuture<>();
+            pendingDeployment = batch;
+            CompletableFuture.delayedExecutor(batchWindowMs, TimeUnit.MILLISECONDS)
+                    .execute(() -> startDeployment(batch));
+        }
+        return pendingDeployment;
+    }
+
+    /**
+     * The resources a set of paths needs: every path and each of its parents.
+     */
+    private Set<String> resourcePaths(List<String> paths) {
+        Set<String> resourcePaths = new HashSet<>();
+        resourcePaths.add("/");
+        for (String path : paths) {
+            int end = path.indexOf('/', 1);
+            while (end > 0) {
+                resourcePaths.add(path.substring(0, end));
+                end = path.indexOf('/', end + 1);
+            }
+            resourcePaths.add(path);
+        }
+        return resourcePaths;
+    }
+
+    private void startDeployment(CompletableFuture<String> batch) {
+        CompletableFuture<String> deployment;
+        synchronized (this) {
+            System.out.println("Shared API " + sharedApiId + ": one deployment for " + pendingRequests
+                    + " deploy(s)");
+            pendingDeployment = null;
+            pendingRequests = 0;
+            deployment = lastChange
+                    .handle((ignored, error) -> null)
+                    .thenCompose(ignored -> apiGatewayService.deployStageAsync(sharedApiId, stageName));
+            lastChange = deployment;
+        }
+        deployment.whenComplete((url, error) -> {
+            if (error != null) {
+                batch.completeExceptionally(error);
+            } else {
+                batch.complete(url);
+            }
+        });
+    }
+}
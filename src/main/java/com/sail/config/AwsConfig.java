@@ -1,13 +1,31 @@
 package com.sail.config;
 
+import com.sail.aws.AwsRateLimiter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.retry.RetryMode;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.core.retry.backoff.FullJitterBackoffStrategy;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.lambda.LambdaAsyncClient;
 import software.amazon.awssdk.services.lambda.LambdaClient;
+import software.amazon.awssdk.services.apigateway.ApiGatewayAsyncClient;
 import software.amazon.awssdk.services.apigateway.ApiGatewayClient;
+import software.amazon.awssdk.services.apigatewayv2.ApiGatewayV2AsyncClient;
+import software.amazon.awssdk.services.apigatewayv2.ApiGatewayV2Client;
+import software.amazon.awssdk.services.applicationautoscaling.ApplicationAutoScalingClient;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchClient;
+
+import java.time.Duration;
 
 @Configuration
 public class AwsConfig {
@@ -15,27 +33,181 @@ public class AwsConfig {
     @Value("${aws.region}")
     private String region;
 
+    @Value("${sail.aws.retry.max.retries:6}")
+    private int maxRetries;
+
+    @Value("${sail.aws.retry.max.backoff.ms:20000}")
+    private long maxBackoffMs;
+
+    @Value("${sail.aws.http.max.concurrency:200}")
+    private int maxConcurrency;
+
+    @Value("${sail.aws.http.sync.max.connections:100}")
+    private int syncMaxConnections;
+
+    @Value("${sail.aws.http.connection.ttl.seconds:60}")
+    private long connectionTtlSeconds;
+
+    @Value("${sail.aws.http.connection.max.idle.seconds:30}")
+    private long connectionMaxIdleSeconds;
+
+    @Value("${sail.aws.http.connection.timeout.ms:2000}")
+    private long connectionTimeoutMs;
+
+    @Value("${sail.aws.http.tcp.keepalive:true}")
+    private boolean tcpKeepAlive;
+
+    /**
+     * One credentials provider for every client, refreshing cached credentials in the
+     * background instead of on the calling thread.
+     */
     @Bean
-    public S3Client s3Client() {
+    public AwsCredentialsProvider awsCredentialsProvider() {
+        return DefaultCredentialsProvider.builder()
+                .asyncCredentialUpdateEnabled(true)
+                .build();
+    }
+
+    /**
+     * Connection pool shared by all async clients. Connections are recycled after the TTL
+     * so DNS changes of the AWS endpoints are picked up.
+     */
+    @Bean
+    public SdkAsyncHttpClient awsAsyncHttpClient() {
+        return NettyNioAsyncHttpClient.builder()
+                .maxConcurrency(maxConcurrency)
+                .connectionTimeToLive(Duration.ofSeconds(connectionTtlSeconds))
+                .connectionMaxIdleTime(Duration.ofSeconds(connectionMaxIdleSeconds))
+                .connectionTimeout(Duration.ofMillis(connectionTimeoutMs))
+                .tcpKeepAlive(tcpKeepAlive)
+                .build();
+    }
+
+    /**
+     * Connection pool shared by the blocking clients, tuned the same way.
+     */
+    @Bean
+    public SdkHttpClient awsHttpClient() {
+        return ApacheHttpClient.builder()
+                .maxConnections(syncMaxConnections)
+                .connectionTimeToLive(Duration.ofSeconds(connectionTtlSeconds))
+                .connectionMaxIdleTime(Duration.ofSeconds(connectionMaxIdleSeconds))
+                .connectionTimeout(Duration.ofMillis(connectionTimeoutMs))
+                .tcpKeepAlive(tcpKeepAlive)
+                .build();
+    }
+
+    @Bean
+    public S3Client s3Client(SdkHttpClient awsHttpClient,
+                             AwsCredentialsProvider awsCredentialsProvider,
+                             AwsRateLimiter rateLimiter) {
         return S3Client.builder()
                 .region(Region.of(region))
-                .credentialsProvider(DefaultCredentialsProvider.create())
+                .credentialsProvider(awsCredentialsProvider)
+                .httpClient(awsHttpClient)
+                .overrideConfiguration(overrideConfiguration(rateLimiter))
                 .build();
     }
 
     @Bean
-    public LambdaClient lambdaClient() {
+    public LambdaClient lambdaClient(SdkHttpClient awsHttpClient,
+                                     AwsCredentialsProvider awsCredentialsProvider,
+                                     AwsRateLimiter rateLimiter) {
         return LambdaClient.builder()
                 .region(Region.of(region))
-                .credentialsProvider(DefaultCredentialsProvider.create())
+                .credentialsProvider(awsCredentialsProvider)
+                .httpClient(awsHttpClient)
+                .overrideConfiguration(overrideConfiguration(rateLimiter))
                 .build();
     }
 
     @Bean
-    public ApiGatewayClient apiGatewayClient() {
+    public ApiGatewayClient apiGatewayClient(SdkHttpClient awsHttpClient,
+                                             AwsCredentialsProvider awsCredentialsProvider,
+                                             AwsRateLimiter rateLimiter) {
         return ApiGatewayClient.builder()
                 .region(Region.of(region))
-                .credentialsProvider(DefaultCredentialsProvider.create())
+                .credentialsProvider(awsCredentialsProvider)
+                .httpClient(awsHttpClient)
+                .overrideConfiguration(overrideConfiguration(rateLimiter))
+                .build();
+    }
+
+    @Bean
+    public ApiGatewayV2Client apiGatewayV2Client(SdkHttpClient awsHttpClient,
+                                                 AwsCredentialsProvider awsCredentialsProvider,
+                                                 AwsRateLimiter rateLimiter) {
+        return ApiGatewayV2Client.builder()
+                .region(Region.of(region))
+                .credentialsProvider(awsCredentialsProvider)
+                .httpClient(awsHttpClient)
+                .overrideConfiguration(overrideConfiguration(rateLimiter))
+                .build();
+    }
+
+    /**
+     * Async clients used by the deploy graph to run independent AWS calls concurrently.
+     */
+    @Bean
+    public LambdaAsyncClient lambdaAsyncClient(SdkAsyncHttpClient awsAsyncHttpClient,
+                                               AwsCredentialsProvider awsCredentialsProvider,
+                                               AwsRateLimiter rateLimiter) {
+        return LambdaAsyncClient.builder()
+                .region(Region.of(region))
+                .credentialsProvider(awsCredentialsProvider)
+                .httpClient(awsAsyncHttpClient)
+                .overrideConfiguration(overrideConfiguration(rateLimiter))
+                .build();
+    }
+
+    @Bean
+    public ApiGatewayAsyncClient apiGatewayAsyncClient(SdkAsyncHttpClient awsAsyncHttpClient,
+                                                       AwsCredentialsProvider awsCredentialsProvider,
+                                                       AwsRateLimiter rateLimiter) {
+        return ApiGatewayAsyncClient.builder()
+                .region(Region.of(region))
+                .credentialsProvider(awsCredentialsProvider)
+                .httpClient(awsAsyncHttpClient)
+                .overrideConfiguration(overrideConfiguration(rateLimiter))
+                .build();
+    }
+
+    @Bean
+    public ApiGatewayV2AsyncClient apiGatewayV2AsyncClient(SdkAsyncHttpClient awsAsyncHttpClient,
+                                                           AwsCredentialsProvider awsCredentialsProvider,
+                                                           AwsRateLimiter rateLimiter) {
+        return ApiGatewayV2AsyncClient.builder()
+                .region(Region.of(region))
+                .credentialsProvider(awsCredentialsProvider)
+                .httpClient(awsAsyncHttpClient)
+                .overrideConfiguration(overrideConfiguration(rateLimiter))
+                .build();
+    }
+
+    /**
+     * Provisioned concurrency: scheduled scaling of function aliases, sized from CloudWatch metrics.
+     */
+    @Bean
+    public ApplicationAutoScalingClient applicationAutoScalingClient(SdkHttpClient awsHttpClient,
+                                                                     AwsCredentialsProvider awsCredentialsProvider,
+                                                                     AwsRateLimiter rateLimiter) {
+        return ApplicationAutoScalingClient.builder()
+                .region(Region.of(region))
+                .credentialsProvider(awsCredentialsProvider)
+                .httpClient(awsHttpClient)
+                .overrideConfiguration(overrideConfiguration(rateLimiter))
+                .build();
+    }
+
+    @Bean
+    public CloudWatchClient cloudWatchClient(SdkHttpClient awsHttpClient,
+                                             AwsCredentialsProvider awsCredentialsProvider,
+                                             AwsRateLimiter rateLimiter) {
+        return CloudWatchClient.builder()
+                .region(Region.of(region))
+                .credentialsProvider(awsCredentialsProvider)
+                .httpClient(awsHttpClient)
+                .overrideConfiguration(overrideConfiguration(rateLimiter))
                 .build();
     }
 
@@ -43,5 +215,29 @@ public class AwsConfig {
     public String awsRegion() {
         return region;
     }
+
+    /**
+     * Shared by every client: the client-side rate limiter, and standard-mode retries with
+     * full-jitter backoff (longer for throttling errors). Standard mode's retry quota stops
+     * retrying while most calls to a service fail, so retries cannot pile up into a storm.
+     * Also used for the clients RegionalServices creates for other regions.
+     */
+    public ClientOverrideConfiguration overrideConfiguration(AwsRateLimiter rateLimiter) {
+        Duration maxBackoff = Duration.ofMillis(maxBackoffMs);
+        return ClientOverrideConfiguration.builder()
+                .addExecutionInterceptor(rateLimiter)
+                .retryPolicy(RetryPolicy.builder(RetryMode.STANDARD)
+                        .numRetries(maxRetries)
+                        .backoffStrategy(FullJitterBackoffStrategy.builder()
+                                .baseDelay(Duration.ofMillis(100))
+                                .maxBackoffTime(maxBackoff)
+                                .build())
+                        .throttlingBackoffStrategy(FullJitterBackoffStrategy.builder()
+                                .baseDelay(Duration.ofMillis(500))
+                                .maxBackoffTime(maxBackoff)
+                                .build())
+                        .build())
+                .build();
+    }
 }
 
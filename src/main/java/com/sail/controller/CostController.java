@@ -17,9 +17,10 @@ public class CostController {
     }
 
     @GetMapping("/{projectId}")
-    public ResponseEntity<CostResult> getCost(@PathVariable String projectId) {
+    public ResponseEntity<CostResult> getCost(@PathVariable String projectId,
+                                              @RequestParam(required = false) Integer provisionedConcurrency) {
         try {
-            CostResult result = costService.calculateCost(projectId);
+            CostResult result = costService.calculateCost(projectId, provisionedConcurrency);
             return ResponseEntity.ok(result);
         } catch (Exception e) {
             return ResponseEntity.status(500).build();
@@ -10,6 +10,8 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/deploy")
 @CrossOrigin(origins = {"http://localhost:5173", "http://localhost:3000"})
@@ -38,8 +40,18 @@ public class DeployController {
     }
 
     @PostMapping("/spring/{projectId}")
-    public ResponseEntity<DeployResult> deploySpring(@PathVariable String projectId) {
-        DeployResult result = deployService.deploy(projectId, "SPRINGBOOT");
+    public ResponseEntity<DeployResult> deploySpring(@PathVariable String projectId,
+                                                     @RequestParam(required = false) List<String> regions,
+                                                     @RequestParam(required = false) Double peakRps,
+                                                     @RequestParam(required = false) Double avgDurationMs) {
+        DeployResult result = deployService.deploy(projectId, "SPRINGBOOT", regions, peakRps, avgDurationMs);
+        saveHistory(projectId, result, "SPRINGBOOT");
+        return ResponseEntity.ok(result);
+    }
+
+    @PostMapping("/spring/{projectId}/resume")
+    public ResponseEntity<DeployResult> resumeSpring(@PathVariable String projectId) {
+        DeployResult result = deployService.resume(projectId);
         saveHistory(projectId, result, "SPRINGBOOT");
         return ResponseEntity.ok(result);
     }
@@ -55,6 +67,7 @@ public class DeployController {
         history.setLambdaName(result.getLambdaName());
         history.setApiUrl(result.getApiUrl());
         history.setRegion(region);
+        history.setBuildPath(result.getBuildPath());
         history.setStatus(result.getStatus());
         history.setErrorMessage(result.getErrorMessage());
         historyService.saveDeploymentHistory(history);
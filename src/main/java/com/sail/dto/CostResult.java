@@ -9,7 +9,11 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class CostResult {
     private String projectType;
+    private String apiTarget; // For Spring Boot: REST_API, HTTP_API or FUNCTION_URL
     private Double lambdaCost;
+    private Long lambdaInvocationsSaved; // For Spring Boot: monthly requests answered by the stage cache
+    private Integer provisionedConcurrency; // For Spring Boot: instances kept warm on the live alias
+    private Double provisionedConcurrencyCost; // For Spring Boot: charge for keeping them allocated
     private Double apiGatewayCost;
     private Double s3Cost;
     private Double total;
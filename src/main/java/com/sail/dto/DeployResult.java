@@ -4,6 +4,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Map;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -13,7 +15,10 @@ public class DeployResult {
     private String bucket; // For static
     private String lambdaName; // For Spring Boot
     private String apiUrl; // For Spring Boot
+    private Map<String, String> apiUrls; // For Spring Boot: API URL per region, the primary region first
     private String region;
+    private String buildPath; // For Spring Boot: JVM, NATIVE or JVM_FALLBACK
+    private String checkpointId; // For Spring Boot: deploy attempt, resumable if FAILED
     private String status; // SUCCESS or FAILED
     private String errorMessage; // If failed
 }
@@ -0,0 +1,73 @@
+package com.sail.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Progress of one Spring Boot deploy attempt: the completed steps and everything they
+ * produced, so a failed attempt can be resumed from its first incomplete step.
+ */
+@Entity
+@Table(name = "deploy_checkpoint")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeployCheckpoint {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private String id;
+
+    @Column(nullable = false)
+    private String projectId;
+
+    private String status; // IN_PROGRESS, FAILED or SUCCESS
+    private String completedSteps; // Comma-separated step names
+
+    // Function path
+    private String dbType;
+    private String handlerFqn;
+    private String packagingMode;
+    private String buildPath;
+    private String artifactPath;
+    private String artifactSha256; // Of the final package, checked before a resume reuses it
+    private String layerArns; // Comma-separated
+    @Lob
+    private String extraEnvironment; // JSON object
+    private Integer memorySizeMb;
+    private Integer timeoutSeconds;
+    private String functionName;
+    private String invokeArn; // Function or alias ARN the API target invokes
+    private Integer provisionedConcurrency; // Applied to the live alias by the "provisioned" step
+
+    // API path
+    private String apiTarget; // REST_API, HTTP_API or FUNCTION_URL
+    private String apiId; // REST or HTTP API id
+    private String apiDefinitionSha256; // Of the OpenAPI document applied to the API
+    private String apiUrl; // Stage URL or function URL
+
+    // Additional regions
+    @Lob
+    private String regionalDeployments; // JSON object: region -> layerArns, apiId, apiUrl, provisionedConcurrency
+
+    @Lob
+    @Column(name = "error_message")
+    private String errorMessage;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = createdAt;
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -30,6 +30,7 @@ public class DeploymentHistory {
     private String lambdaName;
     private String apiUrl;
     private String region;
+    private String buildPath; // JVM, NATIVE or JVM_FALLBACK (native build failed)
     private String status; // SUCCESS or FAILED
     @Lob
     @Column(name = "error_message")
@@ -22,5 +22,31 @@ public class ProjectInfo {
     private String projectType; // STATIC or SPRINGBOOT
     private String extractedPath;
     private String status; // RECEIVED, SCANNED, DEPLOYED, FAILED
+    private Long imageBytesSaved; // For static: bytes removed by image optimization
+    private Long imageVariantBytes; // For static: bytes of the generated width variants
+    private Integer lambdaMemoryMb; // For Spring Boot: deployed (or recommended) memorySize
+    private Integer lambdaTimeoutSeconds; // For Spring Boot: deployed (or recommended) timeout
+
+    // For Spring Boot: resources of the last successful deploy, reused by redeploys
+    private String lambdaFunctionName;
+    private String lambdaInvokeArn; // Function or alias ARN the API target invokes
+    private String apiTarget; // REST_API, HTTP_API or FUNCTION_URL
+    private String restApiId;
+    private String apiName; // Set when the API was taken from the warm pool (keeps its pool name)
+    private String apiBasePath; // Set when mounted on the shared REST API (restApiId is then the shared API)
+    private String apiDefinitionSha256; // OpenAPI document last applied to the REST API
+    private Integer apiCachedRoutes; // GET routes answered from the REST API stage cache
+    private Integer apiRoutes; // All routes the project maps, for the cached routes' share of traffic
+    private String httpApiId;
+    private String apiUrl; // Stage URL, HTTP API URL or function URL
+    @Lob
+    private String regionalApiIds; // JSON object: additional region -> REST or HTTP API id
+    private Integer provisionedConcurrency; // On the live alias in aws.region (0 = none)
+    @Lob
+    private String regionalProvisionedConcurrency; // JSON object: additional region -> concurrency
+
+    // For Spring Boot: traffic profile given with a deploy, used to size provisioned concurrency
+    private Double trafficPeakRps; // Peak requests per second
+    private Double trafficAvgDurationMs; // Average duration per request
 }
 
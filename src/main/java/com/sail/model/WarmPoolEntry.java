@@ -0,0 +1,40 @@
+package com.sail.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * A pre-provisioned function and API pair waiting to be claimed by a first deploy.
+ */
+@Entity
+@Table(name = "warm_pool_entry")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WarmPoolEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private String id;
+
+    private String status; // PROVISIONING or READY
+
+    private String functionName;
+    private String aliasName; // Set when the API target invokes an alias (SnapStart)
+    private String invokeArn; // Function or alias ARN the API target invokes
+    private String apiTarget; // REST_API, HTTP_API or FUNCTION_URL
+    private String apiId; // REST or HTTP API id, none for function URLs
+    private String apiName;
+    private String apiDefinitionSha256; // Of the placeholder OpenAPI document (REST APIs)
+    private String apiUrl;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,16 @@
+package com.sail.repository;
+
+import com.sail.model.DeployCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DeployCheckpointRepository extends JpaRepository<DeployCheckpoint, String> {
+
+    Optional<DeployCheckpoint> findFirstByProjectIdOrderByCreatedAtDesc(String projectId);
+
+    List<DeployCheckpoint> findByProjectIdAndStatus(String projectId, String status);
+}
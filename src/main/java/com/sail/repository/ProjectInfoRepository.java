@@ -6,5 +6,7 @@ import org.springframework.stereotype.Repository;
 
 @Repository
 public interface ProjectInfoRepository extends JpaRepository<ProjectInfo, String> {
+
+    long countByApiBasePathIsNotNullAndApiCachedRoutesGreaterThan(Integer cachedRoutes);
 }
 
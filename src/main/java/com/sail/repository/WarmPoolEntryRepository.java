@@ -0,0 +1,13 @@
+package com.sail.repository;
+
+import com.sail.model.WarmPoolEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface WarmPoolEntryRepository extends JpaRepository<WarmPoolEntry, String> {
+
+    List<WarmPoolEntry> findByStatusOrderByCreatedAtAsc(String status);
+}
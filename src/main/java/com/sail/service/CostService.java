@@ -1,5 +1,9 @@
 package com.sail.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sail.aws.ProvisionedConcurrencyService;
 import com.sail.dto.CostResult;
 import com.sail.model.ProjectInfo;
 import com.sail.repository.ProjectInfoRepository;
@@ -10,29 +14,74 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Map;
 
 @Service
 public class CostService {
 
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * API Gateway cache cluster size (GB) = price per hour, for every size it offers.
+     */
+    private static final String DEFAULT_CACHE_PRICES =
+            "0.5=0.020,1.6=0.038,6.1=0.200,13.5=0.250,28.4=0.500,58.2=1.000,118=1.900,237=3.800";
+
     private final ProjectInfoRepository projectInfoRepository;
+    private final ProvisionedConcurrencyService provisionedConcurrencyService;
     private final double lambdaCostPerMillion;
     private final double apiGatewayCostPerMillion;
+    private final double httpApiCostPerMillion;
     private final double s3StoragePerGB;
     private final double s3TransferPerGB;
+    private final double lambdaCostPerGbSecond;
+    private final double lambdaAvgDurationMs;
+    private final int lambdaDefaultMemoryMb;
+    private final double apiCacheHitRatio;
+    private final double apiCacheCostPerHour;
+    private final double provisionedCostPerGbSecond;
+    private final double provisionedDurationCostPerGbSecond;
 
     public CostService(ProjectInfoRepository projectInfoRepository,
+                       ProvisionedConcurrencyService provisionedConcurrencyService,
                        @Value("${cost.lambda.per.million.requests}") double lambdaCostPerMillion,
                        @Value("${cost.api.gateway.per.million.requests}") double apiGatewayCostPerMillion,
+                       @Value("${cost.http.api.per.million.requests:1.00}") double httpApiCostPerMillion,
                        @Value("${cost.s3.storage.per.gb}") double s3StoragePerGB,
-                       @Value("${cost.s3.transfer.per.gb}") double s3TransferPerGB) {
+                       @Value("${cost.s3.transfer.per.gb}") double s3TransferPerGB,
+                       @Value("${cost.lambda.per.gb.second:0.0000166667}") double lambdaCostPerGbSecond,
+                       @Value("${cost.lambda.avg.duration.ms:100}") double lambdaAvgDurationMs,
+                       @Value("${aws.lambda.memory.mb:512}") int lambdaDefaultMemoryMb,
+                       @Value("${cost.api.cache.hit.ratio:0.5}") double apiCacheHitRatio,
+                       @Value("${sail.api.cache.size.gb:0.5}") String apiCacheSizeGb,
+                       @Value("${cost.api.cache.per.hour:" + DEFAULT_CACHE_PRICES + "}") String apiCachePricesPerHour,
+                       @Value("${cost.lambda.provisioned.per.gb.second:0.0000041667}") double provisionedCostPerGbSecond,
+                       @Value("${cost.lambda.provisioned.duration.per.gb.second:0.0000097222}") double provisionedDurationCostPerGbSecond) {
         this.projectInfoRepository = projectInfoRepository;
+        this.provisionedConcurrencyService = provisionedConcurrencyService;
         this.lambdaCostPerMillion = lambdaCostPerMillion;
         this.apiGatewayCostPerMillion = apiGatewayCostPerMillion;
+        this.httpApiCostPerMillion = httpApiCostPerMillion;
         this.s3StoragePerGB = s3StoragePerGB;
         this.s3TransferPerGB = s3TransferPerGB;
+        this.lambdaCostPerGbSecond = lambdaCostPerGbSecond;
+        this.lambdaAvgDurationMs = lambdaAvgDurationMs;
+        this.lambdaDefaultMemoryMb = lambdaDefaultMemoryMb;
+        this.apiCacheHitRatio = apiCacheHitRatio;
+        this.apiCacheCostPerHour = cacheClusterPricePerHour(apiCacheSizeGb, apiCachePricesPerHour);
+        this.provisionedCostPerGbSecond = provisionedCostPerGbSecond;
+        this.provisionedDurationCostPerGbSecond = provisionedDurationCostPerGbSecond;
     }
 
     public CostResult calculateCost(String projectId) {
+        return calculateCost(projectId, null);
+    }
+
+    /**
+     * provisionedConcurrency (optional) replaces the deployed provisioned concurrency in every
+     * region, to compare the cost of keeping instances warm against on-demand cold starts.
+     */
+    public CostResult calculateCost(String projectId, Integer provisionedConcurrency) {
         ProjectInfo projectInfo = projectInfoRepository.findById(projectId)
                 .orElseThrow(() -> new RuntimeException("Project not found: " + projectId));
 
@@ -42,12 +91,13 @@ public class CostService {
         if ("STATIC".equals(projectInfo.getProjectType())) {
             calculateStaticCost(projectInfo, result);
         } else if ("SPRINGBOOT".equals(projectInfo.getProjectType())) {
-            calculateSpringBootCost(result);
+            calculateSpringBootCost(projectInfo, result, totalProvisionedConcurrency(projectInfo, provisionedConcurrency));
         }
 
         // Calculate total
         double total = (result.getLambdaCost() != null ? result.getLambdaCost() : 0) +
                       (result.getApiGatewayCost() != null ? result.getApiGatewayCost() : 0) +
+                      (result.getProvisionedConcurrencyCost() != null ? result.getProvisionedConcurrencyCost() : 0) +
                       (result.getS3Cost() != null ? result.getS3Cost() : 0);
         result.setTotal(total);
 
@@ -56,14 +106,22 @@ public class CostService {
 
     private void calculateStaticCost(ProjectInfo projectInfo, CostResult result) {
         try {
-            // Estimate storage size
-            double sizeGB = calculateDirectorySize(projectInfo.getExtractedPath()) / 1024.0;
+            // The extracted sources keep the original images; the optimized copy is what gets uploaded
+            double sourceMB = calculateDirectorySize(projectInfo.getExtractedPath());
+            double savedMB = megabytes(projectInfo.getImageBytesSaved());
+
+            // Estimate storage size (uploaded sources, less what image optimization removed,
+            // plus the width variants it added)
+            double optimizedRatio = optimizedTransferRatio(sourceMB, savedMB);
+            double sizeGB = (sourceMB * optimizedRatio + megabytes(projectInfo.getImageVariantBytes())) / 1024.0;
             
             // S3 storage cost (assuming 1GB storage)
             double storageCost = sizeGB * s3StoragePerGB;
             
-            // S3 transfer cost (assuming 10GB transfer per month)
-            double transferCost = 10.0 * s3TransferPerGB;
+            // S3 transfer cost (assuming 10GB transfer per month for the unoptimized site,
+            // scaled down by the bytes image optimization removed from each page load)
+            double transferGB = 10.0 * optimizedRatio;
+            double transferCost = transferGB * s3TransferPerGB;
             
             result.setS3Cost(storageCost + transferCost);
             result.setLambdaCost(0.0);
@@ -76,16 +134,117 @@ public class CostService {
         }
     }
 
-    private void calculateSpringBootCost(CostResult result) {
-        // Estimate: 1 million requests per month
-        double lambdaCost = lambdaCostPerMillion;
-        double apiGatewayCost = apiGatewayCostPerMillion;
-        
+    private void calculateSpringBootCost(ProjectInfo projectInfo, CostResult result, int provisionedConcurrency) {
+        // Estimate: 1 million requests per month, billed per request plus GB-seconds
+        // at the function's memorySize (profiled recommendation when available)
+        int memoryMb = projectInfo.getLambdaMemoryMb() != null ? projectInfo.getLambdaMemoryMb() : lambdaDefaultMemoryMb;
+        double memoryGb = memoryMb / 1024.0;
+        double gbSeconds = 1_000_000 * (lambdaAvgDurationMs / 1000.0) * memoryGb;
+
+        // Provisioned concurrency (all regions): billed per GB-second while allocated (around the
+        // clock, or the schedule's hours), and requests it serves bill duration at the lower
+        // provisioned rate - those in the active hours, up to what the provisioned instances can serve
+        int concurrency = provisionedConcurrency;
+        double provisionedCost = 0.0;
+        double provisionedShare = 0.0;
+        if (concurrency > 0) {
+            double activeHours = provisionedConcurrencyService.isEnabled()
+                    ? provisionedConcurrencyService.getActiveHoursPerMonth() : 730;
+            provisionedCost = concurrency * memoryGb * activeHours * 3600 * provisionedCostPerGbSecond;
+            double capacity = concurrency * activeHours * 3600 / (lambdaAvgDurationMs / 1000.0);
+            provisionedShare = Math.min(activeHours / 730, capacity / 1_000_000);
+        }
+        double lambdaCost = lambdaCostPerMillion + gbSeconds * (provisionedShare * provisionedDurationCostPerGbSecond
+                + (1 - provisionedShare) * lambdaCostPerGbSecond);
+
+        // Stage cache: hits on cached GET routes never invoke the function, but the cache
+        // cluster is billed per hour. Only the cached routes' share of the traffic (assumed
+        // even across routes) can hit the cache.
+        boolean cached = projectInfo.getApiCachedRoutes() != null && projectInfo.getApiCachedRoutes() > 0;
+        long invocationsSaved = cached ? Math.round(1_000_000 * apiCacheHitRatio * cachedTrafficShare(projectInfo)) : 0;
+        lambdaCost = lambdaCost * (1_000_000 - invocationsSaved) / 1_000_000;
+        double cacheClusterCost = 0.0;
+        if (cached) {
+            // The shared API has one cluster for the environment, split across the projects it caches for
+            long sharing = projectInfo.getApiBasePath() != null
+                    ? Math.max(1, projectInfoRepository.countByApiBasePathIsNotNullAndApiCachedRoutesGreaterThan(0))
+                    : 1;
+            cacheClusterCost = apiCacheCostPerHour * 730 / sharing;
+        }
+
+        // Request charge of the deployed API target; function URLs only bill the Lambda invocation
+        String apiTarget = projectInfo.getApiTarget() != null ? projectInfo.getApiTarget() : "REST_API";
+        double apiGatewayCost;
+        if ("HTTP_API".equals(apiTarget)) {
+            apiGatewayCost = httpApiCostPerMillion;
+        } else if ("FUNCTION_URL".equals(apiTarget)) {
+            apiGatewayCost = 0.0;
+        } else {
+            apiGatewayCost = apiGatewayCostPerMillion + cacheClusterCost;
+        }
+
+        result.setApiTarget(apiTarget);
+        result.setLambdaInvocationsSaved(invocationsSaved);
         result.setLambdaCost(lambdaCost);
+        result.setProvisionedConcurrency(concurrency);
+        result.setProvisionedConcurrencyCost(provisionedCost);
         result.setApiGatewayCost(apiGatewayCost);
         result.setS3Cost(0.01); // Minimal S3 for logs
     }
 
+    /**
+     * Provisioned concurrency in aws.region plus every additional region; an override applies
+     * to each of them.
+     */
+    private int totalProvisionedConcurrency(ProjectInfo projectInfo, Integer override) {
+        Map<String, Integer> regional = Map.of();
+        if (projectInfo.getRegionalProvisionedConcurrency() != null) {
+            try {
+                regional = OBJECT_MAPPER.readValue(projectInfo.getRegionalProvisionedConcurrency(),
+                        new TypeReference<Map<String, Integer>>() { });
+            } catch (JsonProcessingException e) {
+                // Count aws.region only
+            }
+        }
+        if (override != null) {
+            return override * (1 + regional.size());
+        }
+        int total = projectInfo.getProvisionedConcurrency() != null ? projectInfo.getProvisionedConcurrency() : 0;
+        for (int concurrency : regional.values()) {
+            total += concurrency;
+        }
+        return total;
+    }
+
+    /**
+     * Hourly price of the configured cache cluster size, from comma-separated size=price pairs.
+     */
+    private static double cacheClusterPricePerHour(String sizeGb, String pricesPerHour) {
+        for (String entry : pricesPerHour.split(",")) {
+            String[] pair = entry.split("=");
+            if (pair.length == 2 && Double.parseDouble(pair[0].trim()) == Double.parseDouble(sizeGb.trim())) {
+                return Double.parseDouble(pair[1].trim());
+            }
+        }
+        throw new IllegalArgumentException("No cost.api.cache.per.hour price for cache cluster size " + sizeGb + " GB");
+    }
+
+    private double cachedTrafficShare(ProjectInfo projectInfo) {
+        Integer routes = projectInfo.getApiRoutes();
+        if (routes == null || routes < projectInfo.getApiCachedRoutes()) {
+            return 1.0;
+        }
+        return projectInfo.getApiCachedRoutes() / (double) routes;
+    }
+
+    private double optimizedTransferRatio(double sizeMB, double savedMB) {
+        return savedMB > 0 && sizeMB > savedMB ? (sizeMB - savedMB) / sizeMB : 1.0;
+    }
+
+    private double megabytes(Long bytes) {
+        return bytes != null && bytes > 0 ? bytes / (1024.0 * 1024.0) : 0.0;
+    }
+
     private double calculateDirectorySize(String directoryPath) throws IOException {
         Path path = Paths.get(directoryPath);
         return Files.walk(path)
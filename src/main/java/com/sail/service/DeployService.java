@@ -3,6 +3,8 @@ package com.sail.service;
 import com.sail.dto.DeployResult;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Service
 public class DeployService {
 
@@ -16,10 +18,26 @@ public class DeployService {
     }
 
     public DeployResult deploy(String projectId, String deploymentType) {
+        return deploy(projectId, deploymentType, List.of());
+    }
+
+    /**
+     * Spring Boot deploys also go to the given additional regions (empty = configured default).
+     */
+    public DeployResult deploy(String projectId, String deploymentType, List<String> regions) {
+        return deploy(projectId, deploymentType, regions, null, null);
+    }
+
+    /**
+     * Spring Boot deploys with a traffic profile (peak requests per second, average duration),
+     * kept for the project and used to size provisioned concurrency.
+     */
+    public DeployResult deploy(String projectId, String deploymentType, List<String> regions,
+                               Double peakRps, Double avgDurationMs) {
         if ("STATIC".equals(deploymentType)) {
             return staticDeployService.deployStatic(projectId);
         } else if ("SPRINGBOOT".equals(deploymentType)) {
-            return springDeployService.deploySpringBoot(projectId);
+            return springDeployService.deploySpringBoot(projectId, regions, peakRps, avgDurationMs);
         } else {
             DeployResult result = new DeployResult();
             result.setStatus("FAILED");
@@ -27,5 +45,12 @@ public class DeployService {
             return result;
         }
     }
+
+    /**
+     * Continues the latest failed Spring Boot deploy of the project from its checkpoint.
+     */
+    public DeployResult resume(String projectId) {
+        return springDeployService.resumeSpringBoot(projectId);
+    }
 }
 
@@ -0,0 +1,248 @@
+package com.sail.service;
+
+import com.sail.utils.ZipExtractor;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/**
+ * Build stage that pre-bakes the in-memory H2 database of a function.
+ *
+ * The app is started once locally against a file-based copy of its H2 URL, so Hibernate
+ * (ddl-auto=create) and data.sql build the schema and seed data; the result is dumped with
+ * H2's SCRIPT command and bundled into the package. In Lambda the database is then
+ * restored with INIT=RUNSCRIPT and ddl-auto=none, so cold starts skip schema generation.
+ */
+@Service
+public class H2SnapshotService {
+
+    static final String SNAPSHOT_NAME = "sail-h2-snapshot.sql";
+    private static final String MEM_URL_PREFIX = "jdbc:h2:mem:";
+
+    private final LocalInvocationService localInvocationService;
+    private final ZipExtractor zipExtractor;
+
+    public H2SnapshotService(LocalInvocationService localInvocationService,
+                             ZipExtractor zipExtractor) {
+        this.localInvocationService = localInvocationService;
+        this.zipExtractor = zipExtractor;
+    }
+
+    /**
+     * Creates the snapshot, bundles it into the artifact and returns the environment
+     * overrides that load it. Returns null (artifact untouched) when the function does
+     * not use an in-memory H2 database with JPA/JDBC or any step fails.
+     */
+    public SnapshotResult createAndBundleSnapshot(String projectPath,
+                                                  File artifact,
+                                                  LambdaAdapterService.PackagingMode packagingMode,
+                                                  String probeClass,
+                                                  Map<String, String> environment) {
+        String memUrl = environment.get("SPRING_DATASOURCE_URL");
+        if (memUrl == null || !memUrl.startsWith(MEM_URL_PREFIX) || !usesRelationalPersistence(projectPath)) {
+            System.out.println("H2 snapshot: skipped (no in-memory H2 with JPA/JDBC)");
+            return null;
+        }
+
+        try {
+            Path workDir = Paths.get(projectPath, "target", "sail-h2");
+            deleteRecursively(workDir);
+            Files.createDirectories(workDir);
+            Path snapshot = Paths.get(projectPath, "target", SNAPSHOT_NAME);
+            Files.deleteIfExists(snapshot);
+
+            // 1. Training run: same settings, but a file database that outlives the process
+            String fileUrl = "jdbc:h2:file:" + workDir.toAbsolutePath().resolve("db").toString().replace('\\', '/')
+                    + memUrl.substring(memUrlNameEnd(memUrl));
+            Map<String, String> trainingEnv = new LinkedHashMap<>(environment);
+            trainingEnv.put("SPRING_DATASOURCE_URL", fileUrl);
+            // data.sql is only applied to embedded (in-memory) databases by default
+            trainingEnv.put("SPRING_SQL_INIT_MODE", "always");
+
+            LocalInvocationService.ProbeResult training = localInvocationService.runProbe(
+                    projectPath, artifact, packagingMode, probeClass, trainingEnv, List.of(), null);
+            if (!training.isSuccessful()) {
+                System.out.println("H2 snapshot: training run failed (exit code " + training.getExitCode() + ")");
+                return null;
+            }
+
+            // 2. Dump schema + data with the project's own H2 version
+            String classpath = localInvocationService.buildClasspath(projectPath, artifact, packagingMode);
+            writeScript(classpath, fileUrl, datasourceCredentials(projectPath, environment), snapshot);
+
+            // 3. Bundle into the package root (classpath root in Lambda)
+            zipExtractor.addEntry(artifact, SNAPSHOT_NAME, snapshot);
+            Path exploded = Paths.get(projectPath, "target", "lambda-exploded");
+            if (packagingMode == LambdaAdapterService.PackagingMode.LIB_ZIP && Files.isDirectory(exploded)) {
+                Files.copy(snapshot, exploded.resolve(SNAPSHOT_NAME), StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            SnapshotResult result = new SnapshotResult();
+            result.snapshotBytes = Files.size(snapshot);
+            result.environment = snapshotEnvironment(memUrl);
+
+            // 4. Measure init locally with schema generation vs. with the snapshot
+            Map<String, String> snapshotEnv = new LinkedHashMap<>(environment);
+            snapshotEnv.putAll(result.environment);
+            result.baselineInitMs = localInvocationService.runProbe(
+                    projectPath, artifact, packagingMode, probeClass, environment, List.of(), null).getInitMs();
+            result.snapshotInitMs = localInvocationService.runProbe(
+                    projectPath, artifact, packagingMode, probeClass, snapshotEnv, List.of(), null).getInitMs();
+
+            System.out.println("H2 snapshot: " + result.snapshotBytes + " bytes, local init "
+                    + result.baselineInitMs + " ms -> " + result.snapshotInitMs + " ms");
+            return result;
+
+        } catch (Exception e) {
+            System.out.println("H2 snapshot: skipped: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Lambda handles one request at a time per environment, so a single pooled connection
+     * that is never recycled is enough; it also guarantees INIT (which H2 runs for every
+     * new connection) restores the snapshot exactly once.
+     */
+    private Map<String, String> snapshotEnvironment(String memUrl) {
+        Map<String, String> env = new LinkedHashMap<>();
+        env.put("SPRING_DATASOURCE_URL", memUrl + ";INIT=RUNSCRIPT FROM 'classpath:" + SNAPSHOT_NAME + "'");
+        env.put("SPRING_JPA_HIBERNATE_DDL_AUTO", "none");
+        env.put("SPRING_SQL_INIT_MODE", "never");
+        env.put("SPRING_DATASOURCE_HIKARI_MAXIMUM_POOL_SIZE", "1");
+        env.put("SPRING_DATASOURCE_HIKARI_MINIMUM_IDLE", "1");
+        env.put("SPRING_DATASOURCE_HIKARI_MAX_LIFETIME", "0");
+        return env;
+    }
+
+    private void writeScript(String classpath, String fileUrl, Properties credentials, Path snapshot)
+            throws Exception {
+        try (URLClassLoader loader = new URLClassLoader(toUrls(classpath), null)) {
+            Driver driver = (Driver) Class.forName("org.h2.Driver", true, loader)
+                    .getDeclaredConstructor().newInstance();
+
+            try (Connection connection = driver.connect(fileUrl + ";IFEXISTS=TRUE", credentials);
+                 Statement statement = connection.createStatement()) {
+                statement.execute("SCRIPT TO '" + snapshot.toAbsolutePath().toString().replace('\\', '/') + "'");
+            }
+        }
+    }
+
+    /**
+     * User/password the app created the database with: function environment first,
+     * then the project's application.properties, then H2's defaults.
+     */
+    private Properties datasourceCredentials(String projectPath, Map<String, String> environment) {
+        Properties projectProps = new Properties();
+        Path propsPath = Paths.get(projectPath, "src", "main", "resources", "application.properties");
+        if (Files.exists(propsPath)) {
+            try (InputStream in = Files.newInputStream(propsPath)) {
+                projectProps.load(in);
+            } catch (IOException e) {
+                // Fall back to defaults
+            }
+        }
+
+        Properties credentials = new Properties();
+        credentials.put("user", environment.getOrDefault("SPRING_DATASOURCE_USERNAME",
+                projectProps.getProperty("spring.datasource.username", "sa")));
+        credentials.put("password", environment.getOrDefault("SPRING_DATASOURCE_PASSWORD",
+                projectProps.getProperty("spring.datasource.password", "")));
+        return credentials;
+    }
+
+    /**
+     * Expands a java -cp string (including "dir/*" entries) into class loader URLs.
+     */
+    private URL[] toUrls(String classpath) throws IOException {
+        List<URL> urls = new ArrayList<>();
+        for (String entry : classpath.split(File.pathSeparator)) {
+            if (entry.endsWith("*")) {
+                Path dir = Paths.get(entry.substring(0, entry.length() - 1));
+                try (Stream<Path> jars = Files.list(dir)) {
+                    for (Path jar : jars.filter(p -> p.toString().endsWith(".jar")).sorted().toList()) {
+                        urls.add(jar.toUri().toURL());
+                    }
+                }
+            } else {
+                urls.add(Paths.get(entry).toUri().toURL());
+            }
+        }
+        return urls.toArray(new URL[0]);
+    }
+
+    /**
+     * Index where the database name of a jdbc:h2:mem: URL ends (start of ";OPTIONS").
+     */
+    private int memUrlNameEnd(String memUrl) {
+        int idx = memUrl.indexOf(';');
+        return idx == -1 ? memUrl.length() : idx;
+    }
+
+    private boolean usesRelationalPersistence(String projectPath) {
+        try {
+            String pom = Files.readString(Paths.get(projectPath, "pom.xml"));
+            return pom.contains("spring-boot-starter-data-jpa") || pom.contains("spring-boot-starter-jdbc");
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    /**
+     * Outcome of the snapshot stage.
+     */
+    public static class SnapshotResult {
+        private long snapshotBytes;
+        private long baselineInitMs;
+        private long snapshotInitMs;
+        private Map<String, String> environment;
+
+        public long getSnapshotBytes() {
+            return snapshotBytes;
+        }
+
+        public long getBaselineInitMs() {
+            return baselineInitMs;
+        }
+
+        public long getSnapshotInitMs() {
+            return snapshotInitMs;
+        }
+
+        /**
+         * Lambda environment overrides that restore the snapshot instead of generating the schema.
+         */
+        public Map<String, String> getEnvironment() {
+            return environment;
+        }
+    }
+}
@@ -0,0 +1,468 @@
+package com.sail.service;
+
+import com.sail.utils.FileUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Optimizes JPEG and PNG images of a static site before it is uploaded to S3.
+ * The site is copied to an output directory first, so the uploaded sources are never
+ * rewritten and every deploy starts again from the original images:
+ *  - recompresses oversized images (only kept when the result is smaller)
+ *  - generates downscaled width variants next to the image, e.g. hero-480w.jpg,
+ *    and adds them as a srcset to the site's img tags
+ *
+ * Images are processed on a fixed pool with one worker per core; each worker
+ * holds at most one decoded image at a time, which bounds memory usage.
+ */
+@Service
+public class ImageOptimizationService {
+
+    private static final Pattern IMG_TAG = Pattern.compile("<img\\b[^>]*>", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SRC_ATTRIBUTE =
+            Pattern.compile("\\ssrc\\s*=\\s*([\"'])([^\"']+)\\1", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SRCSET_ATTRIBUTE = Pattern.compile("\\ssrcset\\s*=", Pattern.CASE_INSENSITIVE);
+
+    private final FileUtils fileUtils;
+    private final boolean enabled;
+    private final long minBytes;
+    private final float jpegQuality;
+    private final List<Integer> variantWidths;
+    private final int threads;
+
+    public ImageOptimizationService(FileUtils fileUtils,
+                                    @Value("${sail.static.image.optimization.enabled:true}") boolean enabled,
+                                    @Value("${sail.static.image.min.bytes:204800}") long minBytes,
+                                    @Value("${sail.static.image.jpeg.quality:0.8}") float jpegQuality,
+                                    @Value("${sail.static.image.variant.widths:480,960,1600}") String variantWidths,
+                                    @Value("${sail.static.image.threads:0}") int threads) {
+        this.fileUtils = fileUtils;
+        this.enabled = enabled;
+        this.minBytes = minBytes;
+        this.jpegQuality = jpegQuality;
+        this.variantWidths = Arrays.stream(variantWidths.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .map(Integer::parseInt)
+                .sorted()
+                .collect(Collectors.toList());
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Copies the site to outputPath and optimizes every oversized JPEG/PNG in the copy.
+     * Never fails the deployment: images that cannot be processed are left untouched,
+     * and when the copy itself fails the report points back at the original site.
+     *
+     * @return report whose site root is the directory to upload
+     */
+    public OptimizationReport optimizeSite(String siteRootPath, String outputPath) {
+        OptimizationReport report = new OptimizationReport(siteRootPath);
+        if (!enabled) {
+            return report;
+        }
+
+        Path root = Paths.get(outputPath);
+        List<Path> images;
+        try {
+            copySite(Paths.get(siteRootPath), root);
+            // Collected before any variant is written, so only the site's own images are processed
+            try (Stream<Path> paths = Files.walk(root)) {
+                images = paths.filter(Files::isRegularFile)
+                        .filter(this::isOptimizableImage)
+                        .collect(Collectors.toList());
+            }
+        } catch (IOException e) {
+            System.err.println("Warning: Could not prepare images in " + siteRootPath + ": " + e.getMessage());
+            return report;
+        }
+        report.siteRootPath = root.toString();
+
+        if (images.isEmpty()) {
+            return report;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, images.size()));
+        try {
+            List<Future<ImageResult>> futures = new ArrayList<>();
+            for (Path image : images) {
+                futures.add(executor.submit(() -> optimizeImage(image)));
+            }
+            for (Future<ImageResult> future : futures) {
+                try {
+                    report.add(future.get());
+                } catch (Exception e) {
+                    System.err.println("Warning: Image optimization failed: " + e.getMessage());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        if (!report.srcsets.isEmpty()) {
+            addSrcsets(root, report);
+        }
+
+        System.out.println("Image optimization: " + report.getImagesOptimized() + " recompressed, "
+                + report.getVariantsCreated() + " variants in " + report.getHtmlFilesUpdated() + " HTML files, "
+                + report.getBytesBefore() + " -> " + report.getBytesAfter() + " bytes, "
+                + report.getVariantBytes() + " variant bytes");
+        return report;
+    }
+
+    private void copySite(Path source, Path target) throws IOException {
+        fileUtils.deleteDirectory(target);
+        try (Stream<Path> paths = Files.walk(source)) {
+            for (Path path : paths.collect(Collectors.toList())) {
+                Path copy = target.resolve(source.relativize(path).toString());
+                if (Files.isDirectory(path)) {
+                    Files.createDirectories(copy);
+                } else {
+                    Files.copy(path, copy);
+                }
+            }
+        }
+    }
+
+    private ImageResult optimizeImage(Path image) {
+        ImageResult result = new ImageResult(image);
+        try {
+            long originalSize = Files.size(image);
+            result.bytesBefore = originalSize;
+            result.bytesAfter = originalSize;
+
+            if (originalSize < minBytes) {
+                return result;
+            }
+
+            String format = formatOf(image);
+            // ImageIO drops EXIF metadata, so a re-encoded rotated photo would display sideways
+            if ("jpeg".equals(format) && jpegOrientation(image) != 1) {
+                return result;
+            }
+
+            BufferedImage decoded = ImageIO.read(image.toFile());
+            if (decoded == null) {
+                return result;
+            }
+            result.width = decoded.getWidth();
+
+            // 1. Recompress, keeping the original if it is already smaller
+            byte[] recompressed = encode(decoded, format);
+            if (recompressed.length < originalSize) {
+                Files.write(image, recompressed);
+                result.bytesAfter = recompressed.length;
+                result.optimized = true;
+            }
+
+            // 2. Downscaled width variants (never upscale, never overwrite a file the site ships)
+            for (int width : variantWidths) {
+                if (width >= decoded.getWidth()) {
+                    break;
+                }
+                Path variant = variantPath(image, width);
+                if (Files.exists(variant)) {
+                    continue;
+                }
+                BufferedImage scaled = scaleToWidth(decoded, width, format);
+                byte[] encoded = encode(scaled, format);
+                Files.write(variant, encoded);
+                scaled.flush();
+                result.variants.put(width, variant);
+                result.variantBytes += encoded.length;
+            }
+
+            decoded.flush();
+        } catch (Exception e) {
+            System.err.println("Warning: Could not optimize image " + image + ": " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Adds srcset/sizes to every img tag of the copied site whose src is an image with
+     * generated variants. Tags that already declare a srcset are left alone.
+     */
+    private void addSrcsets(Path root, OptimizationReport report) {
+        List<Path> htmlFiles;
+        try (Stream<Path> paths = Files.walk(root)) {
+            htmlFiles = paths.filter(Files::isRegularFile)
+                    .filter(p -> p.getFileName().toString().toLowerCase().endsWith(".html"))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            System.err.println("Warning: Could not scan HTML files in " + root + ": " + e.getMessage());
+            return;
+        }
+
+        for (Path html : htmlFiles) {
+            try {
+                String content = Files.readString(html);
+                Matcher tags = IMG_TAG.matcher(content);
+                StringBuilder rewritten = new StringBuilder();
+                boolean changed = false;
+                while (tags.find()) {
+                    String tag = tags.group();
+                    String srcset = SRCSET_ATTRIBUTE.matcher(tag).find() ? null : srcsetFor(root, html, tag, report);
+                    if (srcset != null) {
+                        int end = tag.endsWith("/>") ? tag.length() - 2 : tag.length() - 1;
+                        tag = tag.substring(0, end).stripTrailing()
+                                + " srcset=\"" + srcset + "\" sizes=\"100vw\"" + tag.substring(end);
+                        changed = true;
+                    }
+                    tags.appendReplacement(rewritten, Matcher.quoteReplacement(tag));
+                }
+                tags.appendTail(rewritten);
+                if (changed) {
+                    Files.writeString(html, rewritten.toString());
+                    report.htmlFilesUpdated++;
+                }
+            } catch (IOException e) {
+                System.err.println("Warning: Could not add srcset to " + html + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private String srcsetFor(Path root, Path html, String tag, OptimizationReport report) {
+        Matcher src = SRC_ATTRIBUTE.matcher(tag);
+        if (!src.find()) {
+            return null;
+        }
+        String url = src.group(2).trim();
+        if (url.contains("://") || url.startsWith("//") || url.startsWith("data:")
+                || url.contains("?") || url.contains("#")) {
+            return null;
+        }
+
+        Path image = url.startsWith("/")
+                ? root.resolve(url.substring(1)).normalize()
+                : html.getParent().resolve(url).normalize();
+        ImageResult result = report.srcsets.get(image);
+        if (result == null) {
+            return null;
+        }
+
+        String directory = url.substring(0, url.lastIndexOf('/') + 1);
+        List<String> candidates = new ArrayList<>();
+        result.variants.forEach((width, variant) ->
+                candidates.add(directory + variant.getFileName() + " " + width + "w"));
+        candidates.add(url + " " + result.width + "w");
+        return String.join(", ", candidates);
+    }
+
+    /**
+     * EXIF orientation tag of a JPEG (1 = upright, also when the file has no EXIF block).
+     */
+    private int jpegOrientation(Path image) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(image)))) {
+            if (in.readUnsignedShort() != 0xFFD8) {
+                return 1;
+            }
+            while (true) {
+                int marker = in.readUnsignedShort();
+                // EXIF lives in APP1 before the image data (start of scan)
+                if ((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA) {
+                    return 1;
+                }
+                byte[] segment = new byte[in.readUnsignedShort() - 2];
+                in.readFully(segment);
+                if (marker == 0xFFE1 && segment.length > 14
+                        && "Exif".equals(new String(segment, 0, 4, StandardCharsets.US_ASCII))) {
+                    return exifOrientation(ByteBuffer.wrap(segment, 6, segment.length - 6).slice());
+                }
+            }
+        }
+    }
+
+    private int exifOrientation(ByteBuffer tiff) {
+        try {
+            tiff.order(tiff.getShort(0) == 0x4949 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+            int ifd = tiff.getInt(4);
+            int entries = tiff.getShort(ifd) & 0xFFFF;
+            for (int i = 0; i < entries; i++) {
+                int entry = ifd + 2 + i * 12;
+                if ((tiff.getShort(entry) & 0xFFFF) == 0x0112) {
+                    return tiff.getShort(entry + 8) & 0xFFFF;
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // Truncated EXIF block; treat as upright
+        }
+        return 1;
+    }
+
+    private byte[] encode(BufferedImage image, String format) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            throw new IOException("No ImageIO writer for format " + format);
+        }
+        ImageWriter writer = writers.next();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                if ("jpeg".equals(format)) {
+                    param.setCompressionQuality(jpegQuality);
+                } else {
+                    // PNG is lossless; 0.0 selects the strongest deflate level
+                    param.setCompressionQuality(0.0f);
+                }
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private BufferedImage scaleToWidth(BufferedImage source, int width, String format) {
+        int height = Math.max(1, (int) Math.round(source.getHeight() * (width / (double) source.getWidth())));
+        int type = "jpeg".equals(format) ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+
+        BufferedImage scaled = new BufferedImage(width, height, type);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    private Path variantPath(Path image, int width) {
+        String name = image.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return image.resolveSibling(name.substring(0, dot) + "-" + width + "w" + name.substring(dot));
+    }
+
+    private boolean isOptimizableImage(Path p) {
+        String name = p.getFileName().toString().toLowerCase();
+        return name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".png");
+    }
+
+    private String formatOf(Path image) {
+        return image.getFileName().toString().toLowerCase().endsWith(".png") ? "png" : "jpeg";
+    }
+
+    private static class ImageResult {
+        final Path image;
+        long bytesBefore;
+        long bytesAfter;
+        long variantBytes;
+        boolean optimized;
+        int width;
+        // Generated variant files by width, ascending
+        final Map<Integer, Path> variants = new TreeMap<>();
+
+        ImageResult(Path image) {
+            this.image = image;
+        }
+    }
+
+    /**
+     * Aggregated result of one optimization run.
+     */
+    public static class OptimizationReport {
+        private String siteRootPath;
+        private long bytesBefore;
+        private long bytesAfter;
+        private long variantBytes;
+        private int imagesOptimized;
+        private int variantsCreated;
+        private int htmlFilesUpdated;
+        // Images with generated variants, by normalized path in the copied site
+        private final Map<Path, ImageResult> srcsets = new ConcurrentHashMap<>();
+
+        private OptimizationReport(String siteRootPath) {
+            this.siteRootPath = siteRootPath;
+        }
+
+        private synchronized void add(ImageResult result) {
+            bytesBefore += result.bytesBefore;
+            bytesAfter += result.bytesAfter;
+            variantBytes += result.variantBytes;
+            if (result.optimized) {
+                imagesOptimized++;
+            }
+            variantsCreated += result.variants.size();
+            if (!result.variants.isEmpty()) {
+                srcsets.put(result.image.normalize(), result);
+            }
+        }
+
+        /**
+         * Directory to upload: the optimized copy, or the original site when nothing was copied.
+         */
+        public String getSiteRootPath() {
+            return siteRootPath;
+        }
+
+        public long getBytesBefore() {
+            return bytesBefore;
+        }
+
+        public long getBytesAfter() {
+            return bytesAfter;
+        }
+
+        /**
+         * Bytes of the generated width variants; uploaded with the site, not part of bytesAfter.
+         */
+        public long getVariantBytes() {
+            return variantBytes;
+        }
+
+        public int getImagesOptimized() {
+            return imagesOptimized;
+        }
+
+        public int getVariantsCreated() {
+            return variantsCreated;
+        }
+
+        public int getHtmlFilesUpdated() {
+            return htmlFilesUpdated;
+        }
+
+        public long getBytesSaved() {
+            return bytesBefore - bytesAfter;
+        }
+    }
+}
@@ -1,11 +1,23 @@
 package com.sail.service;
 
+import com.sail.utils.EndpointScanner;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.YamlPropertiesFactoryBean;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
@@ -15,13 +27,184 @@ import java.util.stream.Stream;
  *  - creating a StreamLambdaHandler in the same package
  *  - injecting a global CORS configuration class (SailCorsConfig) into the project
  *
+ * Projects that only expose Function/Supplier/Consumer beans (no controllers) are
+ * instead deployed behind Spring Cloud Function's FunctionInvoker with a web-less context.
+ *
  * Returns the fully qualified handler string to use in Lambda:
  *   e.g. "com.example.taskmanager.StreamLambdaHandler::handleRequest"
  */
 @Service
 public class LambdaAdapterService {
 
+    /**
+     * How the build output is packaged for Lambda.
+     *  SHADED  - single uber-jar built by maven-shade-plugin
+     *  LAYERED - app classes jar + dependency jars copied to target/lambda-layer/java/lib,
+     *            published separately as a shared Lambda layer
+     *  LIB_ZIP - Lambda-native zip built by maven-assembly-plugin: classes at the root,
+     *            dependency jars unmodified under lib/ (no shading/merging)
+     */
+    public enum PackagingMode {
+        SHADED, LAYERED, LIB_ZIP
+    }
+
+    /**
+     * Cold-start profile of the generated handler.
+     *  STANDARD  - Spring context booted synchronously in the static initializer
+     *  OPTIMIZED - async container initialization, lazy beans, no JMX/banner and
+     *              unused auto-configurations excluded (JVM flags: LambdaJvmTuningService)
+     */
+    public enum ColdStartProfile {
+        STANDARD, OPTIMIZED
+    }
+
+    /**
+     * How the project is compiled for Lambda.
+     *  JVM    - regular Maven build, deployed on the managed Java runtime
+     *  NATIVE - Spring AOT + GraalVM native-image executable, deployed on the
+     *           provided.al2023 custom runtime (falls back to JVM if the build fails)
+     */
+    public enum BuildBackend {
+        JVM, NATIVE
+    }
+
+    /**
+     * How the function is exposed over HTTP.
+     *  REST_API     - API Gateway REST API (payload format 1.0, CORS via MOCK OPTIONS methods)
+     *  HTTP_API     - API Gateway HTTP API (payload format 2.0, native CORS), cheaper per request
+     *  FUNCTION_URL - Lambda function URL (payload format 2.0, native CORS), no gateway hop
+     */
+    public enum ApiTarget {
+        REST_API, HTTP_API, FUNCTION_URL
+    }
+
+    static final String NATIVE_PROFILE_ID = "sail-native";
+    static final String BASE_PATH_ENV = "SAIL_BASE_PATH";
+    static final String NATIVE_IMAGE_NAME = "sail-native";
+    static final String FUNCTION_INVOKER_CLASS = "org.springframework.cloud.function.adapter.aws.FunctionInvoker";
+    static final String GENERATED_MARKER = "Automatically generated by SAIL.";
+    static final String PROBE_CLASS_SIMPLE_NAME = "SailLocalProbe";
+    // Probe source directory in the project root, outside the Maven sources
+    static final String PROBE_SOURCE_DIR = "sail-probe";
+
+    private final EndpointScanner endpointScanner;
+    private final PackagingMode packagingMode;
+    private final ColdStartProfile coldStartProfile;
+    private final boolean snapStartEnabled;
+    private final BuildBackend buildBackend;
+    private final boolean functionInvokerEnabled;
+    private final ApiTarget apiTarget;
+
+    public LambdaAdapterService(EndpointScanner endpointScanner,
+                                @Value("${sail.lambda.packaging:SHADED}") String packagingMode,
+                                @Value("${sail.lambda.coldstart.profile:STANDARD}") String coldStartProfile,
+                                @Value("${sail.lambda.snapstart.enabled:false}") boolean snapStartEnabled,
+                                @Value("${sail.lambda.build.backend:JVM}") String buildBackend,
+                                @Value("${sail.lambda.function.invoker.enabled:true}") boolean functionInvokerEnabled,
+                                @Value("${sail.api.target:REST_API}") String apiTarget) {
+        this.endpointScanner = endpointScanner;
+        this.packagingMode = PackagingMode.valueOf(packagingMode.trim().toUpperCase());
+        this.coldStartProfile = ColdStartProfile.valueOf(coldStartProfile.trim().toUpperCase());
+        this.snapStartEnabled = snapStartEnabled;
+        this.buildBackend = BuildBackend.valueOf(buildBackend.trim().toUpperCase());
+        this.functionInvokerEnabled = functionInvokerEnabled;
+        this.apiTarget = ApiTarget.valueOf(apiTarget.trim().toUpperCase());
+    }
+
+    public ApiTarget getApiTarget() {
+        return apiTarget;
+    }
+
+    /**
+     * HTTP APIs and function URLs send payload format 2.0 events.
+     */
+    private boolean usesHttpApiV2Payload() {
+        return apiTarget != ApiTarget.REST_API;
+    }
+
+    public BuildBackend getBuildBackend() {
+        return buildBackend;
+    }
+
+    public PackagingMode getPackagingMode() {
+        return packagingMode;
+    }
+
+    public ColdStartProfile getColdStartProfile() {
+        return coldStartProfile;
+    }
+
+    /**
+     * Name of the local probe class (default package), compiled by LocalInvocationService.
+     */
+    public String getProbeClassName() {
+        return PROBE_CLASS_SIMPLE_NAME;
+    }
+
+    public boolean isFunctionInvokerHandler(String handlerFqn) {
+        return handlerFqn.startsWith(FUNCTION_INVOKER_CLASS + "::");
+    }
+
+    /**
+     * Lambda environment for FunctionInvoker deployments: the main class to boot (the shaded
+     * jar has no Start-Class), no web server, and the function bean to expose.
+     */
+    public Map<String, String> getFunctionInvokerEnvironment(String projectRootPath) throws IOException {
+        Map<String, String> env = new LinkedHashMap<>();
+
+        Path mainAppPath = findSpringBootApplicationClass(Paths.get(projectRootPath));
+        if (mainAppPath != null) {
+            env.put("MAIN_CLASS", extractPackageName(mainAppPath) + "."
+                    + mainAppPath.getFileName().toString().replace(".java", ""));
+        }
+        env.put("SPRING_MAIN_WEB_APPLICATION_TYPE", "none");
+
+        List<String> functionBeans = endpointScanner.scanFunctionBeans(projectRootPath);
+        if (!functionBeans.isEmpty()) {
+            if (functionBeans.size() > 1) {
+                System.out.println("Multiple function beans found " + functionBeans
+                        + ", exposing " + functionBeans.get(0));
+            }
+            env.put("SPRING_CLOUD_FUNCTION_DEFINITION", functionBeans.get(0));
+        }
+        return env;
+    }
+
+    /**
+     * Lambda environment variables for the given cold-start profile.
+     * Empty for STANDARD; for OPTIMIZED, Spring Boot relaxed-binding variables that
+     * enable lazy initialization, disable JMX and the banner, and exclude
+     * auto-configurations the project does not use. The variable replaces
+     * spring.autoconfigure.exclude, so the project's own exclusions are carried over.
+     */
+    public Map<String, String> getColdStartEnvironment(String projectRootPath, ColdStartProfile profile) {
+        Map<String, String> env = new LinkedHashMap<>();
+        if (profile != ColdStartProfile.OPTIMIZED) {
+            return env;
+        }
+
+        env.put("SPRING_MAIN_LAZY_INITIALIZATION", "true");
+        env.put("SPRING_JMX_ENABLED", "false");
+        env.put("SPRING_MAIN_BANNER_MODE", "off");
+        env.put("SPRING_MAIN_LOG_STARTUP_INFO", "false");
+
+        Set<String> exclusions = new LinkedHashSet<>(findConfiguredExclusions(Paths.get(projectRootPath)));
+        exclusions.addAll(findUnusedAutoConfigurations(Paths.get(projectRootPath)));
+        if (!exclusions.isEmpty()) {
+            env.put("SPRING_AUTOCONFIGURE_EXCLUDE", String.join(",", exclusions));
+        }
+        return env;
+    }
+
     public String prepareProjectForLambda(String projectRootPath) throws IOException {
+        return prepareProjectForLambda(projectRootPath, packagingMode);
+    }
+
+    /**
+     * Same, packaged with the given mode instead of sail.lambda.packaging (e.g. to compare
+     * packagings on a copy of the project).
+     */
+    public String prepareProjectForLambda(String projectRootPath, PackagingMode packagingMode) throws IOException {
         Path projectRoot = Paths.get(projectRootPath);
 
         // 1. Find main @SpringBootApplication class
@@ -34,27 +217,79 @@ public class LambdaAdapterService {
         String mainClassSimpleName = mainAppPath.getFileName().toString().replace(".java", "");
         String handlerClassSimpleName = "StreamLambdaHandler";
 
+        // 1b. Functional projects (function beans, no controllers) use FunctionInvoker instead of
+        // emulating the servlet stack
+        boolean functionMode = isFunctionalProject(projectRootPath);
+        String handlerClassName = functionMode
+                ? FUNCTION_INVOKER_CLASS
+                : packageName + "." + handlerClassSimpleName;
+
         // 2. Inject dependencies into pom.xml
         Path pomPath = projectRoot.resolve("pom.xml");
         if (!Files.exists(pomPath)) {
             throw new RuntimeException("pom.xml not found at " + pomPath);
         }
-        updatePomWithLambdaDependencies(pomPath);
+        updatePomWithLambdaDependencies(pomPath, functionMode, packagingMode);
+        if (packagingMode == PackagingMode.LIB_ZIP) {
+            writeLambdaZipAssemblyDescriptor(projectRoot, functionMode);
+        }
 
         // 3. Create handler class in same package
-        createHandlerClass(projectRoot, packageName, mainClassSimpleName, handlerClassSimpleName);
+        if (!functionMode) {
+            List<String> primingPaths = snapStartEnabled ? findPrimingPaths(projectRootPath) : null;
+            createHandlerClass(projectRoot, packageName, mainClassSimpleName, handlerClassSimpleName, primingPaths);
+        }
+
+        // 3b. Local probe used to measure init/first-request time of the built artifact
+        createLocalProbeClass(projectRoot, packageName, handlerClassName);
+
+        // 3c. Native build: reflection metadata for the handler (instantiated by the runtime client)
+        if (buildBackend == BuildBackend.NATIVE) {
+            writeNativeReflectionConfig(projectRoot, handlerClassName);
+        }
 
-        // 4. Inject global CORS configuration (SailCorsConfig) into the project
-        injectCorsConfiguration(projectRoot, packageName);
+        // 4. Inject global CORS configuration (SailCorsConfig) into the project (MVC only).
+        // HTTP APIs and function URLs answer CORS themselves and override backend CORS headers
+        if (!functionMode && apiTarget == ApiTarget.REST_API) {
+            injectCorsConfiguration(projectRoot, packageName);
+        }
 
         // 5. Return handler FQN
-        String handlerFqn = packageName + "." + handlerClassSimpleName + "::handleRequest";
+        String handlerFqn = handlerClassName + "::handleRequest";
         System.out.println("Prepared Lambda handler: " + handlerFqn);
         return handlerFqn;
     }
 
     // ---------- Helpers ----------
 
+    private boolean isFunctionalProject(String projectRootPath) throws IOException {
+        if (!functionInvokerEnabled) {
+            return false;
+        }
+        List<String> functionBeans = endpointScanner.scanFunctionBeans(projectRootPath);
+        if (functionBeans.isEmpty() || !endpointScanner.scanEndpoints(projectRootPath).isEmpty()) {
+            return false;
+        }
+        System.out.println("Detected function beans " + functionBeans + " and no controllers - using FunctionInvoker");
+        return true;
+    }
+
+    /**
+     * GET endpoints to prime before the SnapStart snapshot; path variables are
+     * replaced with a placeholder value so the request still reaches the controller.
+     */
+    private List<String> findPrimingPaths(String projectRootPath) {
+        try {
+            return endpointScanner.scanGetEndpoints(projectRootPath).stream()
+                    .map(path -> path.replaceAll("\\{[^}]+}", "1"))
+                    .distinct()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            System.out.println("Could not scan endpoints for priming: " + e.getMessage());
+            return List.of("/");
+        }
+    }
+
     private Path findSpringBootApplicationClass(Path projectRoot) throws IOException {
         Path srcMainJava = projectRoot.resolve("src/main/java");
         if (!Files.exists(srcMainJava)) {
@@ -96,13 +331,45 @@ public class LambdaAdapterService {
         throw new RuntimeException("Could not find package declaration in " + javaFile);
     }
 
-    private void updatePomWithLambdaDependencies(Path pomPath) throws IOException {
+    private void updatePomWithLambdaDependencies(Path pomPath, boolean functionMode, PackagingMode packagingMode)
+            throws IOException {
         String pom = Files.readString(pomPath, StandardCharsets.UTF_8);
 
         boolean changed = false;
 
+        // 1a. Function mode: Spring Cloud Function AWS adapter (FunctionInvoker) instead of the container
+        if (functionMode && !pom.contains("spring-cloud-function-adapter-aws")) {
+            String depsToInsert = """
+                    
+                    <!-- Added by SAIL for AWS Lambda via Spring Cloud Function (FunctionInvoker) -->
+                    <dependency>
+                        <groupId>org.springframework.cloud</groupId>
+                        <artifactId>spring-cloud-function-adapter-aws</artifactId>
+                        <version>4.1.0</version>
+                    </dependency>
+                    <dependency>
+                        <groupId>com.amazonaws</groupId>
+                        <artifactId>aws-lambda-java-events</artifactId>
+                        <version>3.11.4</version>
+                    </dependency>
+                    <dependency>
+                        <groupId>com.amazonaws</groupId>
+                        <artifactId>aws-lambda-java-core</artifactId>
+                        <version>1.2.3</version>
+                    </dependency>
+                    """;
+
+            int depsIdx = pom.indexOf("</dependencies>");
+            if (depsIdx == -1) {
+                throw new RuntimeException("Could not find </dependencies> in pom.xml");
+            }
+            pom = pom.substring(0, depsIdx) + depsToInsert + "\n" + pom.substring(depsIdx);
+            changed = true;
+            System.out.println("Injected Spring Cloud Function AWS adapter into pom.xml");
+        }
+
         // 1. Add Lambda/container dependencies if not present
-        if (!pom.contains("aws-serverless-java-container-springboot3")) {
+        if (!functionMode && !pom.contains("aws-serverless-java-container-springboot3")) {
             String depsToInsert = """
                     
                     <!-- Added by SAIL for AWS Lambda + API Gateway support -->
@@ -129,6 +396,27 @@ public class LambdaAdapterService {
             System.out.println("Injected Lambda dependencies into pom.xml");
         }
 
+        // 1b. SnapStart priming hooks need the CRaC API
+        if (snapStartEnabled && !pom.contains("<artifactId>crac</artifactId>")) {
+            String cracDependency = """
+                    
+                    <!-- Added by SAIL for SnapStart priming (CRaC runtime hooks) -->
+                    <dependency>
+                        <groupId>org.crac</groupId>
+                        <artifactId>crac</artifactId>
+                        <version>1.4.0</version>
+                    </dependency>
+                    """;
+
+            int depsIdx = pom.indexOf("</dependencies>");
+            if (depsIdx == -1) {
+                throw new RuntimeException("Could not find </dependencies> in pom.xml");
+            }
+            pom = pom.substring(0, depsIdx) + cracDependency + "\n" + pom.substring(depsIdx);
+            changed = true;
+            System.out.println("Injected CRaC dependency into pom.xml");
+        }
+
         // 2. Ensure Spring Boot fat JAR repackage is skipped (we will use Shade)
         if (!pom.contains("<skip>true</skip>")) {
             String bootSkipSnippet = """
@@ -154,9 +442,84 @@ public class LambdaAdapterService {
             }
         }
 
-        // 3. Ensure Maven Shade Plugin is present to build an uber-jar
-        if (!pom.contains("maven-shade-plugin")) {
-            String shadePluginSnippet = """
+        // 3a. LAYERED: copy runtime dependencies into a Lambda layer layout instead of shading
+        if (packagingMode == PackagingMode.LAYERED && !pom.contains("sail-lambda-layer")) {
+            String layerPluginSnippet = """
+                    
+                    <!-- Added by SAIL: copy dependencies into a Lambda layer (java/lib) -->
+                    <plugin>
+                        <groupId>org.apache.maven.plugins</groupId>
+                        <artifactId>maven-dependency-plugin</artifactId>
+                        <version>3.6.1</version>
+                        <executions>
+                            <execution>
+                                <id>sail-lambda-layer</id>
+                                <phase>package</phase>
+                                <goals>
+                                    <goal>copy-dependencies</goal>
+                                </goals>
+                                <configuration>
+                                    <outputDirectory>${project.build.directory}/lambda-layer/java/lib</outputDirectory>
+                                    <includeScope>runtime</includeScope>%s
+                                </configuration>
+                            </execution>
+                        </executions>
+                    </plugin>
+                    """.formatted(functionMode
+                            ? "\n                <excludeGroupIds>org.apache.tomcat.embed</excludeGroupIds>"
+                            : "");
+
+            String pluginsMarker = "</plugins>";
+            int pluginsIdx = pom.indexOf(pluginsMarker);
+            if (pluginsIdx != -1) {
+                pom = pom.substring(0, pluginsIdx) + layerPluginSnippet + "\n" + pom.substring(pluginsIdx);
+                changed = true;
+                System.out.println("Injected maven-dependency-plugin layer configuration into pom.xml");
+            } else {
+                System.out.println("Warning: Could not find </plugins> to insert dependency plugin config");
+            }
+        }
+
+        // 3b. LIB_ZIP: build the Lambda-native zip (classes at root + lib/*.jar)
+        if (packagingMode == PackagingMode.LIB_ZIP && !pom.contains("sail-lambda-zip")) {
+            String assemblyPluginSnippet = """
+                    
+                    <!-- Added by SAIL: build Lambda zip with classes at root and lib/*.jar -->
+                    <plugin>
+                        <groupId>org.apache.maven.plugins</groupId>
+                        <artifactId>maven-assembly-plugin</artifactId>
+                        <version>3.6.0</version>
+                        <executions>
+                            <execution>
+                                <id>sail-lambda-zip</id>
+                                <phase>package</phase>
+                                <goals>
+                                    <goal>single</goal>
+                                </goals>
+                                <configuration>
+                                    <descriptors>
+                                        <descriptor>src/assembly/sail-lambda-zip.xml</descriptor>
+                                    </descriptors>
+                                </configuration>
+                            </execution>
+                        </executions>
+                    </plugin>
+                    """;
+
+            String pluginsMarker = "</plugins>";
+            int pluginsIdx = pom.indexOf(pluginsMarker);
+            if (pluginsIdx != -1) {
+                pom = pom.substring(0, pluginsIdx) + assemblyPluginSnippet + "\n" + pom.substring(pluginsIdx);
+                changed = true;
+                System.out.println("Injected maven-assembly-plugin Lambda zip configuration into pom.xml");
+            } else {
+                System.out.println("Warning: Could not find </plugins> to insert assembly plugin config");
+            }
+        }
+
+        // 3c. SHADED: ensure Maven Shade Plugin is present to build an uber-jar
+        if (packagingMode == PackagingMode.SHADED && !pom.contains("maven-shade-plugin")) {
+            String shadePluginSnippet = functionMode ? FUNCTION_SHADE_PLUGIN : """
                     
                     <!-- Added by SAIL: build uber-jar with all dependencies for Lambda -->
                     <plugin>
@@ -188,6 +551,81 @@ public class LambdaAdapterService {
             }
         }
 
+        // 3d. NATIVE: opt-in profile (-Psail-native) running Spring AOT + native-image, so the
+        // plain JVM build is unchanged and can still be used as a fallback
+        if (buildBackend == BuildBackend.NATIVE && !pom.contains("<id>" + NATIVE_PROFILE_ID + "</id>")) {
+            String nativeProfileSnippet = """
+                    
+                    <!-- Added by SAIL: Spring AOT + GraalVM native executable for provided.al2023 -->
+                    <profile>
+                        <id>%s</id>
+                        <dependencies>
+                            <dependency>
+                                <groupId>com.amazonaws</groupId>
+                                <artifactId>aws-lambda-java-runtime-interface-client</artifactId>
+                                <version>2.4.2</version>
+                            </dependency>
+                        </dependencies>
+                        <build>
+                            <plugins>
+                                <plugin>
+                                    <groupId>org.springframework.boot</groupId>
+                                    <artifactId>spring-boot-maven-plugin</artifactId>
+                                    <executions>
+                                        <execution>
+                                            <id>process-aot</id>
+                                            <goals>
+                                                <goal>process-aot</goal>
+                                            </goals>
+                                            <configuration>
+                                                <skip>false</skip>
+                                            </configuration>
+                                        </execution>
+                                    </executions>
+                                </plugin>
+                                <plugin>
+                                    <groupId>org.graalvm.buildtools</groupId>
+                                    <artifactId>native-maven-plugin</artifactId>
+                                    <version>0.9.28</version>
+                                    <extensions>true</extensions>
+                                    <executions>
+                                        <execution>
+                                            <id>sail-native-compile</id>
+                                            <phase>package</phase>
+                                            <goals>
+                                                <goal>compile-no-fork</goal>
+                                            </goals>
+                                        </execution>
+                                    </executions>
+                                    <configuration>
+                                        <imageName>%s</imageName>
+                                        <mainClass>com.amazonaws.services.lambda.runtime.api.client.AWSLambda</mainClass>
+                                        <buildArgs>
+                                            <buildArg>--enable-url-protocols=http</buildArg>
+                                            <buildArg>-H:+AddAllCharsets</buildArg>
+                                        </buildArgs>
+                                    </configuration>
+                                </plugin>
+                            </plugins>
+                        </build>
+                    </profile>
+                    """.formatted(NATIVE_PROFILE_ID, NATIVE_IMAGE_NAME);
+
+            int profilesIdx = pom.indexOf("</profiles>");
+            if (profilesIdx != -1) {
+                pom = pom.substring(0, profilesIdx) + nativeProfileSnippet + "\n" + pom.substring(profilesIdx);
+            } else {
+                int projectIdx = pom.lastIndexOf("</project>");
+                if (projectIdx == -1) {
+                    throw new RuntimeException("Could not find </project> in pom.xml");
+                }
+                pom = pom.substring(0, projectIdx) + "<profiles>" + nativeProfileSnippet + "</profiles>\n"
+                        + pom.substring(projectIdx);
+            }
+            changed = true;
+            System.out.println("Injected " + NATIVE_PROFILE_ID + " native-image profile into pom.xml");
+        }
+
         if (changed) {
             Files.writeString(pomPath, pom, StandardCharsets.UTF_8);
             System.out.println("Updated pom.xml at " + pomPath);
@@ -196,31 +634,224 @@ public class LambdaAdapterService {
         }
     }
 
+    /**
+     * Shade configuration for FunctionInvoker deployments: the embedded servlet container is
+     * left out (the context is web-less) and Spring's auto-configuration metadata files are
+     * merged instead of overwritten, so Spring Cloud Function's auto-configuration survives.
+     */
+    private static final String FUNCTION_SHADE_PLUGIN = """
+            
+            <!-- Added by SAIL: web-less uber-jar for Spring Cloud Function on Lambda -->
+            <plugin>
+                <groupId>org.apache.maven.plugins</groupId>
+                <artifactId>maven-shade-plugin</artifactId>
+                <version>3.5.0</version>
+                <dependencies>
+                    <dependency>
+                        <groupId>org.springframework.boot</groupId>
+                        <artifactId>spring-boot-maven-plugin</artifactId>
+                        <version>3.2.0</version>
+                    </dependency>
+                </dependencies>
+                <executions>
+                    <execution>
+                        <phase>package</phase>
+                        <goals>
+                            <goal>shade</goal>
+                        </goals>
+                        <configuration>
+                            <createDependencyReducedPom>false</createDependencyReducedPom>
+                            <artifactSet>
+                                <excludes>
+                                    <exclude>org.apache.tomcat.embed:*</exclude>
+                                </excludes>
+                            </artifactSet>
+                            <transformers>
+                                <transformer implementation="org.apache.maven.plugins.shade.resource.AppendingTransformer">
+                                    <resource>META-INF/spring/org.springframework.boot.autoconfigure.AutoConfiguration.imports</resource>
+                                </transformer>
+                                <transformer implementation="org.apache.maven.plugins.shade.resource.AppendingTransformer">
+                                    <resource>META-INF/spring.handlers</resource>
+                                </transformer>
+                                <transformer implementation="org.apache.maven.plugins.shade.resource.AppendingTransformer">
+                                    <resource>META-INF/spring.schemas</resource>
+                                </transformer>
+                                <transformer implementation="org.springframework.boot.maven.PropertiesMergingResourceTransformer">
+                                    <resource>META-INF/spring.factories</resource>
+                                </transformer>
+                            </transformers>
+                        </configuration>
+                    </execution>
+                </executions>
+            </plugin>
+            """;
+
+    /**
+     * Assembly descriptor for the Lambda-native zip layout:
+     * compiled classes/resources at the root and every runtime dependency under lib/.
+     */
+    private void writeLambdaZipAssemblyDescriptor(Path projectRoot, boolean functionMode) throws IOException {
+        Path descriptor = projectRoot.resolve("src/assembly/sail-lambda-zip.xml");
+        if (Files.exists(descriptor)) {
+            return;
+        }
+        Files.createDirectories(descriptor.getParent());
+
+        String xml = """
+                <assembly xmlns="http://maven.apache.org/ASSEMBLY/2.1.1"
+                          xmlns:xsi="http://www.w3.org/2001/XMLSchema-instance"
+                          xsi:schemaLocation="http://maven.apache.org/ASSEMBLY/2.1.1 https://maven.apache.org/xsd/assembly-2.1.1.xsd">
+                    <!-- Generated by SAIL: Lambda-native zip layout -->
+                    <id>lambda</id>
+                    <formats>
+                        <format>zip</format>
+                    </formats>
+                    <includeBaseDirectory>false</includeBaseDirectory>
+                    <fileSets>
+                        <fileSet>
+                            <directory>${project.build.directory}/classes</directory>
+                            <outputDirectory>/</outputDirectory>
+                        </fileSet>
+                    </fileSets>
+                    <dependencySets>
+                        <dependencySet>
+                            <outputDirectory>lib</outputDirectory>
+                            <useProjectArtifact>false</useProjectArtifact>
+                            <scope>runtime</scope>%s
+                        </dependencySet>
+                    </dependencySets>
+                </assembly>
+                """.formatted(functionMode
+                        ? "\n            <excludes>\n                <exclude>org.apache.tomcat.embed:*</exclude>\n            </excludes>"
+                        : "");
+
+        Files.writeString(descriptor, xml, StandardCharsets.UTF_8);
+        System.out.println("Created Lambda zip assembly descriptor at " + descriptor);
+    }
+
+    /**
+     * native-image only keeps reflectively used classes it can see at build time; the
+     * runtime interface client loads the handler by name, so it is registered here.
+     */
+    private void writeNativeReflectionConfig(Path projectRoot, String handlerClassName) throws IOException {
+        Path config = projectRoot.resolve("src/main/resources/META-INF/native-image/sail/reflect-config.json");
+        Files.createDirectories(config.getParent());
+
+        String json = """
+                [
+                  {
+                    "name": "%s",
+                    "allDeclaredConstructors": true,
+                    "allPublicMethods": true
+                  }
+                ]
+                """.formatted(handlerClassName);
+
+        Files.writeString(config, json, StandardCharsets.UTF_8);
+        System.out.println("Created native-image reflection config at " + config);
+    }
+
     private void createHandlerClass(Path projectRoot,
                                     String packageName,
                                     String mainClassSimpleName,
-                                    String handlerClassSimpleName) throws IOException {
+                                    String handlerClassSimpleName,
+                                    List<String> primingPaths) throws IOException {
 
         String packagePath = packageName.replace('.', '/');
         Path handlerDir = projectRoot.resolve("src/main/java").resolve(packagePath);
         Files.createDirectories(handlerDir);
 
         Path handlerFile = handlerDir.resolve(handlerClassSimpleName + ".java");
-        if (Files.exists(handlerFile)) {
+        if (Files.exists(handlerFile) && !Files.readString(handlerFile).contains(GENERATED_MARKER)) {
             System.out.println("Handler class already exists: " + handlerFile);
             return;
         }
 
-        String handlerSource = """
+        String handlerSource = handlerSource(packageName, mainClassSimpleName, handlerClassSimpleName, primingPaths);
+
+        Files.writeString(handlerFile, handlerSource, StandardCharsets.UTF_8);
+        System.out.println("Created Lambda handler class (" + coldStartProfile
+                + (primingPaths != null ? ", SnapStart priming" : "") + ") at " + handlerFile);
+    }
+
+    /**
+     * Builds the handler source.
+     *  - STANDARD boots the Spring context synchronously in the static initializer.
+     *  - OPTIMIZED uses the container's async initialization so the Lambda init phase is
+     *    not blocked past its 10s budget; the first request waits if the context is still starting.
+     *  - With primingPaths (SnapStart), the handler registers a CRaC resource whose
+     *    beforeCheckpoint sends synthetic GET requests to warm JIT and lazy paths
+     *    before the snapshot is taken.
+     */
+    private String handlerSource(String packageName, String mainClassSimpleName,
+                                 String handlerClassSimpleName, List<String> primingPaths) {
+        boolean priming = primingPaths != null;
+        boolean httpApiV2 = usesHttpApiV2Payload();
+        String requestType = httpApiV2 ? "HttpApiV2ProxyRequest" : "AwsProxyRequest";
+
+        String initialization = coldStartProfile == ColdStartProfile.OPTIMIZED
+                ? """
+
+                            handler = new SpringBootProxyHandlerBuilder<%s>()
+                                    .%s()
+                                    .asyncInit()
+                                    .springBootApplication(%s.class)
+                                    .buildAndInitialize();\
+                """.formatted(requestType, httpApiV2 ? "defaultHttpApiV2Proxy" : "defaultProxy", mainClassSimpleName)
+                : """
+
+                            handler = SpringBootLambdaContainerHandler.%s(%s.class);\
+                """.formatted(httpApiV2 ? "getHttpApiV2ProxyHandler" : "getAwsProxyHandler", mainClassSimpleName);
+
+        String primingImports = priming ? """
+                import com.amazonaws.serverless.proxy.internal.testutils.AwsProxyRequestBuilder;
+                import com.amazonaws.serverless.proxy.internal.testutils.MockLambdaContext;
+                import org.crac.Core;
+                import org.crac.Resource;
+                """ : "";
+
+        String primingMembers = "";
+        if (priming) {
+            String paths = primingPaths.stream()
+                    .map(path -> "\"" + path + "\"")
+                    .collect(Collectors.joining(", "));
+            primingMembers = """
+
+                    // GET endpoints discovered by SAIL, called once before the SnapStart snapshot
+                    private static final String[] PRIMING_PATHS = {%s};
+
+                    public %s() {
+                        Core.getGlobalContext().register(this);
+                    }
+
+                    @Override
+                    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) {
+                        for (String path : PRIMING_PATHS) {
+                            try {
+                                handler.proxy(new AwsProxyRequestBuilder(path, "GET").%s, new MockLambdaContext());
+                            } catch (Exception e) {
+                                // Priming is best effort
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void afterRestore(org.crac.Context<? extends Resource> context) {
+                    }
+                """.formatted(paths, handlerClassSimpleName, httpApiV2 ? "toHttpApiV2Request()" : "build()");
+        }
+
+        return """
                 package %s;
 
                 import com.amazonaws.serverless.exceptions.ContainerInitializationException;
-                import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
+                import com.amazonaws.serverless.proxy.model.%s;
                 import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
                 import com.amazonaws.serverless.proxy.spring.SpringBootLambdaContainerHandler;
+                import com.amazonaws.serverless.proxy.spring.SpringBootProxyHandlerBuilder;
                 import com.amazonaws.services.lambda.runtime.Context;
                 import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
-
+                %s
                 import java.io.IOException;
                 import java.io.InputStream;
                 import java.io.OutputStream;
@@ -228,29 +859,249 @@ public class LambdaAdapterService {
                 /**
                  * Automatically generated by SAIL.
                  * Boots the Spring Boot application inside AWS Lambda and
-                 * forwards API Gateway proxy events to Spring MVC controllers.
+                 * forwards %s events to Spring MVC controllers.
                  */
-                public class %s implements RequestStreamHandler {
+                public class %s implements RequestStreamHandler%s {
 
-                    private static final SpringBootLambdaContainerHandler<AwsProxyRequest, AwsProxyResponse> handler;
+                    private static final SpringBootLambdaContainerHandler<%s, AwsProxyResponse> handler;
 
                     static {
-                        try {
-                            handler = SpringBootLambdaContainerHandler.getAwsProxyHandler(%s.class);
+                        try {%s
                         } catch (ContainerInitializationException e) {
                             throw new RuntimeException("Could not initialize Spring Boot application", e);
                         }
+                        // Set when the function is mounted under a path of a shared API (/p/<projectId>)
+                        String basePath = System.getenv("%s");
+                        if (basePath != null && !basePath.isEmpty()) {
+                            handler.stripBasePath(basePath);
+                        }
                     }
-
+                %s
                     @Override
                     public void handleRequest(InputStream input, OutputStream output, Context context) throws IOException {
                         handler.proxyStream(input, output, context);
                     }
                 }
-                """.formatted(packageName, handlerClassSimpleName, mainClassSimpleName);
+                """.formatted(packageName, requestType, primingImports,
+                httpApiV2 ? "HTTP API / function URL (payload format 2.0)" : "API Gateway proxy",
+                handlerClassSimpleName, priming ? ", Resource" : "", requestType, initialization, BASE_PATH_ENV,
+                primingMembers);
+    }
 
-        Files.writeString(handlerFile, handlerSource, StandardCharsets.UTF_8);
-        System.out.println("Created Lambda handler class at " + handlerFile);
+    /**
+     * Generates a small main class that loads the handler (timing the static init),
+     * optionally sends one synthetic API Gateway GET event through it, and prints
+     * SAIL_* metrics to stdout. Used to measure the built artifact locally.
+     */
+    private void createLocalProbeClass(Path projectRoot, String packageName, String handlerClassName)
+            throws IOException {
+        // Kept out of src/main/java so it never ships in the artifact; LocalInvocationService
+        // compiles it against the built artifact's classpath
+        Path probeFile = projectRoot.resolve(PROBE_SOURCE_DIR).resolve(PROBE_CLASS_SIMPLE_NAME + ".java");
+        Path previousProbeFile = projectRoot.resolve("src/main/java")
+                .resolve(packageName.replace('.', '/'))
+                .resolve(PROBE_CLASS_SIMPLE_NAME + ".java");
+        if (Files.exists(previousProbeFile) && Files.readString(previousProbeFile).contains(GENERATED_MARKER)) {
+            // Generated into the project's sources by earlier versions
+            Files.delete(previousProbeFile);
+        }
+
+        String source = """
+                import com.amazonaws.services.lambda.runtime.Context;
+                import com.amazonaws.services.lambda.runtime.LambdaLogger;
+                import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+
+                import java.io.ByteArrayInputStream;
+                import java.io.ByteArrayOutputStream;
+                import java.lang.reflect.Proxy;
+                import java.nio.charset.StandardCharsets;
+                import java.nio.file.Files;
+                import java.nio.file.Path;
+
+                /**
+                 * Automatically generated by SAIL.
+                 * Local probe: prints SAIL_INIT_MS, SAIL_FIRST_REQUEST_MS and SAIL_PEAK_RSS_KB
+                 * for the generated Lambda handler. Not used by Lambda itself.
+                 */
+                public class %s {
+
+                    public static void main(String[] args) throws Exception {
+                        String requestPath = args.length > 0 ? args[0] : null;
+
+                        long start = System.nanoTime();
+                        RequestStreamHandler handler = (RequestStreamHandler) Class.forName("%s")
+                                .getDeclaredConstructor().newInstance();
+                        System.out.println("SAIL_INIT_MS=" + (System.nanoTime() - start) / 1_000_000);
+
+                        if (requestPath != null) {
+                            String event = (%s)
+                                    .replace('\\'', '"');
+
+                            long requestStart = System.nanoTime();
+                            ByteArrayOutputStream out = new ByteArrayOutputStream();
+                            try {
+                                handler.handleRequest(new ByteArrayInputStream(event.getBytes(StandardCharsets.UTF_8)),
+                                        out, localContext());
+                            } catch (Exception e) {
+                                // Still a complete request path (e.g. a function rejecting an empty body)
+                                System.out.println("SAIL_FIRST_REQUEST_ERROR=" + e);
+                            }
+                            System.out.println("SAIL_FIRST_REQUEST_MS=" + (System.nanoTime() - requestStart) / 1_000_000);
+                        }
+
+                        Path status = Path.of("/proc/self/status");
+                        if (Files.exists(status)) {
+                            for (String line : Files.readAllLines(status)) {
+                                if (line.startsWith("VmHWM:")) {
+                                    System.out.println("SAIL_PEAK_RSS_KB=" + line.replaceAll("[^0-9]", ""));
+                                }
+                            }
+                        }
+                        System.exit(0);
+                    }
+
+                    private static Context localContext() {
+                        LambdaLogger logger = (LambdaLogger) Proxy.newProxyInstance(
+                                LambdaLogger.class.getClassLoader(), new Class<?>[]{LambdaLogger.class},
+                                (proxy, method, methodArgs) -> {
+                                    if (methodArgs != null && methodArgs.length > 0 && methodArgs[0] instanceof String) {
+                                        System.out.println(methodArgs[0]);
+                                    }
+                                    return null;
+                                });
+                        return (Context) Proxy.newProxyInstance(
+                                Context.class.getClassLoader(), new Class<?>[]{Context.class},
+                                (proxy, method, methodArgs) -> switch (method.getName()) {
+                                    case "getLogger" -> logger;
+                                    case "getRemainingTimeInMillis" -> 300_000;
+                                    case "getMemoryLimitInMB" -> 512;
+                                    case "getIdentity", "getClientContext" -> null;
+                                    default -> method.getReturnType() == String.class ? "sail-local" : null;
+                                });
+                    }
+                }
+                """.formatted(PROBE_CLASS_SIMPLE_NAME, handlerClassName, probeEventSource());
+
+        Files.createDirectories(probeFile.getParent());
+        Files.writeString(probeFile, source, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Java expression (single quotes stand for double quotes) building the synthetic GET
+     * event for requestPath, in the payload format of the API target.
+     */
+    private String probeEventSource() {
+        if (usesHttpApiV2Payload()) {
+            return """
+                    "{'version':'2.0','routeKey':'$default','rawPath':'" + requestPath + "',"
+                                        + "'rawQueryString':'','headers':{'host':'localhost'},"
+                                        + "'requestContext':{'http':{'method':'GET','path':'" + requestPath + "',"
+                                        + "'protocol':'HTTP/1.1','sourceIp':'127.0.0.1','userAgent':'sail-local'},"
+                                        + "'requestId':'sail-local','routeKey':'$default','stage':'$default'},"
+                                        + "'isBase64Encoded':false}\
+                    """;
+        }
+        return """
+                "{'resource':'/{proxy+}','path':'" + requestPath + "',"
+                                    + "'httpMethod':'GET','headers':{'Host':'localhost'},"
+                                    + "'multiValueHeaders':{'Host':['localhost']},"
+                                    + "'requestContext':{'resourcePath':'/{proxy+}','httpMethod':'GET',"
+                                    + "'path':'" + requestPath + "','stage':'prod','requestId':'sail-local',"
+                                    + "'identity':{'sourceIp':'127.0.0.1'}},'isBase64Encoded':false}\
+                """;
+    }
+
+    /**
+     * Auto-configurations that are safe to exclude when the project's sources and
+     * resources never use the feature they configure.
+     */
+    private List<String> findUnusedAutoConfigurations(Path projectRoot) {
+        List<String> exclusions = new ArrayList<>();
+        String sources = readAllSources(projectRoot.resolve("src/main/java"));
+        Path resources = projectRoot.resolve("src/main/resources");
+
+        exclusions.add("org.springframework.boot.autoconfigure.jmx.JmxAutoConfiguration");
+        exclusions.add("org.springframework.boot.autoconfigure.h2.H2ConsoleAutoConfiguration");
+        if (!sources.contains("@EnableScheduling") && !sources.contains("@Scheduled")) {
+            exclusions.add("org.springframework.boot.autoconfigure.task.TaskSchedulingAutoConfiguration");
+        }
+        if (!sources.contains("@EnableAsync") && !sources.contains("@Async")) {
+            exclusions.add("org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration");
+        }
+        if (!sources.contains("MultipartFile")) {
+            exclusions.add("org.springframework.boot.autoconfigure.web.servlet.MultipartAutoConfiguration");
+        }
+        if (!sources.contains("WebSocket")) {
+            exclusions.add("org.springframework.boot.autoconfigure.websocket.servlet.WebSocketServletAutoConfiguration");
+        }
+        if (!sources.contains("@Valid") && !sources.contains("@Validated")) {
+            exclusions.add("org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration");
+        }
+        if (!Files.exists(resources.resolve("schema.sql")) && !Files.exists(resources.resolve("data.sql"))) {
+            exclusions.add("org.springframework.boot.autoconfigure.sql.init.SqlInitializationAutoConfiguration");
+        }
+        return exclusions;
+    }
+
+    /**
+     * spring.autoconfigure.exclude entries from the project's application.properties
+     * and application.yml (comma-separated or as a YAML list).
+     */
+    private List<String> findConfiguredExclusions(Path projectRoot) {
+        Path resources = projectRoot.resolve("src/main/resources");
+        Properties props = new Properties();
+        Path propsPath = resources.resolve("application.properties");
+        if (Files.exists(propsPath)) {
+            try (InputStream in = Files.newInputStream(propsPath)) {
+                props.load(in);
+            } catch (IOException e) {
+                System.out.println("Could not read " + propsPath + ": " + e.getMessage());
+            }
+        }
+        for (String name : List.of("application.yml", "application.yaml")) {
+            Path yamlPath = resources.resolve(name);
+            if (Files.exists(yamlPath)) {
+                YamlPropertiesFactoryBean yaml = new YamlPropertiesFactoryBean();
+                yaml.setResources(new FileSystemResource(yamlPath));
+                try {
+                    props.putAll(yaml.getObject());
+                } catch (RuntimeException e) {
+                    System.out.println("Could not read " + yamlPath + ": " + e.getMessage());
+                }
+            }
+        }
+
+        List<String> exclusions = new ArrayList<>();
+        for (String key : props.stringPropertyNames()) {
+            if (key.equals("spring.autoconfigure.exclude") || key.startsWith("spring.autoconfigure.exclude[")) {
+                for (String className : props.getProperty(key).split(",")) {
+                    if (!className.isBlank()) {
+                        exclusions.add(className.trim());
+                    }
+                }
+            }
+        }
+        return exclusions;
+    }
+
+    private String readAllSources(Path srcMainJava) {
+        if (!Files.exists(srcMainJava)) {
+            return "";
+        }
+        StringBuilder all = new StringBuilder();
+        try (Stream<Path> paths = Files.walk(srcMainJava)) {
+            paths.filter(p -> p.toString().endsWith(".java"))
+                 .forEach(p -> {
+                     try {
+                         all.append(Files.readString(p)).append('\n');
+                     } catch (IOException e) {
+                         // Skip unreadable file
+                     }
+                 });
+        } catch (IOException e) {
+            System.out.println("Could not read sources under " + srcMainJava + ": " + e.getMessage());
+        }
+        return all.toString();
     }
 
     /**
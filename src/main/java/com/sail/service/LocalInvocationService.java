@@ -0,0 +1,196 @@
+package com.sail.service;
+
+import com.sail.utils.ZipExtractor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a built Lambda artifact locally through the generated SailLocalProbe
+ * (see LambdaAdapterService) and collects its SAIL_* metrics:
+ * init time, first-request latency and peak RSS.
+ */
+@Service
+public class LocalInvocationService {
+
+    private final ZipExtractor zipExtractor;
+    private final String javaCommand;
+    private final long timeoutSeconds;
+
+    public LocalInvocationService(ZipExtractor zipExtractor,
+                                  @Value("${sail.local.java.command:java}") String javaCommand,
+                                  @Value("${sail.local.timeout.seconds:120}") long timeoutSeconds) {
+        this.zipExtractor = zipExtractor;
+        this.javaCommand = javaCommand;
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    /**
+     * Starts a JVM for the probe class with the given Lambda-style environment
+     * (JAVA_TOOL_OPTIONS is honored by the JVM itself) and extra JVM arguments.
+     *
+     * @param requestPath path of a synthetic GET request, or null to measure init only
+     */
+    public ProbeResult runProbe(String projectPath,
+                                File artifact,
+                                LambdaAdapterService.PackagingMode packagingMode,
+                                String probeClass,
+                                Map<String, String> environment,
+                                List<String> jvmArgs,
+                                String requestPath) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(javaCommand);
+        command.addAll(jvmArgs);
+        String classpath = buildClasspath(projectPath, artifact, packagingMode);
+        Path probeClasses = compileProbe(projectPath, classpath);
+        command.add("-cp");
+        command.add(probeClasses != null ? probeClasses + File.pathSeparator + classpath : classpath);
+        command.add(probeClass);
+        if (requestPath != null) {
+            command.add(requestPath);
+        }
+
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.environment().putAll(environment);
+        pb.redirectErrorStream(true);
+
+        long start = System.nanoTime();
+        Process process = pb.start();
+
+        ProbeResult result = new ProbeResult();
+        // Drained on its own thread so a hung probe still hits the timeout below
+        Thread reader = new Thread(() -> readMetrics(process, result), "local-probe-output");
+        reader.setDaemon(true);
+        reader.start();
+
+        if (!process.waitFor(timeoutSeconds, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            throw new IOException("Local probe timed out after " + timeoutSeconds + "s");
+        }
+        // The stream ends once the process has exited; bounded in case a child process keeps it open
+        reader.join(TimeUnit.SECONDS.toMillis(5));
+        result.exitCode = process.exitValue();
+        result.totalMs = (System.nanoTime() - start) / 1_000_000;
+        return result;
+    }
+
+    /**
+     * Compiles the probe source LambdaAdapterService writes to the project root (outside the
+     * Maven sources, so it is not part of the artifact) against the artifact's classpath, once
+     * per build: target/ starts empty with every build. Returns the class directory, or null
+     * when the project has no probe source.
+     */
+    private synchronized Path compileProbe(String projectPath, String classpath) throws IOException {
+        Path source = Paths.get(projectPath, LambdaAdapterService.PROBE_SOURCE_DIR,
+                LambdaAdapterService.PROBE_CLASS_SIMPLE_NAME + ".java");
+        if (!Files.exists(source)) {
+            return null;
+        }
+        Path classes = Paths.get(projectPath, "target", LambdaAdapterService.PROBE_SOURCE_DIR).toAbsolutePath();
+        if (Files.exists(classes.resolve(LambdaAdapterService.PROBE_CLASS_SIMPLE_NAME + ".class"))) {
+            return classes;
+        }
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IOException("Compiling the local probe requires a JDK");
+        }
+        Files.createDirectories(classes);
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        // Same class file version as the Lambda java17 runtime
+        int exitCode = compiler.run(null, errors, errors, "--release", "17", "-proc:none",
+                "-cp", classpath, "-d", classes.toString(), source.toString());
+        if (exitCode != 0) {
+            throw new IOException("Local probe did not compile: " + errors);
+        }
+        return classes;
+    }
+
+    private void readMetrics(Process process, ProbeResult result) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("SAIL_INIT_MS=")) {
+                    result.initMs = Long.parseLong(line.substring("SAIL_INIT_MS=".length()).trim());
+                } else if (line.startsWith("SAIL_FIRST_REQUEST_MS=")) {
+                    result.firstRequestMs = Long.parseLong(line.substring("SAIL_FIRST_REQUEST_MS=".length()).trim());
+                } else if (line.startsWith("SAIL_PEAK_RSS_KB=")) {
+                    result.peakRssKb = Long.parseLong(line.substring("SAIL_PEAK_RSS_KB=".length()).trim());
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Stream closed by destroyForcibly, or malformed output; metrics stay -1
+        }
+    }
+
+    /**
+     * Classpath equivalent to what the Lambda Java runtime sees for each packaging mode.
+     */
+    public String buildClasspath(String projectPath, File artifact,
+                                 LambdaAdapterService.PackagingMode packagingMode) throws IOException {
+        switch (packagingMode) {
+            case LAYERED:
+                Path layerLib = Paths.get(projectPath, "target", "lambda-layer", "java", "lib");
+                return artifact.getAbsolutePath() + File.pathSeparator + layerLib.toAbsolutePath() + File.separator + "*";
+            case LIB_ZIP:
+                Path exploded = Paths.get(projectPath, "target", "lambda-exploded");
+                if (!Files.exists(exploded)) {
+                    zipExtractor.extractZip(artifact, exploded.toString());
+                }
+                return exploded.toAbsolutePath() + File.pathSeparator
+                        + exploded.resolve("lib").toAbsolutePath() + File.separator + "*";
+            case SHADED:
+            default:
+                return artifact.getAbsolutePath();
+        }
+    }
+
+    /**
+     * Metrics reported by one probe run; -1 when not reported.
+     */
+    public static class ProbeResult {
+        private volatile long initMs = -1;
+        private volatile long firstRequestMs = -1;
+        private volatile long peakRssKb = -1;
+        private long totalMs = -1;
+        private int exitCode = -1;
+
+        public long getInitMs() {
+            return initMs;
+        }
+
+        public long getFirstRequestMs() {
+            return firstRequestMs;
+        }
+
+        public long getPeakRssKb() {
+            return peakRssKb;
+        }
+
+        public long getTotalMs() {
+            return totalMs;
+        }
+
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        public boolean isSuccessful() {
+            return exitCode == 0 && initMs >= 0;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.sail.service;
+
+import com.sail.utils.EndpointScanner;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Profiles the built artifact locally before deployment and recommends a Lambda
+ * memorySize and timeout.
+ *
+ * For each candidate memory size the artifact is started through SailLocalProbe with a
+ * matching heap cap and one synthetic API Gateway GET event. Lambda allocates CPU in
+ * proportion to memory (one full vCPU at 1769 MB), so locally measured times are
+ * scaled up for smaller sizes. The smallest size whose predicted init + first request
+ * fits the latency target (and whose peak RSS fits in memory) is recommended.
+ */
+@Service
+public class MemoryProfilerService {
+
+    private static final int FULL_VCPU_MEMORY_MB = 1769;
+    private static final int MAX_TIMEOUT_SECONDS = 900;
+
+    private final LocalInvocationService localInvocationService;
+    private final EndpointScanner endpointScanner;
+    private final List<Integer> candidateMemorySizes;
+    private final long latencyTargetMs;
+    private final double heapFraction;
+    private final double timeoutFactor;
+    private final int minTimeoutSeconds;
+
+    public MemoryProfilerService(LocalInvocationService localInvocationService,
+                                 EndpointScanner endpointScanner,
+                                 @Value("${sail.lambda.profile.memory.candidates:512,768,1024,1536,2048}") String candidateMemorySizes,
+                                 @Value("${sail.lambda.profile.latency.target.ms:3000}") long latencyTargetMs,
+                                 @Value("${sail.lambda.profile.heap.fraction:0.85}") double heapFraction,
+                                 @Value("${sail.lambda.profile.timeout.factor:3}") double timeoutFactor,
+                                 @Value("${sail.lambda.profile.timeout.min.seconds:15}") int minTimeoutSeconds) {
+        this.localInvocationService = localInvocationService;
+        this.endpointScanner = endpointScanner;
+        this.candidateMemorySizes = Arrays.stream(candidateMemorySizes.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .map(Integer::parseInt)
+                .sorted()
+                .collect(Collectors.toList());
+        this.latencyTargetMs = latencyTargetMs;
+        this.heapFraction = heapFraction;
+        this.timeoutFactor = timeoutFactor;
+        this.minTimeoutSeconds = minTimeoutSeconds;
+    }
+
+    /**
+     * Runs the probe at every candidate memory size and returns the recommendation,
+     * or null if no candidate could be measured.
+     */
+    public MemoryRecommendation recommend(String projectPath,
+                                          File artifact,
+                                          LambdaAdapterService.PackagingMode packagingMode,
+                                          String probeClass,
+                                          Map<String, String> environment) {
+        String requestPath = findRequestPath(projectPath);
+        List<MemoryRecommendation> measured = new ArrayList<>();
+
+        for (int memoryMb : candidateMemorySizes) {
+            try {
+                int heapMb = (int) (memoryMb * heapFraction);
+                int processors = Math.max(1, (int) Math.ceil((double) memoryMb / FULL_VCPU_MEMORY_MB));
+                LocalInvocationService.ProbeResult probe = localInvocationService.runProbe(
+                        projectPath, artifact, packagingMode, probeClass, environment,
+                        List.of("-Xmx" + heapMb + "m", "-XX:ActiveProcessorCount=" + processors),
+                        requestPath);
+
+                long peakRssMb = probe.getPeakRssKb() / 1024;
+                if (!probe.isSuccessful() || probe.getFirstRequestMs() < 0 || peakRssMb > memoryMb) {
+                    System.out.println("Profile " + memoryMb + " MB: not viable (exit code " + probe.getExitCode()
+                            + ", peak RSS " + peakRssMb + " MB)");
+                    continue;
+                }
+
+                double cpuScale = Math.max(1.0, (double) FULL_VCPU_MEMORY_MB / memoryMb);
+                MemoryRecommendation candidate = new MemoryRecommendation();
+                candidate.memorySizeMb = memoryMb;
+                candidate.predictedInitMs = (long) (probe.getInitMs() * cpuScale);
+                candidate.predictedFirstRequestMs = (long) (probe.getFirstRequestMs() * cpuScale);
+                candidate.peakRssMb = peakRssMb;
+                candidate.timeoutSeconds = timeoutFor(candidate.getPredictedColdStartMs());
+                candidate.targetMet = candidate.getPredictedColdStartMs() <= latencyTargetMs;
+                measured.add(candidate);
+
+                System.out.println("Profile " + memoryMb + " MB: predicted init " + candidate.predictedInitMs
+                        + " ms, first request " + candidate.predictedFirstRequestMs + " ms, peak RSS "
+                        + peakRssMb + " MB");
+
+                if (candidate.targetMet) {
+                    // Candidates are sorted, so this is the smallest size meeting the target
+                    break;
+                }
+            } catch (Exception e) {
+                System.out.println("Profile " + memoryMb + " MB failed: " + e.getMessage());
+            }
+        }
+
+        if (measured.isEmpty()) {
+            return null;
+        }
+
+        // Smallest size meeting the target, otherwise the fastest size measured
+        MemoryRecommendation recommendation = measured.get(measured.size() - 1);
+        System.out.println("Recommended memorySize=" + recommendation.memorySizeMb + " MB, timeout="
+                + recommendation.timeoutSeconds + " s" + (recommendation.targetMet
+                ? "" : " (latency target of " + latencyTargetMs + " ms not met)"));
+        return recommendation;
+    }
+
+    private int timeoutFor(long coldStartMs) {
+        int seconds = (int) Math.ceil(coldStartMs * timeoutFactor / 1000.0);
+        return Math.min(MAX_TIMEOUT_SECONDS, Math.max(minTimeoutSeconds, seconds));
+    }
+
+    /**
+     * First side-effect-free GET endpoint of the project (path variables filled in), or "/".
+     */
+    private String findRequestPath(String projectPath) {
+        try {
+            return endpointScanner.scanGetEndpoints(projectPath).stream()
+                    .map(path -> path.replaceAll("\\{[^}]+}", "1"))
+                    .findFirst()
+                    .orElse("/");
+        } catch (IOException e) {
+            return "/";
+        }
+    }
+
+    /**
+     * Recommended function sizing and the measurements behind it.
+     */
+    public static class MemoryRecommendation {
+        private int memorySizeMb;
+        private int timeoutSeconds;
+        private long predictedInitMs;
+        private long predictedFirstRequestMs;
+        private long peakRssMb;
+        private boolean targetMet;
+
+        public int getMemorySizeMb() {
+            return memorySizeMb;
+        }
+
+        public int getTimeoutSeconds() {
+            return timeoutSeconds;
+        }
+
+        public long getPredictedInitMs() {
+            return predictedInitMs;
+        }
+
+        public long getPredictedFirstRequestMs() {
+            return predictedFirstRequestMs;
+        }
+
+        public long getPredictedColdStartMs() {
+            return predictedInitMs + predictedFirstRequestMs;
+        }
+
+        public long getPeakRssMb() {
+            return peakRssMb;
+        }
+
+        public boolean isTargetMet() {
+            return targetMet;
+        }
+    }
+}
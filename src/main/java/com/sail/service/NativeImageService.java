@@ -0,0 +1,70 @@
+package com.sail.service;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Packages the native executable produced by the sail-native Maven profile
+ * (see LambdaAdapterService) for the provided.al2023 custom runtime:
+ * a zip with an executable "bootstrap" script next to the binary.
+ */
+@Service
+public class NativeImageService {
+
+    private static final int EXECUTABLE_MODE = 0755;
+
+    /**
+     * native-image builds for the host platform, so the binary is only usable in
+     * Lambda when it was built on Linux.
+     */
+    public boolean isSupportedBuildHost() {
+        return System.getProperty("os.name").toLowerCase().contains("linux");
+    }
+
+    /**
+     * Creates target/sail-native-lambda.zip from target/sail-native.
+     * The bootstrap starts the runtime interface client compiled into the binary
+     * with the configured handler ($_HANDLER).
+     */
+    public File packageForCustomRuntime(String projectPath) throws IOException {
+        Path targetDir = Paths.get(projectPath, "target");
+        Path executable = targetDir.resolve(LambdaAdapterService.NATIVE_IMAGE_NAME);
+        if (!Files.isRegularFile(executable)) {
+            throw new IOException("Native executable not found after build: " + executable);
+        }
+
+        String bootstrap = """
+                #!/bin/sh
+                set -e
+                cd "${LAMBDA_TASK_ROOT:-.}"
+                exec ./%s "$_HANDLER"
+                """.formatted(LambdaAdapterService.NATIVE_IMAGE_NAME);
+
+        Path zipPath = targetDir.resolve(LambdaAdapterService.NATIVE_IMAGE_NAME + "-lambda.zip");
+        try (ZipArchiveOutputStream zip = new ZipArchiveOutputStream(zipPath.toFile())) {
+            ZipArchiveEntry bootstrapEntry = new ZipArchiveEntry("bootstrap");
+            bootstrapEntry.setUnixMode(EXECUTABLE_MODE);
+            zip.putArchiveEntry(bootstrapEntry);
+            zip.write(bootstrap.getBytes(StandardCharsets.UTF_8));
+            zip.closeArchiveEntry();
+
+            ZipArchiveEntry executableEntry = new ZipArchiveEntry(executable.toFile(),
+                    LambdaAdapterService.NATIVE_IMAGE_NAME);
+            executableEntry.setUnixMode(EXECUTABLE_MODE);
+            zip.putArchiveEntry(executableEntry);
+            Files.copy(executable, zip);
+            zip.closeArchiveEntry();
+        }
+
+        System.out.println("Packaged native executable (" + Files.size(executable) + " bytes) into " + zipPath);
+        return zipPath.toFile();
+    }
+}
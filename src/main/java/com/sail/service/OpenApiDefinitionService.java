@@ -0,0 +1,390 @@
+package com.sail.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sail.utils.EndpointScanner;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Generates the OpenAPI 3 document for a function's REST API, applied with a single
+ * ImportRestApi / PutRestApi call instead of one call per resource, method and integration.
+ *
+ * The document has "/" and "/{proxy+}" with an ANY method on the Lambda proxy integration,
+ * a MOCK OPTIONS method with the CORS headers on every path and, optionally, one entry per
+ * route found by EndpointScanner (same integration, but visible as its own resource).
+ * On a shared API all of these are placed under the project's base path.
+ *
+ * With stage caching enabled, each @GetMapping route also gets an explicit GET method whose
+ * cache key is built from its path and query parameters.
+ */
+@Service
+public class OpenApiDefinitionService {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final Pattern PATH_VARIABLE = Pattern.compile("\\{([^}:]+)(?::[^}]*)?}");
+
+    private static final String ALLOW_HEADERS = "'Content-Type,X-Amz-Date,Authorization,X-Api-Key,X-Amz-Security-Token'";
+    private static final String ALLOW_METHODS = "'GET,POST,PUT,DELETE,OPTIONS'";
+    private static final String ALLOW_ORIGIN = "'*'";
+    // Part of every cache key, so a cached response is only served back to the same caller
+    private static final List<String> CACHE_KEY_HEADERS = List.of("Authorization", "Cookie");
+
+    private final EndpointScanner endpointScanner;
+    private final String region;
+    private final boolean includeRoutes;
+    private final boolean cacheEnabled;
+
+    public OpenApiDefinitionService(EndpointScanner endpointScanner,
+                                    @Value("${aws.region}") String region,
+                                    @Value("${sail.api.openapi.routes.enabled:false}") boolean includeRoutes,
+                                    @Value("${sail.api.cache.enabled:false}") boolean cacheEnabled) {
+        this.endpointScanner = endpointScanner;
+        this.region = region;
+        this.includeRoutes = includeRoutes;
+        this.cacheEnabled = cacheEnabled;
+    }
+
+    /**
+     * Builds the definition of an API that proxies every request to the given function (or alias) ARN.
+     * Without a projectPath (e.g. for pre-provisioned APIs) no routes are scanned.
+     */
+    public ApiDefinition buildLambdaProxyDefinition(String apiName, String functionArn, String projectPath) {
+        return buildLambdaProxyDefinition(apiName, functionArn, projectPath, "");
+    }
+
+    /**
+     * Same, with every path under basePath (e.g. "/p/{projectId}"), for merging into a shared API.
+     */
+    public ApiDefinition buildLambdaProxyDefinition(String apiName, String functionArn, String projectPath,
+                                                    String basePath) {
+        ObjectNode document = OBJECT_MAPPER.createObjectNode();
+        document.put("openapi", "3.0.1");
+        ObjectNode info = document.putObject("info");
+        info.put("title", apiName);
+        info.put("description", "SAIL-generated API for Spring Boot application");
+        info.put("version", "1.0");
+
+        Map<String, List<String>> paths = new LinkedHashMap<>();
+        paths.put(basePath.isEmpty() ? "/" : basePath, List.of());
+        paths.put(basePath + "/{proxy+}", List.of("proxy"));
+        ResourceTree resources = new ResourceTree();
+        if (includeRoutes && projectPath != null) {
+            scanRoutes(projectPath, resources).forEach((route, variables) -> paths.put(basePath + route, variables));
+        }
+        Map<String, List<String>> cachedRoutes = new LinkedHashMap<>();
+        int routeCount = 0;
+        if (cacheEnabled && projectPath != null) {
+            scanCachedGetRoutes(projectPath, resources).forEach((route, queryParameters) -> {
+                paths.putIfAbsent(basePath + route, pathVariables(route));
+                cachedRoutes.put(basePath + route, queryParameters);
+            });
+            routeCount = countRoutes(projectPath);
+        }
+
+        ObjectNode pathsNode = document.putObject("paths");
+        for (Map.Entry<String, List<String>> path : paths.entrySet()) {
+            ObjectNode pathItem = pathsNode.putObject(path.getKey());
+            pathItem.set("x-amazon-apigateway-any-method", proxyMethod(functionArn, path.getValue(), List.of()));
+            pathItem.set("options", corsMethod(path.getValue()));
+            if (cachedRoutes.containsKey(path.getKey())) {
+                pathItem.set("get", cachedGetMethod(functionArn, path.getValue(), cachedRoutes.get(path.getKey())));
+            }
+        }
+
+        try {
+            ApiDefinition definition = new ApiDefinition();
+            definition.body = OBJECT_MAPPER.writeValueAsString(document);
+            definition.sha256 = sha256(definition.body);
+            definition.paths = new ArrayList<>(paths.keySet());
+            definition.cachedPaths = new ArrayList<>(cachedRoutes.keySet());
+            definition.routeCount = Math.max(routeCount, cachedRoutes.size());
+            return definition;
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to generate OpenAPI definition: " + e.getMessage(), e);
+        }
+    }
+
+    private ObjectNode proxyMethod(String functionArn, List<String> pathVariables, List<String> queryParameters) {
+        ObjectNode method = methodWithParameters(pathVariables, queryParameters);
+        method.putObject("responses");
+        ObjectNode integration = method.putObject("x-amazon-apigateway-integration");
+        integration.put("type", "aws_proxy");
+        integration.put("httpMethod", "POST");
+        integration.put("uri", String.format(
+                "arn:aws:apigateway:%s:lambda:path/2015-03-31/functions/%s/invocations", region, functionArn));
+        integration.put("passthroughBehavior", "when_no_match");
+        return method;
+    }
+
+    /**
+     * GET on the Lambda proxy integration, cached per distinct path and query parameter values
+     * and per caller (Authorization and Cookie headers) once caching is enabled for the method
+     * in the stage settings.
+     */
+    private ObjectNode cachedGetMethod(String functionArn, List<String> pathVariables, List<String> queryParameters) {
+        ObjectNode method = proxyMethod(functionArn, pathVariables, queryParameters);
+        ArrayNode parameters = method.has("parameters")
+                ? (ArrayNode) method.get("parameters") : method.putArray("parameters");
+        ObjectNode integration = (ObjectNode) method.get("x-amazon-apigateway-integration");
+        ArrayNode cacheKeys = integration.putArray("cacheKeyParameters");
+        ObjectNode requestParameters = integration.putObject("requestParameters");
+        for (String name : CACHE_KEY_HEADERS) {
+            addParameter(parameters, name, "header", false);
+            cacheKeys.add("method.request.header." + name);
+            requestParameters.put("integration.request.header." + name, "method.request.header." + name);
+        }
+        for (String name : pathVariables) {
+            cacheKeys.add("method.request.path." + name);
+            requestParameters.put("integration.request.path." + name, "method.request.path." + name);
+        }
+        for (String name : queryParameters) {
+            cacheKeys.add("method.request.querystring." + name);
+            requestParameters.put("integration.request.querystring." + name, "method.request.querystring." + name);
+        }
+        return method;
+    }
+
+    /**
+     * OPTIONS answered by a MOCK integration (200 with the CORS headers) for browser preflights.
+     */
+    private ObjectNode corsMethod(List<String> pathVariables) {
+        ObjectNode method = methodWithParameters(pathVariables, List.of());
+        ObjectNode headers = method.putObject("responses").putObject("200")
+                .put("description", "CORS preflight")
+                .putObject("headers");
+        for (String header : List.of("Access-Control-Allow-Headers", "Access-Control-Allow-Methods",
+                "Access-Control-Allow-Origin")) {
+            headers.putObject(header).putObject("schema").put("type", "string");
+        }
+
+        ObjectNode integration = method.putObject("x-amazon-apigateway-integration");
+        integration.put("type", "mock");
+        integration.putObject("requestTemplates").put("application/json", "{\"statusCode\": 200}");
+        ObjectNode response = integration.putObject("responses").putObject("default");
+        response.put("statusCode", "200");
+        ObjectNode responseParameters = response.putObject("responseParameters");
+        responseParameters.put("method.response.header.Access-Control-Allow-Headers", ALLOW_HEADERS);
+        responseParameters.put("method.response.header.Access-Control-Allow-Methods", ALLOW_METHODS);
+        responseParameters.put("method.response.header.Access-Control-Allow-Origin", ALLOW_ORIGIN);
+        response.putObject("responseTemplates").put("application/json", "");
+        integration.put("passthroughBehavior", "when_no_match");
+        return method;
+    }
+
+    private ObjectNode methodWithParameters(List<String> pathVariables, List<String> queryParameters) {
+        ObjectNode method = OBJECT_MAPPER.createObjectNode();
+        if (!pathVariables.isEmpty() || !queryParameters.isEmpty()) {
+            ArrayNode parameters = method.putArray("parameters");
+            for (String name : pathVariables) {
+                addParameter(parameters, name, "path", true);
+            }
+            for (String name : queryParameters) {
+                addParameter(parameters, name, "query", false);
+            }
+        }
+        return method;
+    }
+
+    private void addParameter(ArrayNode parameters, String name, String in, boolean required) {
+        ObjectNode parameter = parameters.addObject();
+        parameter.put("name", name);
+        parameter.put("in", in);
+        parameter.put("required", required);
+        parameter.putObject("schema").put("type", "string");
+    }
+
+    /**
+     * Scanned routes as API Gateway path templates ({id:\d+} becomes {id}) with their path
+     * variables, named consistently through the resource tree. Routes API Gateway cannot
+     * express are left to {proxy+}.
+     */
+    private Map<String, List<String>> scanRoutes(String projectPath, ResourceTree resources) {
+        Map<String, List<String>> routes = new LinkedHashMap<>();
+        try {
+            for (String endpoint : endpointScanner.scanEndpoints(projectPath)) {
+                String template = resources.add(toTemplate(endpoint));
+                if (template != null) {
+                    routes.put(template, pathVariables(template));
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("OpenAPI: route scan skipped: " + e.getMessage());
+        }
+        return routes;
+    }
+
+    /**
+     * @GetMapping routes as path templates with their query parameter names.
+     */
+    private Map<String, List<String>> scanCachedGetRoutes(String projectPath, ResourceTree resources) {
+        Map<String, List<String>> routes = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, List<String>> endpoint
+                    : endpointScanner.scanGetEndpointQueryParameters(projectPath).entrySet()) {
+                String template = resources.add(toTemplate(endpoint.getKey()));
+                if (template != null) {
+                    // Routes that only differ in variable names share one resource and its cache key
+                    List<String> queryParameters = routes.computeIfAbsent(template, k -> new ArrayList<>());
+                    endpoint.getValue().stream()
+                            .filter(name -> !queryParameters.contains(name))
+                            .forEach(queryParameters::add);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("OpenAPI: GET route scan skipped, nothing cached: " + e.getMessage());
+        }
+        return routes;
+    }
+
+    /**
+     * Distinct routes mapped by the project's controllers, for any HTTP method.
+     */
+    private int countRoutes(String projectPath) {
+        try {
+            return endpointScanner.scanEndpoints(projectPath).size();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Endpoint as an API Gateway path template, or null if API Gateway cannot express it.
+     */
+    private String toTemplate(String endpoint) {
+        String path = endpoint.length() > 1 && endpoint.endsWith("/")
+                ? endpoint.substring(0, endpoint.length() - 1) : endpoint;
+        if (!path.startsWith("/") || "/".equals(path) || path.contains("*") || path.contains("//")) {
+            return null;
+        }
+
+        Matcher m = PATH_VARIABLE.matcher(path);
+        StringBuilder template = new StringBuilder();
+        while (m.find()) {
+            m.appendReplacement(template, Matcher.quoteReplacement("{" + m.group(1).trim() + "}"));
+        }
+        m.appendTail(template);
+        return template.toString();
+    }
+
+    private List<String> pathVariables(String template) {
+        List<String> variables = new ArrayList<>();
+        Matcher m = PATH_VARIABLE.matcher(template);
+        while (m.find()) {
+            variables.add(m.group(1).trim());
+        }
+        return variables;
+    }
+
+    /**
+     * Resource paths added to one document. API Gateway allows a single variable child per
+     * resource, so every variable segment takes the name the first route gave it under the
+     * same parent (/orders/{orderId} after /orders/{id}/items becomes /orders/{id}). The
+     * root's {proxy+} is that variable child for the top level.
+     */
+    private static class ResourceTree {
+        private final Map<String, String> variableNames = new HashMap<>(); // Parent path -> child variable
+
+        /**
+         * The template with the tree's variable names, or null when it cannot be a resource:
+         * a variable first segment (next to {proxy+}) or a variable name used twice in the path.
+         */
+        String add(String template) {
+            if (template == null) {
+                return null;
+            }
+            String[] segments = template.substring(1).split("/");
+            List<String> names = new ArrayList<>();
+            StringBuilder path = new StringBuilder();
+            Map<String, String> added = new LinkedHashMap<>();
+            for (int i = 0; i < segments.length; i++) {
+                String segment = segments[i];
+                if (segment.startsWith("{")) {
+                    if (i == 0) {
+                        return null;
+                    }
+                    String name = variableNames.getOrDefault(path.toString(),
+                            segment.substring(1, segment.length() - 1));
+                    if (names.contains(name)) {
+                        return null;
+                    }
+                    names.add(name);
+                    added.put(path.toString(), name);
+                    segment = "{" + name + "}";
+                }
+                path.append('/').append(segment);
+            }
+            added.forEach(variableNames::putIfAbsent);
+            return path.toString();
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Generated OpenAPI document.
+     */
+    public static class ApiDefinition {
+        private String body;
+        private String sha256;
+        private List<String> paths;
+        private List<String> cachedPaths;
+        private int routeCount;
+
+        public String getBody() {
+            return body;
+        }
+
+        /**
+         * Hash of the body; an unchanged definition does not need to be applied again.
+         */
+        public String getSha256() {
+            return sha256;
+        }
+
+        public List<String> getPaths() {
+            return paths;
+        }
+
+        public int getPathCount() {
+            return paths.size();
+        }
+
+        /**
+         * Resource paths with a cached GET method (stage method settings enable the cache on them).
+         */
+        public List<String> getCachedPaths() {
+            return cachedPaths;
+        }
+
+        /**
+         * Routes the project maps in total (0 when caching is off), the share of its traffic
+         * that cached paths can answer is estimated from this.
+         */
+        public int getRouteCount() {
+            return routeCount;
+        }
+    }
+}
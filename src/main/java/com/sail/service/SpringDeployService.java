@@ -1,109 +1,1378 @@
 package com.sail.service;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sail.aws.ApiGatewayService;
+import com.sail.aws.HttpApiService;
+import com.sail.aws.LambdaCodeStorageService;
+import com.sail.aws.LambdaLayerService;
 import com.sail.aws.LambdaService;
 import com.sail.aws.LambdaDatabaseConfigurationService;
 import com.sail.aws.LambdaDatabaseConfigurationService.DatabaseType;
+import com.sail.aws.LambdaJvmTuningService;
+import com.sail.aws.ProvisionedConcurrencyService;
+import com.sail.aws.RegionalServices;
 import com.sail.aws.SamCliService;
+import com.sail.aws.SharedApiService;
 import com.sail.dto.DeployResult;
+import com.sail.model.DeployCheckpoint;
 import com.sail.model.ProjectInfo;
+import com.sail.model.WarmPoolEntry;
+import com.sail.repository.DeployCheckpointRepository;
 import com.sail.repository.ProjectInfoRepository;
+import com.sail.utils.DeployGraph;
+import com.sail.utils.FileUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.lambda.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.lambda.model.Runtime;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
 
 @Service
 public class SpringDeployService {
 
+    static final String BUILD_PATH_JVM = "JVM";
+    static final String BUILD_PATH_NATIVE = "NATIVE";
+    static final String BUILD_PATH_JVM_FALLBACK = "JVM_FALLBACK";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
     private final LambdaService lambdaService;
     private final ApiGatewayService apiGatewayService;
+    private final HttpApiService httpApiService;
+    private final SharedApiService sharedApiService;
     private final SamCliService samCliService;
     private final ProjectInfoRepository projectInfoRepository;
+    private final DeployCheckpointRepository checkpointRepository;
+    private final LambdaCodeStorageService codeStorageService;
     private final LambdaAdapterService lambdaAdapterService;
     private final LambdaDatabaseConfigurationService dbConfigService;
+    private final LambdaLayerService lambdaLayerService;
+    private final LocalInvocationService localInvocationService;
+    private final NativeImageService nativeImageService;
+    private final MemoryProfilerService memoryProfilerService;
+    private final LambdaJvmTuningService jvmTuningService;
+    private final H2SnapshotService h2SnapshotService;
+    private final OpenApiDefinitionService openApiDefinitionService;
+    private final RegionalServices regionalServices;
+    private final WarmPoolService warmPoolService;
+    private final ProvisionedConcurrencyService provisionedConcurrencyService;
     private final String region;
     private final String buildDir;
+    private final FileUtils fileUtils;
+    private final boolean compareColdStart;
+    private final boolean comparePackaging;
+    private final boolean profileEnabled;
+    private final boolean h2SnapshotEnabled;
+    private final boolean compareJvmProfiles;
+    private final String liveAliasName;
+    private final int deployParallelism;
+    private final boolean apiCacheEnabled;
+    private final List<String> defaultRegions;
+    // Projects with a deploy or resume running in this process
+    private final Set<String> activeDeploys = ConcurrentHashMap.newKeySet();
 
     public SpringDeployService(LambdaService lambdaService,
                                ApiGatewayService apiGatewayService,
+                               HttpApiService httpApiService,
+                               SharedApiService sharedApiService,
                                SamCliService samCliService,
                                ProjectInfoRepository projectInfoRepository,
+                               DeployCheckpointRepository checkpointRepository,
+                               LambdaCodeStorageService codeStorageService,
                                LambdaAdapterService lambdaAdapterService,
                                LambdaDatabaseConfigurationService dbConfigService,
+                               LambdaLayerService lambdaLayerService,
+                               LocalInvocationService localInvocationService,
+                               NativeImageService nativeImageService,
+                               MemoryProfilerService memoryProfilerService,
+                               LambdaJvmTuningService jvmTuningService,
+                               H2SnapshotService h2SnapshotService,
+                               OpenApiDefinitionService openApiDefinitionService,
+                               RegionalServices regionalServices,
+                               WarmPoolService warmPoolService,
+                               ProvisionedConcurrencyService provisionedConcurrencyService,
                                @Value("${aws.region}") String region,
-                               @Value("${sail.temp.build.dir}") String buildDir) {
+                               @Value("${sail.temp.build.dir}") String buildDir,
+                               FileUtils fileUtils,
+                               @Value("${sail.lambda.coldstart.compare:false}") boolean compareColdStart,
+                               @Value("${sail.lambda.packaging.compare:false}") boolean comparePackaging,
+                               @Value("${sail.lambda.profile.enabled:false}") boolean profileEnabled,
+                               @Value("${sail.lambda.h2.snapshot.enabled:false}") boolean h2SnapshotEnabled,
+                               @Value("${sail.lambda.jvm.compare:false}") boolean compareJvmProfiles,
+                               @Value("${sail.lambda.alias.name:live}") String liveAliasName,
+                               @Value("${sail.deploy.parallelism:4}") int deployParallelism,
+                               @Value("${sail.api.cache.enabled:false}") boolean apiCacheEnabled,
+                               @Value("${sail.deploy.regions:}") List<String> defaultRegions) {
         this.lambdaService = lambdaService;
         this.apiGatewayService = apiGatewayService;
+        this.httpApiService = httpApiService;
+        this.sharedApiService = sharedApiService;
         this.samCliService = samCliService;
         this.projectInfoRepository = projectInfoRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.codeStorageService = codeStorageService;
         this.lambdaAdapterService = lambdaAdapterService;
         this.dbConfigService = dbConfigService;
+        this.lambdaLayerService = lambdaLayerService;
+        this.localInvocationService = localInvocationService;
+        this.nativeImageService = nativeImageService;
+        this.memoryProfilerService = memoryProfilerService;
+        this.jvmTuningService = jvmTuningService;
+        this.h2SnapshotService = h2SnapshotService;
+        this.openApiDefinitionService = openApiDefinitionService;
+        this.regionalServices = regionalServices;
+        this.warmPoolService = warmPoolService;
+        this.provisionedConcurrencyService = provisionedConcurrencyService;
         this.region = region;
         this.buildDir = buildDir;
+        this.fileUtils = fileUtils;
+        this.compareColdStart = compareColdStart;
+        this.comparePackaging = comparePackaging;
+        this.profileEnabled = profileEnabled;
+        this.h2SnapshotEnabled = h2SnapshotEnabled;
+        this.compareJvmProfiles = compareJvmProfiles;
+        this.liveAliasName = liveAliasName;
+        this.deployParallelism = deployParallelism;
+        this.apiCacheEnabled = apiCacheEnabled;
+        this.defaultRegions = defaultRegions;
+        if (sharedApiService.isEnabled() && !regionalServices.additionalRegions(defaultRegions).isEmpty()) {
+            throw new IllegalStateException("sail.deploy.regions is not supported with SHARED API mode");
+        }
     }
 
     public DeployResult deploySpringBoot(String projectId) {
+        return deploySpringBoot(projectId, List.of());
+    }
+
+    /**
+     * Deploys to aws.region and, concurrently, to every other requested region (or the
+     * sail.deploy.regions default when none are requested).
+     */
+    public DeployResult deploySpringBoot(String projectId, List<String> regions) {
+        return deploySpringBoot(projectId, regions, null, null);
+    }
+
+    /**
+     * Deploy with a traffic profile: peakRps (and avgDurationMs) replace the project's stored
+     * profile and size provisioned concurrency instead of the function's CloudWatch metrics.
+     */
+    public DeployResult deploySpringBoot(String projectId, List<String> regions, Double peakRps,
+                                         Double avgDurationMs) {
+        DeployResult result = new DeployResult();
+        result.setDeploymentType("SPRINGBOOT");
+        if (!activeDeploys.add(projectId)) {
+            return alreadyInProgress(projectId, result);
+        }
+
+        ProjectInfo projectInfo = null;
+        Optional<WarmPoolEntry> claimed = Optional.empty();
+        DeployCheckpoint checkpoint = null;
+        try {
+            failInterruptedAttempts(projectId);
+            projectInfo = findSpringProject(projectId);
+            validateProvisionedConcurrency();
+            DeployCheckpoint failedAttempt = checkpointRepository.findFirstByProjectIdOrderByCreatedAtDesc(projectId)
+                    .filter(previous -> "FAILED".equals(previous.getStatus()))
+                    .orElse(null);
+            if (peakRps != null) {
+                if (peakRps < 0 || (avgDurationMs != null && avgDurationMs <= 0)) {
+                    throw new IllegalArgumentException("peakRps must be >= 0 and avgDurationMs > 0");
+                }
+                projectInfo.setTrafficPeakRps(peakRps);
+                projectInfo.setTrafficAvgDurationMs(avgDurationMs);
+                projectInfo = projectInfoRepository.save(projectInfo);
+            }
+            if (projectInfo.getLambdaFunctionName() == null && failedAttemptApiId(failedAttempt) == null) {
+                // First deploy: take a pre-provisioned function and API if one is ready, unless
+                // a failed first attempt already created the project's API
+                claimed = warmPoolService.claim(projectInfo);
+            }
+
+            checkpoint = new DeployCheckpoint();
+            checkpoint.setProjectId(projectId);
+            checkpoint.setStatus("IN_PROGRESS");
+            checkpoint.setCompletedSteps("");
+            checkpoint.setApiTarget(lambdaAdapterService.getApiTarget().name());
+            checkpoint.setFunctionName(projectInfo.getLambdaFunctionName() != null
+                    ? projectInfo.getLambdaFunctionName()
+                    : lambdaService.getFunctionNameForProject(projectId));
+            // Known before the function exists, so the API is wired up while the project builds.
+            // With versions published (always with SnapStart), the API target invokes the alias
+            // that is published after creation.
+            checkpoint.setInvokeArn(lambdaService.getFunctionArn(checkpoint.getFunctionName(),
+                    lambdaService.usesAlias() ? liveAliasName : null));
+            List<String> additionalRegions = regionalServices.additionalRegions(
+                    regions == null || regions.isEmpty() ? defaultRegions : regions);
+            if (isSharedApi()) {
+                if (!additionalRegions.isEmpty()) {
+                    throw new IllegalStateException("SHARED API mode deploys to " + region + " only");
+                }
+                checkpoint.setApiId(sharedApiService.getApiId());
+            } else {
+                reuseExistingApi(projectInfo, checkpoint, failedAttempt);
+            }
+            checkpoint.setRegionalDeployments(OBJECT_MAPPER.writeValueAsString(
+                    reuseExistingRegionalApis(projectInfo, additionalRegions, failedAttempt)));
+            checkpoint = checkpointRepository.save(checkpoint);
+
+            return runDeployment(projectInfo, checkpoint, result);
+
+        } catch (Exception e) {
+            result.setStatus("FAILED");
+            result.setErrorMessage(e.getMessage());
+            return result;
+        } finally {
+            if (claimed.isPresent()) {
+                releaseUnusedClaim(projectInfo, checkpoint, claimed.get());
+            }
+            activeDeploys.remove(projectId);
+        }
+    }
+
+    /**
+     * If the attempt failed before its "function" step, e.g. in the build, a claimed pool pair
+     * goes back to the pool: the function still has its placeholder code, and the next claimant
+     * overwrites the API (its recorded definition hash is still the placeholder's). The attempt
+     * is pointed at the project's own function name so a resume creates the project's function
+     * and API instead.
+     */
+    private void releaseUnusedClaim(ProjectInfo projectInfo, DeployCheckpoint checkpoint, WarmPoolEntry entry) {
+        if (checkpoint != null && parseList(checkpoint.getCompletedSteps()).contains("function")) {
+            return;
+        }
+        try {
+            warmPoolService.release(projectInfo, entry);
+            if (checkpoint != null && checkpoint.getId() != null) {
+                checkpoint.setFunctionName(lambdaService.getFunctionNameForProject(projectInfo.getProjectId()));
+                checkpoint.setInvokeArn(lambdaService.getFunctionArn(checkpoint.getFunctionName(),
+                        lambdaService.usesAlias() ? liveAliasName : null));
+                checkpoint.setApiId(null);
+                checkpointRepository.save(checkpoint);
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Could not return function " + entry.getFunctionName() + " to the warm pool: "
+                    + e.getMessage());
+        }
+    }
+
+    /**
+     * Continues the project's latest failed deploy attempt from its first incomplete step,
+     * reusing the built artifact (if unchanged on disk), the function and the API created so far.
+     */
+    public DeployResult resumeSpringBoot(String projectId) {
         DeployResult result = new DeployResult();
         result.setDeploymentType("SPRINGBOOT");
+        if (!activeDeploys.add(projectId)) {
+            return alreadyInProgress(projectId, result);
+        }
 
         try {
-            ProjectInfo projectInfo = projectInfoRepository.findById(projectId)
-                    .orElseThrow(() -> new RuntimeException("Project not found: " + projectId));
+            failInterruptedAttempts(projectId);
+            ProjectInfo projectInfo = findSpringProject(projectId);
 
-            if (!"SPRINGBOOT".equals(projectInfo.getProjectType())) {
-                throw new RuntimeException("Project is not a Spring Boot application");
+            DeployCheckpoint checkpoint = checkpointRepository.findFirstByProjectIdOrderByCreatedAtDesc(projectId)
+                    .orElseThrow(() -> new RuntimeException("No deploy attempt to resume for project: " + projectId));
+            if ("SUCCESS".equals(checkpoint.getStatus())) {
+                throw new RuntimeException("Latest deploy attempt " + checkpoint.getId() + " already succeeded");
             }
+            if (checkpoint.getApiTarget() != null
+                    && !checkpoint.getApiTarget().equals(lambdaAdapterService.getApiTarget().name())) {
+                // The generated handler expects the payload format of the configured target
+                throw new RuntimeException("API target changed from " + checkpoint.getApiTarget()
+                        + " since deploy attempt " + checkpoint.getId() + " - start a new deploy");
+            }
+            System.out.println("Resuming deploy attempt " + checkpoint.getId() + " (completed steps: "
+                    + checkpoint.getCompletedSteps() + ")");
+
+            return runDeployment(projectInfo, checkpoint, result);
 
-            String projectPath = projectInfo.getExtractedPath();
+        } catch (Exception e) {
+            result.setStatus("FAILED");
+            result.setErrorMessage(e.getMessage());
+            return result;
+        } finally {
+            activeDeploys.remove(projectId);
+        }
+    }
 
-            // Step 0: Detect database type from project
-            DatabaseType dbType = detectDatabaseType(projectPath);
-            System.out.println("Detected database type: " + dbType);
+    private DeployResult alreadyInProgress(String projectId, DeployResult result) {
+        result.setStatus("FAILED");
+        result.setErrorMessage("A deploy of project " + projectId + " is already in progress");
+        return result;
+    }
+
+    /**
+     * Only one deploy or resume per project runs at a time (activeDeploys), so an attempt
+     * still IN_PROGRESS was interrupted, e.g. by a restart. It is marked FAILED so it can be resumed.
+     */
+    private void failInterruptedAttempts(String projectId) {
+        for (DeployCheckpoint interrupted : checkpointRepository.findByProjectIdAndStatus(projectId, "IN_PROGRESS")) {
+            interrupted.setStatus("FAILED");
+            interrupted.setErrorMessage("Interrupted before it completed");
+            checkpointRepository.save(interrupted);
+        }
+    }
 
-            // Step 1: Prepare project for Lambda (inject deps + handler)
-            String handlerFqn = lambdaAdapterService.prepareProjectForLambda(projectPath);
-            System.out.println("Using Lambda handler: " + handlerFqn);
+    /**
+     * Redeploy: the "api" step updates the project's existing REST or HTTP API instead of
+     * creating a new one. A function URL belongs to the function and is kept anyway. Without
+     * one, the API created by a failed previous attempt is updated instead of left behind.
+     */
+    private void reuseExistingApi(ProjectInfo projectInfo, DeployCheckpoint checkpoint,
+                                  DeployCheckpoint failedAttempt) {
+        LambdaAdapterService.ApiTarget apiTarget = lambdaAdapterService.getApiTarget();
+        // Never overwrite the shared API a project was previously mounted on
+        if (apiTarget == LambdaAdapterService.ApiTarget.REST_API && projectInfo.getRestApiId() != null
+                && projectInfo.getApiBasePath() == null) {
+            if (!apiGatewayService.restApiExists(projectInfo.getRestApiId())) {
+                System.out.println("REST API " + projectInfo.getRestApiId() + " no longer exists - creating a new one");
+                return;
+            }
+            checkpoint.setApiId(projectInfo.getRestApiId());
+            System.out.println("Redeploy: reusing REST API " + projectInfo.getRestApiId());
+        } else if (apiTarget == LambdaAdapterService.ApiTarget.HTTP_API && projectInfo.getHttpApiId() != null) {
+            if (!httpApiService.httpApiExists(projectInfo.getHttpApiId())) {
+                System.out.println("HTTP API " + projectInfo.getHttpApiId() + " no longer exists - creating a new one");
+                return;
+            }
+            checkpoint.setApiId(projectInfo.getHttpApiId());
+            System.out.println("Redeploy: reusing HTTP API " + projectInfo.getHttpApiId());
+        }
+
+        String failedAttemptApiId = failedAttemptApiId(failedAttempt);
+        if (checkpoint.getApiId() == null && failedAttemptApiId != null
+                && apiExists(apiTarget, apiGatewayService, httpApiService, failedAttemptApiId)) {
+            checkpoint.setApiId(failedAttemptApiId);
+            System.out.println("Reusing " + apiTarget + " " + failedAttemptApiId + " created by failed deploy attempt "
+                    + failedAttempt.getId());
+        }
+    }
+
+    /**
+     * The API a failed attempt was deploying to, if it belongs to the project and the configured
+     * target (never the shared API). The "api" step runs while the project builds, so the
+     * attempt may have created it before failing.
+     */
+    private String failedAttemptApiId(DeployCheckpoint failedAttempt) {
+        if (failedAttempt == null || failedAttempt.getApiId() == null
+                || !lambdaAdapterService.getApiTarget().name().equals(failedAttempt.getApiTarget())
+                || failedAttempt.getApiId().equals(sharedApiService.getApiId())) {
+            return null;
+        }
+        return failedAttempt.getApiId();
+    }
 
-            // Step 2: Build the project (now Lambda-ready)
-            File jarFile = buildProject(projectPath);
+    private boolean apiExists(LambdaAdapterService.ApiTarget apiTarget, ApiGatewayService restApis,
+                              HttpApiService httpApis, String apiId) {
+        return apiTarget == LambdaAdapterService.ApiTarget.HTTP_API
+                ? httpApis.httpApiExists(apiId)
+                : restApis.restApiExists(apiId);
+    }
 
-            // Step 3: Generate function name
-            String functionName = lambdaService.generateFunctionName();
+    /**
+     * Redeploy to additional regions: the API created in each region by the last deploy, or
+     * else by a failed previous attempt, is reused if it is of the configured target and still
+     * exists. Returns the checkpoint's initial regional state (region -> reused apiId, if any).
+     */
+    private Map<String, Map<String, String>> reuseExistingRegionalApis(ProjectInfo projectInfo,
+                                                                       List<String> additionalRegions,
+                                                                       DeployCheckpoint failedAttempt)
+            throws IOException {
+        LambdaAdapterService.ApiTarget apiTarget = lambdaAdapterService.getApiTarget();
+        Map<String, String> previousApiIds = new LinkedHashMap<>();
+        if (failedAttempt != null && failedAttempt.getRegionalDeployments() != null
+                && apiTarget.name().equals(failedAttempt.getApiTarget())) {
+            OBJECT_MAPPER.readValue(failedAttempt.getRegionalDeployments(),
+                            new TypeReference<Map<String, Map<String, String>>>() { })
+                    .forEach((regionName, state) -> {
+                        if (state.get("apiId") != null) {
+                            previousApiIds.put(regionName, state.get("apiId"));
+                        }
+                    });
+        }
+        if (projectInfo.getRegionalApiIds() != null && apiTarget.name().equals(projectInfo.getApiTarget())) {
+            // The last successful deploy's APIs take precedence
+            previousApiIds.putAll(OBJECT_MAPPER.readValue(projectInfo.getRegionalApiIds(),
+                    new TypeReference<Map<String, String>>() { }));
+        }
 
-            // Step 4: Create Lambda function with intelligent database configuration
-            String functionArn = lambdaService.createFunction(functionName, jarFile, handlerFqn, dbType);
+        Map<String, Map<String, String>> regional = new LinkedHashMap<>();
+        for (String regionName : additionalRegions) {
+            Map<String, String> state = new LinkedHashMap<>();
+            String apiId = previousApiIds.get(regionName);
+            if (apiId != null) {
+                RegionalServices.Services services = regionalServices.forRegion(regionName);
+                if (apiExists(apiTarget, services.getApiGatewayService(), services.getHttpApiService(), apiId)) {
+                    System.out.println("Redeploy: reusing " + apiTarget + " " + apiId + " in " + regionName);
+                    state.put("apiId", apiId);
+                }
+            }
+            regional.put(regionName, state);
+        }
+        return regional;
+    }
 
-            // Step 5: Create API Gateway
-            String apiName = apiGatewayService.generateApiName();
-            String apiId = apiGatewayService.createRestApi(apiName);
+    /**
+     * SHARED API mode mounts projects on one pre-provisioned REST API.
+     */
+    private boolean isSharedApi() {
+        if (!sharedApiService.isEnabled()) {
+            return false;
+        }
+        if (lambdaAdapterService.getApiTarget() != LambdaAdapterService.ApiTarget.REST_API) {
+            throw new IllegalStateException("SHARED API mode requires sail.api.target=REST_API");
+        }
+        return true;
+    }
 
-            // Step 6: Allow API Gateway to invoke Lambda
-            lambdaService.addInvokePermissionForApi(functionArn, apiId, region);
+    private ProjectInfo findSpringProject(String projectId) {
+        ProjectInfo projectInfo = projectInfoRepository.findById(projectId)
+                .orElseThrow(() -> new RuntimeException("Project not found: " + projectId));
 
-            // Step 7: Create proxy resource + ANY method + Lambda proxy integration + deployment + stage
-            String stageName = "prod";
-            String apiUrl = apiGatewayService.setupLambdaProxy(apiId, functionArn, stageName);
+        if (!"SPRINGBOOT".equals(projectInfo.getProjectType())) {
+            throw new RuntimeException("Project is not a Spring Boot application");
+        }
+        return projectInfo;
+    }
 
-            // Update project status
-            projectInfo.setStatus("DEPLOYED");
-            projectInfoRepository.save(projectInfo);
+    /**
+     * Runs the deploy graph for the attempt, skipping steps it already completed and
+     * checkpointing after every step.
+     */
+    private DeployResult runDeployment(ProjectInfo projectInfo, DeployCheckpoint checkpoint, DeployResult result)
+            throws IOException {
+        result.setCheckpointId(checkpoint.getId());
+        SpringDeployment deployment = restoreDeployment(projectInfo, checkpoint);
+        String stageName = "prod";
 
-            // Fill result
-            result.setLambdaName(functionName);
-            result.setApiUrl(apiUrl);
-            result.setRegion(region);
-            result.setStatus("SUCCESS");
-            return result;
+        Set<String> completedSteps = parseList(checkpoint.getCompletedSteps());
+        if (completedSteps.contains("build") && !isArtifactUnchanged(checkpoint)) {
+            // Rebuilding also re-runs every step that depends on the artifact
+            System.out.println("Built artifact missing or changed since the checkpoint - rebuilding");
+            completedSteps.remove("build");
+        }
 
-        } catch (Exception e) {
+        checkpoint.setStatus("IN_PROGRESS");
+        checkpoint.setErrorMessage(null);
+        checkpointRepository.save(checkpoint);
+
+        // The blocking steps of each region get their own share of threads
+        ExecutorService executor = Executors.newFixedThreadPool(deployParallelism * (1 + deployment.regions.size()));
+        try {
+            DeployGraph graph = new DeployGraph("project " + projectInfo.getProjectId(), executor, completedSteps,
+                    stepName -> saveCheckpoint(checkpoint, deployment, stepName));
+
+            // Function path: prepare -> build -> (dependency layer | package stages) -> function -> alias
+            graph.blockingStep("prepare", List.of(), () -> prepareProject(deployment));
+            graph.blockingStep("build", List.of("prepare"), () -> buildArtifact(deployment));
+            graph.blockingStep("layer", List.of("build"), () -> publishDependencyLayer(deployment,
+                    lambdaLayerService, deployment.layerArns));
+            graph.blockingStep("package", List.of("build"), () -> preparePackage(deployment));
+            List<String> functionDependencies = new ArrayList<>(List.of("layer", "package"));
+            if (!deployment.regions.isEmpty()) {
+                // Uploaded once to this region's code bucket; the other regions copy it from there
+                graph.blockingStep("code", List.of("package"), () -> uploadCode(deployment));
+                functionDependencies.add("code");
+            }
+            graph.blockingStep("function", functionDependencies, () -> createFunction(deployment, lambdaService,
+                    deployment.layerArns));
+            graph.blockingStep("alias", List.of("function"), () -> publishAlias(deployment, lambdaService));
+            if (isProvisionedConcurrencyManaged(projectInfo)) {
+                // Once the alias points at the new version; Lambda moves existing provisioned instances along
+                graph.blockingStep("provisioned", List.of("alias"), () -> deployment.provisionedConcurrency =
+                        applyProvisionedConcurrency(deployment, provisionedConcurrencyService));
+            }
+
+            if (deployment.apiTarget == LambdaAdapterService.ApiTarget.FUNCTION_URL) {
+                // No gateway: the URL (and its CORS configuration) is attached to the function or alias
+                graph.step("function-url", List.of("alias"), () -> applyFunctionUrl(deployment, lambdaService)
+                        .thenAccept(functionUrl -> deployment.apiUrl = functionUrl));
+            } else {
+                // The API only needs the invoke ARN, known up front, so it is created or updated
+                // while the project builds. An API created by an attempt that fails later is
+                // picked up by the resume, or by the next deploy (see reuseExistingApi).
+                if (deployment.basePath != null) {
+                    // API path: merge this project's paths into the shared API; the stage
+                    // deployment is batched with other deploys running at the same time
+                    graph.step("api", List.of(), () -> applySharedApiDefinition(deployment));
+                    graph.step("api-stage", List.of("api"), () -> sharedApiService.deployAsync()
+                            .thenAccept(stageUrl -> deployment.apiUrl = sharedApiService
+                                    .getProjectUrl(projectInfo.getProjectId())));
+                } else if (deployment.apiTarget == LambdaAdapterService.ApiTarget.HTTP_API) {
+                    // API path: one quick-create call (route, integration, auto-deployed stage, CORS)
+                    graph.step("api", List.of(), () -> applyHttpApi(deployment));
+                } else {
+                    // API path: one OpenAPI import (or overwrite) and a stage deployment
+                    graph.step("api", List.of(), () -> applyApiDefinition(deployment));
+                    graph.step("api-stage", List.of("api"), () -> deployApiStage(deployment, stageName));
+                }
+                if (deployment.isApiCacheEnabled() || deployment.hasStageCacheCluster()) {
+                    // Stage cache for the discovered GET routes once the stage exists, or deleted
+                    // when there is nothing left to cache
+                    graph.step("api-cache", List.of("api-stage"), () -> updateStageCache(deployment, stageName));
+                }
+
+                // Joins both paths: allow API Gateway to invoke the function (already granted on redeploys)
+                graph.step("permission", List.of("alias", "api"), () -> deployment.isPermissionGranted()
+                        ? CompletableFuture.completedFuture(null)
+                        : lambdaService.addInvokePermissionForApiAsync(deployment.invokeArn, deployment.apiId, region));
+            }
+
+            // The same function and API steps in each additional region, concurrently with this one
+            for (RegionalDeployment regional : deployment.regions.values()) {
+                addRegionalSteps(graph, deployment, regional, stageName);
+            }
+
+            graph.run();
+        } catch (RuntimeException e) {
+            checkpoint.setStatus("FAILED");
+            checkpoint.setErrorMessage(e.getMessage());
+            checkpointRepository.save(checkpoint);
+
+            result.setBuildPath(deployment.buildPath);
             result.setStatus("FAILED");
-            result.setErrorMessage(e.getMessage());
+            result.setErrorMessage(e.getMessage() + " (resume with POST /api/deploy/spring/"
+                    + projectInfo.getProjectId() + "/resume)");
             return result;
+        } finally {
+            executor.shutdown();
+        }
+
+        checkpoint.setStatus("SUCCESS");
+        checkpointRepository.save(checkpoint);
+
+        deleteReplacedApis(projectInfo, deployment);
+
+        // Update project status and the resources the next deploy reuses
+        projectInfo.setLambdaFunctionName(deployment.functionName);
+        projectInfo.setLambdaInvokeArn(deployment.invokeArn);
+        projectInfo.setApiTarget(deployment.apiTarget.name());
+        if (deployment.apiTarget == LambdaAdapterService.ApiTarget.REST_API) {
+            projectInfo.setRestApiId(deployment.apiId);
+            projectInfo.setApiBasePath(deployment.basePath);
+            projectInfo.setApiDefinitionSha256(deployment.apiDefinitionSha256);
+        } else if (deployment.apiTarget == LambdaAdapterService.ApiTarget.HTTP_API) {
+            projectInfo.setHttpApiId(deployment.apiId);
+        }
+        projectInfo.setApiCachedRoutes(deployment.isApiCacheEnabled()
+                ? apiDefinition(deployment).getCachedPaths().size() : 0);
+        projectInfo.setApiRoutes(deployment.isApiCacheEnabled() ? apiDefinition(deployment).getRouteCount() : 0);
+        projectInfo.setApiUrl(deployment.apiUrl);
+        Map<String, String> apiUrls = new LinkedHashMap<>();
+        apiUrls.put(region, deployment.apiUrl);
+        Map<String, String> regionalApiIds = new LinkedHashMap<>();
+        for (RegionalDeployment regional : deployment.regions.values()) {
+            apiUrls.put(regional.services.getRegion(), regional.apiUrl);
+            if (regional.apiId != null) {
+                regionalApiIds.put(regional.services.getRegion(), regional.apiId);
+            }
+        }
+        projectInfo.setRegionalApiIds(OBJECT_MAPPER.writeValueAsString(regionalApiIds));
+        projectInfo.setLambdaMemoryMb(deployment.memorySizeMb);
+        projectInfo.setLambdaTimeoutSeconds(deployment.timeoutSeconds);
+        if (deployment.provisionedConcurrency != null) {
+            projectInfo.setProvisionedConcurrency(deployment.provisionedConcurrency);
+            Map<String, Integer> regionalConcurrency = new LinkedHashMap<>();
+            deployment.regions.forEach((regionName, regional) -> {
+                if (regional.provisionedConcurrency != null) {
+                    regionalConcurrency.put(regionName, regional.provisionedConcurrency);
+                }
+            });
+            projectInfo.setRegionalProvisionedConcurrency(OBJECT_MAPPER.writeValueAsString(regionalConcurrency));
+        }
+        projectInfo.setStatus("DEPLOYED");
+        projectInfoRepository.save(projectInfo);
+
+        // Fill result
+        result.setLambdaName(deployment.functionName);
+        result.setApiUrl(deployment.apiUrl);
+        result.setApiUrls(apiUrls);
+        result.setRegion(region);
+        result.setBuildPath(deployment.buildPath);
+        result.setStatus("SUCCESS");
+        return result;
+    }
+
+    /**
+     * An API the last deploy used but this one replaced (the target changed, or the API was
+     * recreated) is deleted with the function's permission for it. A failed deletion keeps
+     * the primary region's id on the project, so the next deploy tries again.
+     */
+    private void deleteReplacedApis(ProjectInfo projectInfo, SpringDeployment deployment) throws IOException {
+        // The shared API a project was mounted on is never deleted
+        String previousRestApiId = projectInfo.getApiBasePath() == null ? projectInfo.getRestApiId() : null;
+        String currentRestApiId = deployment.apiTarget == LambdaAdapterService.ApiTarget.REST_API
+                && deployment.basePath == null ? deployment.apiId : null;
+        String currentHttpApiId = deployment.apiTarget == LambdaAdapterService.ApiTarget.HTTP_API
+                ? deployment.apiId : null;
+        String previousInvokeArn = projectInfo.getLambdaInvokeArn();
+
+        if (previousRestApiId != null && !previousRestApiId.equals(currentRestApiId)
+                && deleteReplacedApi("REST API " + previousRestApiId,
+                apiGatewayService.deleteRestApiAsync(previousRestApiId), lambdaService, previousInvokeArn,
+                previousRestApiId)) {
+            projectInfo.setRestApiId(null);
+        }
+        if (projectInfo.getHttpApiId() != null && !projectInfo.getHttpApiId().equals(currentHttpApiId)
+                && deleteReplacedApi("HTTP API " + projectInfo.getHttpApiId(),
+                httpApiService.deleteHttpApiAsync(projectInfo.getHttpApiId()), lambdaService, previousInvokeArn,
+                projectInfo.getHttpApiId())) {
+            projectInfo.setHttpApiId(null);
+        }
+
+        if (projectInfo.getRegionalApiIds() == null || projectInfo.getApiTarget() == null) {
+            return;
+        }
+        boolean previousHttpApi = LambdaAdapterService.ApiTarget.HTTP_API.name().equals(projectInfo.getApiTarget());
+        Map<String, String> previousApiIds = OBJECT_MAPPER.readValue(projectInfo.getRegionalApiIds(),
+                new TypeReference<Map<String, String>>() { });
+        previousApiIds.forEach((regionName, previousApiId) -> {
+            RegionalDeployment regional = deployment.regions.get(regionName);
+            if (regional == null || previousApiId.equals(regional.apiId)) {
+                // Regions no longer deployed keep their function and API
+                return;
+            }
+            RegionalServices.Services services = regional.services;
+            deleteReplacedApi((previousHttpApi ? "HTTP API " : "REST API ") + previousApiId + " in " + regionName,
+                    previousHttpApi
+                            ? services.getHttpApiService().deleteHttpApiAsync(previousApiId)
+                            : services.getApiGatewayService().deleteRestApiAsync(previousApiId),
+                    services.getLambdaService(), regional.invokeArn, previousApiId);
+        });
+    }
+
+    /**
+     * Waits for the deletion, then revokes the function's permission for the API. Failures
+     * are logged; returns whether the API is gone.
+     */
+    private boolean deleteReplacedApi(String description, CompletableFuture<Void> deletion, LambdaService service,
+                                      String invokeArn, String apiId) {
+        try {
+            deletion.join();
+            System.out.println("Deleted replaced " + description);
+        } catch (CompletionException e) {
+            System.out.println("Could not delete replaced " + description + ": " + e.getCause().getMessage());
+            return false;
+        }
+        if (invokeArn != null) {
+            try {
+                service.removeInvokePermissionForApiAsync(invokeArn, apiId).join();
+            } catch (CompletionException e) {
+                System.out.println("Could not remove the invoke permission of " + description + ": "
+                        + e.getCause().getMessage());
+            }
+        }
+        return true;
+    }
+
+    // ---------- Deploy steps ----------
+
+    /**
+     * Detects the database type and prepares the project for Lambda (inject deps + handler).
+     */
+    private void prepareProject(SpringDeployment deployment) throws IOException {
+        deployment.dbType = detectDatabaseType(deployment.projectPath);
+        System.out.println("Detected database type: " + deployment.dbType);
+
+        if (comparePackaging && lambdaAdapterService.getBuildBackend() != LambdaAdapterService.BuildBackend.NATIVE) {
+            // Unprepared copy, packaged the other way after the build
+            Path copy = packagingComparisonPath(deployment);
+            fileUtils.deleteDirectory(copy);
+            fileUtils.copyDirectory(Paths.get(deployment.projectPath), copy);
+        }
+
+        deployment.handlerFqn = lambdaAdapterService.prepareProjectForLambda(deployment.projectPath);
+        System.out.println("Using Lambda handler: " + deployment.handlerFqn);
+    }
+
+    /**
+     * Builds the (now Lambda-ready) project - native executable if requested, falling back
+     * to the JVM build when the native build is unavailable or fails.
+     */
+    private void buildArtifact(SpringDeployment deployment) throws IOException, InterruptedException {
+        deployment.packagingMode = lambdaAdapterService.getPackagingMode();
+        long buildStart = System.currentTimeMillis();
+        File artifact = null;
+        String buildPath = BUILD_PATH_JVM;
+        if (lambdaAdapterService.getBuildBackend() == LambdaAdapterService.BuildBackend.NATIVE) {
+            artifact = tryBuildNativeProject(deployment.projectPath);
+            buildPath = artifact != null ? BUILD_PATH_NATIVE : BUILD_PATH_JVM_FALLBACK;
+        }
+        if (artifact == null) {
+            artifact = buildProject(deployment.projectPath, deployment.packagingMode);
+        }
+        deployment.artifact = artifact;
+        deployment.artifactSha256 = codeStorageService.sha256(artifact);
+        deployment.buildPath = buildPath;
+        long buildMs = System.currentTimeMillis() - buildStart;
+        System.out.println("Build (" + (deployment.isNativeBuild() ? "NATIVE" : deployment.packagingMode)
+                + ") took " + buildMs + " ms, package " + artifact.getName() + " is " + artifact.length() + " bytes");
+        if (comparePackaging && !deployment.isNativeBuild()) {
+            comparePackagings(deployment, buildMs);
+        }
+    }
+
+    /**
+     * Builds the copy taken before preparation with the other packaging (LIB_ZIP, or SHADED
+     * when LIB_ZIP is configured), then runs both artifacts locally and logs build time,
+     * package size and init time of each. Never fails the deployment.
+     */
+    private void comparePackagings(SpringDeployment deployment, long buildMs) {
+        Path copy = packagingComparisonPath(deployment);
+        try {
+            if (!Files.isDirectory(copy)) {
+                throw new IOException("no unprepared copy of the project (prepare step skipped on resume)");
+            }
+            LambdaAdapterService.PackagingMode otherMode =
+                    deployment.packagingMode == LambdaAdapterService.PackagingMode.LIB_ZIP
+                            ? LambdaAdapterService.PackagingMode.SHADED
+                            : LambdaAdapterService.PackagingMode.LIB_ZIP;
+            lambdaAdapterService.prepareProjectForLambda(copy.toString(), otherMode);
+            long otherBuildStart = System.currentTimeMillis();
+            File otherArtifact = buildProject(copy.toString(), otherMode);
+            long otherBuildMs = System.currentTimeMillis() - otherBuildStart;
+
+            Map<String, String> environment = lambdaService.getFunctionEnvironment(deployment.dbType,
+                    lambdaAdapterService.isFunctionInvokerHandler(deployment.handlerFqn)
+                            ? lambdaAdapterService.getFunctionInvokerEnvironment(deployment.projectPath)
+                            : Map.of(),
+                    deployment.artifact, lambdaService.getDefaultMemorySizeMb());
+            String probeClass = lambdaAdapterService.getProbeClassName();
+            LocalInvocationService.ProbeResult probe = localInvocationService.runProbe(deployment.projectPath,
+                    deployment.artifact, deployment.packagingMode, probeClass, environment, List.of(), null);
+            LocalInvocationService.ProbeResult otherProbe = localInvocationService.runProbe(copy.toString(),
+                    otherArtifact, otherMode, probeClass, environment, List.of(), null);
+
+            System.out.println("Packaging " + deployment.packagingMode + " (deployed): build " + buildMs + " ms, "
+                    + deployment.artifact.length() + " bytes, local init " + probe.getInitMs() + " ms");
+            System.out.println("Packaging " + otherMode + ": build " + otherBuildMs + " ms, "
+                    + otherArtifact.length() + " bytes, local init " + otherProbe.getInitMs() + " ms");
+        } catch (Exception e) {
+            System.out.println("Packaging comparison skipped: " + e.getMessage());
+        } finally {
+            try {
+                fileUtils.deleteDirectory(copy);
+            } catch (IOException e) {
+                // Left for the next comparison to replace
+            }
+        }
+    }
+
+    private Path packagingComparisonPath(SpringDeployment deployment) {
+        return Paths.get(buildDir, "packaging-compare", deployment.projectInfo.getProjectId());
+    }
+
+    /**
+     * LAYERED packaging - publish (or reuse) the shared dependency layer.
+     */
+    private void publishDependencyLayer(SpringDeployment deployment, LambdaLayerService layerService,
+                                        List<String> layerArns) {
+        layerArns.clear();
+        if (!deployment.isNativeBuild() && deployment.packagingMode == LambdaAdapterService.PackagingMode.LAYERED) {
+            Path layerRoot = Paths.get(deployment.projectPath, "target", "lambda-layer");
+            layerArns.add(layerService.getOrPublishDependencyLayer(layerRoot));
+        }
+    }
+
+    /**
+     * Function environment and sizing, plus the local stages that rewrite the package
+     * (H2 snapshot) and local profiling.
+     */
+    private void preparePackage(SpringDeployment deployment) throws IOException {
+        String projectPath = deployment.projectPath;
+        File jarFile = deployment.artifact;
+        LambdaAdapterService.PackagingMode packagingMode = deployment.packagingMode;
+        DatabaseType dbType = deployment.dbType;
+        boolean nativeBuild = deployment.isNativeBuild();
+
+        // Cold-start profile environment (empty for STANDARD), plus FunctionInvoker settings
+        Map<String, String> extraEnvironment = new LinkedHashMap<>(lambdaAdapterService.getColdStartEnvironment(
+                projectPath, lambdaAdapterService.getColdStartProfile()));
+        if (lambdaAdapterService.isFunctionInvokerHandler(deployment.handlerFqn)) {
+            extraEnvironment.putAll(lambdaAdapterService.getFunctionInvokerEnvironment(projectPath));
+        }
+        if (compareColdStart && !nativeBuild) {
+            compareColdStartProfiles(projectPath, jarFile, packagingMode, deployment.handlerFqn, dbType);
+        }
+
+        // Pre-baked H2 schema/seed snapshot restored with INIT=RUNSCRIPT (ddl-auto=none)
+        if (h2SnapshotEnabled && !nativeBuild) {
+            H2SnapshotService.SnapshotResult snapshot = h2SnapshotService.createAndBundleSnapshot(projectPath,
+                    jarFile, packagingMode, lambdaAdapterService.getProbeClassName(),
+                    lambdaService.getFunctionEnvironment(dbType, extraEnvironment,
+                            jarFile, lambdaService.getDefaultMemorySizeMb()));
+            if (snapshot != null) {
+                extraEnvironment.putAll(snapshot.getEnvironment());
+                // The snapshot is bundled into the artifact
+                deployment.artifactSha256 = codeStorageService.sha256(jarFile);
+            }
+        }
+
+        // Local profiling - smallest memorySize meeting the latency target, and a timeout
+        int memorySizeMb = lambdaService.getDefaultMemorySizeMb();
+        int timeoutSeconds = lambdaService.getDefaultTimeoutSeconds();
+        if (profileEnabled && !nativeBuild) {
+            MemoryProfilerService.MemoryRecommendation recommendation = memoryProfilerService.recommend(
+                    projectPath, jarFile, packagingMode, lambdaAdapterService.getProbeClassName(),
+                    lambdaService.getFunctionEnvironment(dbType, extraEnvironment,
+                            jarFile, lambdaService.getDefaultMemorySizeMb()));
+            if (recommendation != null) {
+                memorySizeMb = recommendation.getMemorySizeMb();
+                timeoutSeconds = recommendation.getTimeoutSeconds();
+            }
+        }
+        if (compareJvmProfiles && !nativeBuild) {
+            compareJvmProfiles(projectPath, jarFile, packagingMode, dbType, extraEnvironment, memorySizeMb);
+        }
+
+        if (deployment.basePath != null) {
+            // The generated handler strips the shared API base path before routing
+            extraEnvironment.put(LambdaAdapterService.BASE_PATH_ENV, deployment.basePath);
+        }
+
+        deployment.extraEnvironment = extraEnvironment;
+        deployment.memorySizeMb = memorySizeMb;
+        deployment.timeoutSeconds = timeoutSeconds;
+    }
+
+    /**
+     * Creates the Lambda function with intelligent database configuration. Redeploys go
+     * straight to the code/configuration update of the project's existing function.
+     */
+    private void createFunction(SpringDeployment deployment, LambdaService service, List<String> layerArns) {
+        Runtime runtime = deployment.isNativeBuild() ? Runtime.PROVIDED_AL2023 : Runtime.JAVA17;
+        if (deployment.functionName.equals(deployment.projectInfo.getLambdaFunctionName())) {
+            try {
+                service.updateFunctionCode(deployment.functionName, deployment.artifact, deployment.handlerFqn,
+                        deployment.dbType, layerArns, deployment.extraEnvironment, runtime,
+                        deployment.memorySizeMb, deployment.timeoutSeconds);
+                return;
+            } catch (RuntimeException e) {
+                if (!(e.getCause() instanceof ResourceNotFoundException)) {
+                    throw e;
+                }
+                System.out.println("Function " + deployment.functionName + " no longer exists - creating it");
+            }
+        }
+
+        // Falls back to an update if the function exists (e.g. created by an earlier attempt)
+        service.createFunction(deployment.functionName, deployment.artifact, deployment.handlerFqn,
+                deployment.dbType, layerArns, deployment.extraEnvironment, runtime,
+                deployment.memorySizeMb, deployment.timeoutSeconds);
+    }
+
+    /**
+     * Creates the REST API from the generated OpenAPI document in one call. On redeploys the
+     * existing API is overwritten instead, or left alone if the definition is unchanged.
+     */
+    private CompletableFuture<Void> applyApiDefinition(SpringDeployment deployment) {
+        OpenApiDefinitionService.ApiDefinition definition = apiDefinition(deployment);
+        deployment.apiDefinitionSha256 = definition.getSha256();
+
+        if (deployment.apiId == null) {
+            System.out.println("Importing REST API with " + definition.getPathCount() + " paths");
+            return apiGatewayService.importRestApiAsync(definition.getBody())
+                    .thenAccept(apiId -> deployment.apiId = apiId);
+        }
+        if (definition.getSha256().equals(deployment.projectInfo.getApiDefinitionSha256())) {
+            System.out.println("REST API definition unchanged");
+            deployment.apiDefinitionUnchanged = true;
+            return CompletableFuture.completedFuture(null);
+        }
+        System.out.println("Updating REST API " + deployment.apiId + " with " + definition.getPathCount() + " paths");
+        return apiGatewayService.putRestApiAsync(deployment.apiId, definition.getBody());
+    }
+
+    /**
+     * Deploys the REST API's stage, unless the definition is the one the last successful deploy
+     * already deployed there.
+     */
+    private CompletableFuture<Void> deployApiStage(SpringDeployment deployment, String stageName) {
+        if (deployment.apiDefinitionUnchanged) {
+            deployment.apiUrl = apiGatewayService.getStageUrl(deployment.apiId, stageName);
+            return CompletableFuture.completedFuture(null);
+        }
+        return apiGatewayService.deployStageAsync(deployment.apiId, stageName)
+                .thenAccept(apiUrl -> deployment.apiUrl = apiUrl);
+    }
+
+    /**
+     * OpenAPI document of the project's REST API (or of its paths on the shared API), built
+     * once per attempt.
+     */
+    private OpenApiDefinitionService.ApiDefinition apiDefinition(SpringDeployment deployment) {
+        if (deployment.apiDefinition == null) {
+            deployment.apiDefinition = deployment.basePath != null
+                    ? openApiDefinitionService.buildLambdaProxyDefinition(sharedApiService.getApiName(),
+                            deployment.invokeArn, deployment.projectPath, deployment.basePath)
+                    : openApiDefinitionService.buildLambdaProxyDefinition(apiName(deployment.projectInfo),
+                            deployment.invokeArn, deployment.projectPath);
+        }
+        return deployment.apiDefinition;
+    }
+
+    /**
+     * A pooled API keeps its pool name, so its placeholder definition matches the project's.
+     */
+    private String apiName(ProjectInfo projectInfo) {
+        return projectInfo.getApiName() != null
+                ? projectInfo.getApiName()
+                : apiGatewayService.getApiNameForProject(projectInfo.getProjectId());
+    }
+
+    /**
+     * Stage caching for the project's GET routes (the cached GET methods are in its definition).
+     * Without any, a cache cluster left by the last deploy is deleted so it stops billing.
+     */
+    private CompletableFuture<Void> updateStageCache(SpringDeployment deployment, String stageName) {
+        return updateStageCache(deployment, apiGatewayService, deployment.apiId, stageName);
+    }
+
+    private CompletableFuture<Void> updateStageCache(SpringDeployment deployment, ApiGatewayService apiGateway,
+                                                     String restApiId, String stageName) {
+        List<String> cachedPaths = deployment.isApiCacheEnabled()
+                ? apiDefinition(deployment).getCachedPaths() : List.of();
+        if (cachedPaths.isEmpty()) {
+            if (deployment.hasStageCacheCluster()) {
+                System.out.println("Stage cache: no GET routes to cache, deleting the cache cluster");
+                return apiGateway.disableStageCacheAsync(restApiId, stageName);
+            }
+            System.out.println("Stage cache: no GET routes found, nothing to cache");
+            return CompletableFuture.completedFuture(null);
+        }
+        return deployment.basePath != null
+                ? sharedApiService.enableCacheAsync(cachedPaths)
+                : apiGateway.enableStageCacheAsync(restApiId, stageName, cachedPaths);
+    }
+
+    /**
+     * Replaces the project's paths (under /p/{projectId}) on the shared API, unless the
+     * project is already mounted there with the same definition.
+     */
+    private CompletableFuture<Void> applySharedApiDefinition(SpringDeployment deployment) {
+        OpenApiDefinitionService.ApiDefinition definition = apiDefinition(deployment);
+        deployment.apiDefinitionSha256 = definition.getSha256();
+
+        ProjectInfo projectInfo = deployment.projectInfo;
+        if (deployment.basePath.equals(projectInfo.getApiBasePath())
+                && deployment.apiId.equals(projectInfo.getRestApiId())
+                && definition.getSha256().equals(projectInfo.getApiDefinitionSha256())) {
+            System.out.println("Shared API paths under " + deployment.basePath + " unchanged");
+            return CompletableFuture.completedFuture(null);
+        }
+        System.out.println("Mounting " + definition.getPathCount() + " paths under " + deployment.basePath
+                + " on shared API " + deployment.apiId);
+        return sharedApiService.mountProjectAsync(deployment.basePath, definition.getBody(), definition.getPaths());
+    }
+
+    /**
+     * Creates the HTTP API with the function as its quick-create target. On redeploys the
+     * existing API is re-pointed only when the invoked ARN changed.
+     */
+    private CompletableFuture<Void> applyHttpApi(SpringDeployment deployment) {
+        if (deployment.apiId == null) {
+            return httpApiService.createHttpApiAsync(
+                            apiGatewayService.getApiNameForProject(deployment.projectInfo.getProjectId()),
+                            deployment.invokeArn)
+                    .thenAccept(apiId -> {
+                        deployment.apiId = apiId;
+                        deployment.apiUrl = httpApiService.getApiUrl(apiId);
+                    });
+        }
+        deployment.apiUrl = httpApiService.getApiUrl(deployment.apiId);
+        if (deployment.invokeArn.equals(deployment.projectInfo.getLambdaInvokeArn())) {
+            System.out.println("HTTP API target unchanged");
+            return CompletableFuture.completedFuture(null);
+        }
+        return httpApiService.updateTargetAsync(deployment.apiId, deployment.invokeArn);
+    }
+
+    /**
+     * Versions (and SnapStart) - publish a version (taking the snapshot with SnapStart) and point
+     * the alias the API target invokes at it.
+     */
+    private void publishAlias(SpringDeployment deployment, LambdaService service) {
+        if (service.usesAlias()) {
+            String aliasArn = service.publishVersionAndAlias(deployment.functionName, liveAliasName);
+            System.out.println("Published alias, " + deployment.apiTarget + " will invoke: " + aliasArn);
+        }
+    }
+
+    /**
+     * Provisioned concurrency lives on the live alias and cannot be combined with SnapStart.
+     */
+    private void validateProvisionedConcurrency() {
+        if (!provisionedConcurrencyService.isEnabled()) {
+            return;
+        }
+        if (lambdaService.isSnapStartEnabled()) {
+            throw new IllegalStateException("Provisioned concurrency cannot be combined with SnapStart");
+        }
+        if (!lambdaService.usesAlias()) {
+            throw new IllegalStateException("Provisioned concurrency needs sail.lambda.versions.enabled=true");
+        }
+    }
+
+    /**
+     * Function URL on the live alias, or on the unqualified function without versions. A URL
+     * on the other one (from deploys before sail.lambda.versions.enabled changed) is deleted,
+     * so it no longer serves $LATEST or a stale alias; the project's URL changes with it.
+     */
+    private CompletableFuture<String> applyFunctionUrl(SpringDeployment deployment, LambdaService service) {
+        String qualifier = service.usesAlias() ? liveAliasName : null;
+        String previousQualifier = qualifier != null ? null : liveAliasName;
+        return service.createFunctionUrlAsync(deployment.functionName, qualifier)
+                .thenCompose(functionUrl -> service.deleteFunctionUrlAsync(deployment.functionName, previousQualifier)
+                        .thenApply(deleted -> {
+                            if (deleted) {
+                                System.out.println("Function URL of " + deployment.functionName + " moved to "
+                                        + functionUrl + " - the URL of "
+                                        + (previousQualifier != null ? "alias " + previousQualifier : "$LATEST")
+                                        + " was deleted");
+                            }
+                            return functionUrl;
+                        }));
+    }
+
+    /**
+     * Configured now, or configured by an earlier deploy and to be removed.
+     */
+    private boolean isProvisionedConcurrencyManaged(ProjectInfo projectInfo) {
+        return provisionedConcurrencyService.isEnabled()
+                || (projectInfo.getProvisionedConcurrency() != null && projectInfo.getProvisionedConcurrency() > 0);
+    }
+
+    /**
+     * Sizes provisioned concurrency from the project's traffic profile or the function's metrics
+     * and applies it to the live alias (0 with the mode OFF, removing it). Returns the concurrency.
+     */
+    private int applyProvisionedConcurrency(SpringDeployment deployment, ProvisionedConcurrencyService service) {
+        int concurrency = 0;
+        if (service.isEnabled()) {
+            ProvisionedConcurrencyService.Sizing sizing = service.size(deployment.functionName,
+                    deployment.projectInfo.getTrafficPeakRps(), deployment.projectInfo.getTrafficAvgDurationMs());
+            concurrency = sizing.getConcurrency();
+            System.out.println("Provisioned concurrency for " + deployment.functionName + " from "
+                    + sizing.getSource() + ": peak concurrency " + String.format("%.2f", sizing.getPeakConcurrency())
+                    + " -> " + concurrency);
+        }
+        service.apply(deployment.functionName, liveAliasName, concurrency);
+        return concurrency;
+    }
+
+    /**
+     * Multi-region deploys - puts the package into this region's code bucket once, before
+     * the functions in any region are created (inline packages need no bucket).
+     */
+    private void uploadCode(SpringDeployment deployment) {
+        if (!codeStorageService.canSendInline(deployment.artifact)) {
+            codeStorageService.uploadCodePackage(deployment.artifact, deployment.functionName);
+        }
+    }
+
+    /**
+     * Steps of an additional region: dependency layer, package copied into the region's code
+     * bucket, function and alias, then the API of the configured target. The build and the
+     * package stages are shared with the primary region.
+     */
+    private void addRegionalSteps(DeployGraph graph, SpringDeployment deployment, RegionalDeployment regional,
+                                  String stageName) {
+        String suffix = "@" + regional.services.getRegion();
+        LambdaService regionalLambda = regional.services.getLambdaService();
+
+        graph.blockingStep("layer" + suffix, List.of("build"), () -> publishDependencyLayer(deployment,
+                regional.services.getLambdaLayerService(), regional.layerArns));
+        graph.blockingStep("replicate" + suffix, List.of("code"), () -> {
+            if (!codeStorageService.canSendInline(deployment.artifact)) {
+                regional.services.getCodeStorageService().replicateCodePackage(deployment.artifact, codeStorageService);
+            }
+        });
+        graph.blockingStep("function" + suffix, List.of("layer" + suffix, "package", "replicate" + suffix),
+                () -> createFunction(deployment, regionalLambda, regional.layerArns));
+        graph.blockingStep("alias" + suffix, List.of("function" + suffix),
+                () -> publishAlias(deployment, regionalLambda));
+        if (isProvisionedConcurrencyManaged(deployment.projectInfo)) {
+            // Sized from this region's metrics, or from the same traffic profile
+            graph.blockingStep("provisioned" + suffix, List.of("alias" + suffix), () -> regional.provisionedConcurrency =
+                    applyProvisionedConcurrency(deployment, regional.services.getProvisionedConcurrencyService()));
+        }
+
+        if (deployment.apiTarget == LambdaAdapterService.ApiTarget.FUNCTION_URL) {
+            graph.step("function-url" + suffix, List.of("alias" + suffix), () -> applyFunctionUrl(deployment,
+                    regionalLambda).thenAccept(functionUrl -> regional.apiUrl = functionUrl));
+            return;
+        }
+
+        if (deployment.apiTarget == LambdaAdapterService.ApiTarget.HTTP_API) {
+            graph.step("api" + suffix, List.of(), () -> applyRegionalHttpApi(deployment, regional));
+        } else {
+            ApiGatewayService regionalApiGateway = regional.services.getApiGatewayService();
+            graph.step("api" + suffix, List.of(), () -> applyRegionalApiDefinition(deployment, regional));
+            graph.step("api-stage" + suffix, List.of("api" + suffix), () -> regionalApiGateway
+                    .deployStageAsync(regional.apiId, stageName)
+                    .thenAccept(apiUrl -> regional.apiUrl = apiUrl));
+            if (deployment.isApiCacheEnabled() || deployment.hasStageCacheCluster()) {
+                graph.step("api-cache" + suffix, List.of("api-stage" + suffix), () ->
+                        updateStageCache(deployment, regionalApiGateway, regional.apiId, stageName));
+            }
+        }
+        // Granting the same API again is a no-op, so this always runs
+        graph.step("permission" + suffix, List.of("alias" + suffix, "api" + suffix), () -> regionalLambda
+                .addInvokePermissionForApiAsync(regional.invokeArn, regional.apiId, regional.services.getRegion()));
+    }
+
+    /**
+     * The REST API of an additional region, from the same OpenAPI document with the region's
+     * function ARN. Existing APIs are overwritten.
+     */
+    private CompletableFuture<Void> applyRegionalApiDefinition(SpringDeployment deployment,
+                                                               RegionalDeployment regional) {
+        OpenApiDefinitionService.ApiDefinition definition = openApiDefinitionService.buildLambdaProxyDefinition(
+                apiGatewayService.getApiNameForProject(deployment.projectInfo.getProjectId()),
+                regional.invokeArn, deployment.projectPath);
+        ApiGatewayService regionalApiGateway = regional.services.getApiGatewayService();
+        if (regional.apiId == null) {
+            return regionalApiGateway.importRestApiAsync(definition.getBody())
+                    .thenAccept(apiId -> regional.apiId = apiId);
+        }
+        return regionalApiGateway.putRestApiAsync(regional.apiId, definition.getBody());
+    }
+
+    /**
+     * The HTTP API of an additional region, created with the region's function as target or
+     * re-pointed at it.
+     */
+    private CompletableFuture<Void> applyRegionalHttpApi(SpringDeployment deployment, RegionalDeployment regional) {
+        HttpApiService regionalHttpApi = regional.services.getHttpApiService();
+        if (regional.apiId == null) {
+            return regionalHttpApi.createHttpApiAsync(
+                            apiGatewayService.getApiNameForProject(deployment.projectInfo.getProjectId()),
+                            regional.invokeArn)
+                    .thenAccept(apiId -> {
+                        regional.apiId = apiId;
+                        regional.apiUrl = regionalHttpApi.getApiUrl(apiId);
+                    });
+        }
+        regional.apiUrl = regionalHttpApi.getApiUrl(regional.apiId);
+        return regionalHttpApi.updateTargetAsync(regional.apiId, regional.invokeArn);
+    }
+
+    // ---------- Checkpoints ----------
+
+    private SpringDeployment restoreDeployment(ProjectInfo projectInfo, DeployCheckpoint checkpoint)
+            throws IOException {
+        SpringDeployment deployment = new SpringDeployment();
+        deployment.projectInfo = projectInfo;
+        deployment.projectPath = projectInfo.getExtractedPath();
+        deployment.functionName = checkpoint.getFunctionName();
+        deployment.invokeArn = checkpoint.getInvokeArn();
+        deployment.provisionedConcurrency = checkpoint.getProvisionedConcurrency();
+        deployment.apiTarget = checkpoint.getApiTarget() != null
+                ? LambdaAdapterService.ApiTarget.valueOf(checkpoint.getApiTarget())
+                : LambdaAdapterService.ApiTarget.REST_API;
+        if (checkpoint.getDbType() != null) {
+            deployment.dbType = DatabaseType.valueOf(checkpoint.getDbType());
+        }
+        deployment.handlerFqn = checkpoint.getHandlerFqn();
+        if (checkpoint.getPackagingMode() != null) {
+            deployment.packagingMode = LambdaAdapterService.PackagingMode.valueOf(checkpoint.getPackagingMode());
+        }
+        deployment.buildPath = checkpoint.getBuildPath();
+        if (checkpoint.getArtifactPath() != null) {
+            deployment.artifact = new File(checkpoint.getArtifactPath());
+            deployment.artifactSha256 = checkpoint.getArtifactSha256();
+        }
+        deployment.layerArns.addAll(parseList(checkpoint.getLayerArns()));
+        if (checkpoint.getExtraEnvironment() != null) {
+            deployment.extraEnvironment = OBJECT_MAPPER.readValue(checkpoint.getExtraEnvironment(),
+                    new TypeReference<LinkedHashMap<String, String>>() { });
+        }
+        if (checkpoint.getMemorySizeMb() != null) {
+            deployment.memorySizeMb = checkpoint.getMemorySizeMb();
+            deployment.timeoutSeconds = checkpoint.getTimeoutSeconds();
+        }
+        deployment.apiId = checkpoint.getApiId();
+        if (deployment.apiId != null && deployment.apiId.equals(sharedApiService.getApiId())
+                && deployment.apiTarget == LambdaAdapterService.ApiTarget.REST_API) {
+            deployment.basePath = sharedApiService.getBasePath(projectInfo.getProjectId());
+        }
+        deployment.apiDefinitionSha256 = checkpoint.getApiDefinitionSha256();
+        deployment.apiCacheEnabled = apiCacheEnabled;
+        deployment.apiUrl = checkpoint.getApiUrl();
+
+        if (checkpoint.getRegionalDeployments() != null) {
+            Map<String, Map<String, String>> regionalState = OBJECT_MAPPER.readValue(
+                    checkpoint.getRegionalDeployments(), new TypeReference<Map<String, Map<String, String>>>() { });
+            regionalState.forEach((regionName, state) -> {
+                RegionalDeployment regional = new RegionalDeployment();
+                regional.services = regionalServices.forRegion(regionName);
+                regional.invokeArn = regional.services.getLambdaService().getFunctionArn(deployment.functionName,
+                        regional.services.getLambdaService().usesAlias() ? liveAliasName : null);
+                regional.layerArns.addAll(parseList(state.get("layerArns")));
+                regional.apiId = state.get("apiId");
+                regional.apiUrl = state.get("apiUrl");
+                if (state.get("provisionedConcurrency") != null) {
+                    regional.provisionedConcurrency = Integer.valueOf(state.get("provisionedConcurrency"));
+                }
+                deployment.regions.put(regionName, regional);
+            });
+        }
+        return deployment;
+    }
+
+    /**
+     * Records a completed step and everything produced so far. Steps complete concurrently,
+     * so saves are serialized on the checkpoint.
+     */
+    private void saveCheckpoint(DeployCheckpoint checkpoint, SpringDeployment deployment, String completedStep) {
+        synchronized (checkpoint) {
+            try {
+                checkpoint.setDbType(deployment.dbType != null ? deployment.dbType.name() : null);
+                checkpoint.setHandlerFqn(deployment.handlerFqn);
+                checkpoint.setPackagingMode(deployment.packagingMode != null ? deployment.packagingMode.name() : null);
+                checkpoint.setBuildPath(deployment.buildPath);
+                checkpoint.setArtifactPath(deployment.artifact != null ? deployment.artifact.getAbsolutePath() : null);
+                checkpoint.setArtifactSha256(deployment.artifactSha256);
+                checkpoint.setLayerArns(String.join(",", deployment.layerArns));
+                if (deployment.extraEnvironment != null) {
+                    checkpoint.setExtraEnvironment(OBJECT_MAPPER.writeValueAsString(deployment.extraEnvironment));
+                    checkpoint.setMemorySizeMb(deployment.memorySizeMb);
+                    checkpoint.setTimeoutSeconds(deployment.timeoutSeconds);
+                }
+                checkpoint.setProvisionedConcurrency(deployment.provisionedConcurrency);
+                checkpoint.setApiId(deployment.apiId);
+                checkpoint.setApiDefinitionSha256(deployment.apiDefinitionSha256);
+                checkpoint.setApiUrl(deployment.apiUrl);
+                Map<String, Map<String, String>> regionalState = new LinkedHashMap<>();
+                deployment.regions.forEach((regionName, regional) -> {
+                    Map<String, String> state = new LinkedHashMap<>();
+                    state.put("layerArns", String.join(",", regional.layerArns));
+                    state.put("apiId", regional.apiId);
+                    state.put("apiUrl", regional.apiUrl);
+                    state.put("provisionedConcurrency", regional.provisionedConcurrency != null
+                            ? String.valueOf(regional.provisionedConcurrency) : null);
+                    regionalState.put(regionName, state);
+                });
+                checkpoint.setRegionalDeployments(OBJECT_MAPPER.writeValueAsString(regionalState));
+
+                Set<String> completedSteps = parseList(checkpoint.getCompletedSteps());
+                completedSteps.add(completedStep);
+                checkpoint.setCompletedSteps(String.join(",", completedSteps));
+
+                checkpointRepository.save(checkpoint);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to save deploy checkpoint: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private boolean isArtifactUnchanged(DeployCheckpoint checkpoint) {
+        if (checkpoint.getArtifactPath() == null || checkpoint.getArtifactSha256() == null) {
+            return false;
+        }
+        File artifact = new File(checkpoint.getArtifactPath());
+        return artifact.isFile() && checkpoint.getArtifactSha256().equals(codeStorageService.sha256(artifact));
+    }
+
+    /**
+     * Comma-separated list (as stored in DeployCheckpoint) to an ordered set.
+     */
+    private Set<String> parseList(String value) {
+        Set<String> steps = new LinkedHashSet<>();
+        if (value != null) {
+            for (String step : value.split(",")) {
+                if (!step.isBlank()) {
+                    steps.add(step.trim());
+                }
+            }
+        }
+        return steps;
+    }
+
+    /**
+     * Runs the built artifact locally with and without the OPTIMIZED cold-start settings
+     * and logs both init durations. Never fails the deployment.
+     */
+    private void compareColdStartProfiles(String projectPath, File artifact,
+                                          LambdaAdapterService.PackagingMode packagingMode,
+                                          String handlerFqn, DatabaseType dbType) {
+        try {
+            String probeClass = lambdaAdapterService.getProbeClassName();
+
+            Map<String, String> handlerEnv = lambdaAdapterService.isFunctionInvokerHandler(handlerFqn)
+                    ? lambdaAdapterService.getFunctionInvokerEnvironment(projectPath)
+                    : Map.of();
+            Map<String, String> optimizedExtra = new LinkedHashMap<>(handlerEnv);
+            optimizedExtra.putAll(lambdaAdapterService.getColdStartEnvironment(projectPath,
+                    LambdaAdapterService.ColdStartProfile.OPTIMIZED));
+
+            Map<String, String> standardEnv = lambdaService.getFunctionEnvironment(dbType, handlerEnv,
+                    artifact, lambdaService.getDefaultMemorySizeMb());
+            Map<String, String> optimizedEnv = lambdaService.getFunctionEnvironment(dbType, optimizedExtra,
+                    artifact, lambdaService.getDefaultMemorySizeMb());
+
+            LocalInvocationService.ProbeResult standard = localInvocationService.runProbe(
+                    projectPath, artifact, packagingMode, probeClass, standardEnv, List.of(), null);
+            LocalInvocationService.ProbeResult optimized = localInvocationService.runProbe(
+                    projectPath, artifact, packagingMode, probeClass, optimizedEnv, List.of(), null);
+
+            System.out.println("Local init time: STANDARD=" + standard.getInitMs() + " ms, OPTIMIZED="
+                    + optimized.getInitMs() + " ms");
+        } catch (Exception e) {
+            System.out.println("Cold-start comparison skipped: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs the built artifact locally once per JVM tuning profile (same memory size, one
+     * synthetic GET to "/") and logs init and first-request times. Never fails the deployment.
+     */
+    private void compareJvmProfiles(String projectPath, File artifact,
+                                    LambdaAdapterService.PackagingMode packagingMode,
+                                    DatabaseType dbType, Map<String, String> extraEnvironment,
+                                    int memorySizeMb) {
+        try {
+            String probeClass = lambdaAdapterService.getProbeClassName();
+            Map<String, String> functionEnv = lambdaService.getFunctionEnvironment(dbType, extraEnvironment,
+                    artifact, memorySizeMb);
+            String selected = functionEnv.get("JAVA_TOOL_OPTIONS");
+
+            for (LambdaJvmTuningService.JvmProfile profile : LambdaJvmTuningService.JvmProfile.values()) {
+                Map<String, String> env = new LinkedHashMap<>(functionEnv);
+                String options = jvmTuningService.optionsFor(profile, memorySizeMb);
+                if (extraEnvironment.containsKey("JAVA_TOOL_OPTIONS")) {
+                    options = options + " " + extraEnvironment.get("JAVA_TOOL_OPTIONS");
+                }
+                env.put("JAVA_TOOL_OPTIONS", options);
+
+                LocalInvocationService.ProbeResult probe = localInvocationService.runProbe(
+                        projectPath, artifact, packagingMode, probeClass, env, List.of(), "/");
+                System.out.println("JVM profile " + profile + (options.equals(selected) ? " (selected)" : "")
+                        + ": init=" + probe.getInitMs() + " ms, first request=" + probe.getFirstRequestMs()
+                        + " ms, peak RSS=" + probe.getPeakRssKb() + " KB");
+            }
+        } catch (Exception e) {
+            System.out.println("JVM profile comparison skipped: " + e.getMessage());
         }
     }
 
@@ -211,7 +1480,27 @@ public class SpringDeployService {
 
     // ---------- Build Helpers ----------
 
-    private void runMavenBuild(Path projectDir) throws IOException, InterruptedException {
+    /**
+     * Native build (sail-native profile) packaged for the custom runtime.
+     * Returns null when the native path is unavailable or fails, so the caller uses the JVM build.
+     */
+    private File tryBuildNativeProject(String projectPath) {
+        if (!nativeImageService.isSupportedBuildHost()) {
+            System.out.println("Native build requires a Linux build host - falling back to JVM build");
+            return null;
+        }
+        try {
+            Path projectDir = Paths.get(projectPath);
+            System.out.println("Running native Maven build in: " + projectDir.toAbsolutePath());
+            runMavenBuild(projectDir, "-P" + LambdaAdapterService.NATIVE_PROFILE_ID);
+            return nativeImageService.packageForCustomRuntime(projectPath);
+        } catch (Exception e) {
+            System.out.println("Native build failed - falling back to JVM build: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void runMavenBuild(Path projectDir, String... extraArgs) throws IOException, InterruptedException {
         boolean isWindows = System.getProperty("os.name").toLowerCase().contains("win");
 
         // Detect Maven Wrapper
@@ -225,22 +1514,24 @@ public class SpringDeployService {
 
         boolean hasWrapper = Files.exists(wrapperScript) && Files.exists(wrapperProps);
 
-        ProcessBuilder pb;
+        List<String> command = new ArrayList<>();
 
         if (hasWrapper) {
             System.out.println("Using Maven Wrapper in: " + projectDir.toAbsolutePath());
             if (isWindows) {
-                pb = new ProcessBuilder("cmd.exe", "/c", "mvnw.cmd", "clean", "package", "-DskipTests");
+                command.addAll(List.of("cmd.exe", "/c", "mvnw.cmd"));
             } else {
-                pb = new ProcessBuilder("./mvnw", "clean", "package", "-DskipTests");
+                command.add("./mvnw");
             }
         } else {
             System.out.println("Maven Wrapper not found or incomplete at " + projectDir.toAbsolutePath()
                     + " - falling back to global mvn");
-            String mvnCmd = isWindows ? "mvn.cmd" : "mvn";
-            pb = new ProcessBuilder(mvnCmd, "clean", "package", "-DskipTests");
+            command.add(isWindows ? "mvn.cmd" : "mvn");
         }
+        command.addAll(List.of("clean", "package", "-DskipTests"));
+        command.addAll(List.of(extraArgs));
 
+        ProcessBuilder pb = new ProcessBuilder(command);
         pb.directory(projectDir.toFile());
         pb.inheritIO();  // see Maven output in console
 
@@ -252,7 +1543,8 @@ public class SpringDeployService {
         }
     }
 
-    private File buildProject(String projectPath) throws IOException, InterruptedException {
+    private File buildProject(String projectPath, LambdaAdapterService.PackagingMode packagingMode)
+            throws IOException, InterruptedException {
         Path projectDir = Paths.get(projectPath);
 
         System.out.println("Running Maven build in: " + projectDir.toAbsolutePath());
@@ -263,11 +1555,98 @@ public class SpringDeployService {
             throw new RuntimeException("target directory not found after build: " + targetDir);
         }
 
-        return Files.walk(targetDir)
-                .filter(p -> p.toString().endsWith(".jar") && !p.toString().contains("original"))
-                .findFirst()
-                .map(Path::toFile)
-                .orElseThrow(() ->
-                        new RuntimeException("JAR file not found after build in " + targetDir));
+        if (packagingMode == LambdaAdapterService.PackagingMode.LIB_ZIP) {
+            try (Stream<Path> files = Files.list(targetDir)) {
+                return files.filter(p -> p.getFileName().toString().endsWith("-lambda.zip"))
+                        .findFirst()
+                        .map(Path::toFile)
+                        .orElseThrow(() ->
+                                new RuntimeException("Lambda zip not found after build in " + targetDir));
+            }
+        }
+
+        // Only look at target/ itself: target/lambda-layer holds dependency jars
+        try (Stream<Path> files = Files.list(targetDir)) {
+            return files.filter(p -> p.toString().endsWith(".jar")
+                            && !p.getFileName().toString().startsWith("original"))
+                    .findFirst()
+                    .map(Path::toFile)
+                    .orElseThrow(() ->
+                            new RuntimeException("JAR file not found after build in " + targetDir));
+        }
+    }
+
+    /**
+     * State of one deploy. Each field is written by a single step and read by the steps that
+     * depend on it (ordered by the graph's futures). Checkpoint saves read every field from
+     * whichever worker thread completed a step, so the fields are volatile.
+     */
+    private static class SpringDeployment {
+        private volatile ProjectInfo projectInfo;
+        private volatile String projectPath;
+        private volatile DatabaseType dbType;
+        private volatile String handlerFqn;
+        private volatile LambdaAdapterService.PackagingMode packagingMode;
+        private volatile File artifact;
+        private volatile String artifactSha256; // Hashed by the step that wrote the artifact
+        private volatile String buildPath;
+        private final List<String> layerArns = new CopyOnWriteArrayList<>();
+        private volatile Map<String, String> extraEnvironment;
+        private volatile int memorySizeMb;
+        private volatile int timeoutSeconds;
+        private volatile String functionName;
+        private volatile String invokeArn;
+        private volatile Integer provisionedConcurrency; // Set by the "provisioned" step
+        private volatile LambdaAdapterService.ApiTarget apiTarget;
+        private volatile String apiId;
+        private volatile String basePath; // On the shared API only
+        private volatile boolean apiCacheEnabled;
+        private volatile OpenApiDefinitionService.ApiDefinition apiDefinition;
+        private volatile String apiDefinitionSha256;
+        private volatile boolean apiDefinitionUnchanged;
+        private volatile String apiUrl;
+        private final Map<String, RegionalDeployment> regions = new LinkedHashMap<>(); // Additional regions
+
+        /**
+         * Stage caching is only available on REST APIs.
+         */
+        private boolean isApiCacheEnabled() {
+            return apiCacheEnabled && apiTarget == LambdaAdapterService.ApiTarget.REST_API;
+        }
+
+        /**
+         * The last successful deploy left a cache cluster on the project's own REST API
+         * (the shared API's cluster belongs to the environment).
+         */
+        private boolean hasStageCacheCluster() {
+            return apiTarget == LambdaAdapterService.ApiTarget.REST_API && basePath == null
+                    && projectInfo.getApiCachedRoutes() != null && projectInfo.getApiCachedRoutes() > 0;
+        }
+
+        private boolean isNativeBuild() {
+            return BUILD_PATH_NATIVE.equals(buildPath);
+        }
+
+        /**
+         * The last successful deploy already allowed this API to invoke this ARN.
+         */
+        private boolean isPermissionGranted() {
+            String previousApiId = apiTarget == LambdaAdapterService.ApiTarget.HTTP_API
+                    ? projectInfo.getHttpApiId() : projectInfo.getRestApiId();
+            return apiId != null && apiId.equals(previousApiId)
+                    && invokeArn.equals(projectInfo.getLambdaInvokeArn());
+        }
+    }
+
+    /**
+     * State of one additional region of a deploy; same rules as SpringDeployment.
+     */
+    private static class RegionalDeployment {
+        private volatile RegionalServices.Services services;
+        private volatile String invokeArn;
+        private final List<String> layerArns = new CopyOnWriteArrayList<>();
+        private volatile String apiId;
+        private volatile String apiUrl;
+        private volatile Integer provisionedConcurrency; // Set by the "provisioned@<region>" step
     }
-}
\ No newline at end of file
+}
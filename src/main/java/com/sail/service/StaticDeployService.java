@@ -7,19 +7,36 @@ import com.sail.repository.ProjectInfoRepository;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.file.Paths;
+
 @Service
 public class StaticDeployService {
 
     private final S3Service s3Service;
     private final ProjectInfoRepository projectInfoRepository;
+    private final ImageOptimizationService imageOptimizationService;
     private final String region;
+    private final String buildDir;
+    private final String hostingMode;
+    private final String sharedBucket;
+    private final String sharedUrlTemplate;
 
     public StaticDeployService(S3Service s3Service,
                                ProjectInfoRepository projectInfoRepository,
-                               @Value("${aws.region}") String region) {
+                               ImageOptimizationService imageOptimizationService,
+                               @Value("${aws.region}") String region,
+                               @Value("${sail.temp.build.dir}") String buildDir,
+                               @Value("${sail.static.hosting.mode:BUCKET_PER_SITE}") String hostingMode,
+                               @Value("${sail.static.shared.bucket:}") String sharedBucket,
+                               @Value("${sail.static.shared.url.template:}") String sharedUrlTemplate) {
         this.s3Service = s3Service;
         this.projectInfoRepository = projectInfoRepository;
+        this.imageOptimizationService = imageOptimizationService;
         this.region = region;
+        this.buildDir = buildDir;
+        this.hostingMode = hostingMode;
+        this.sharedBucket = sharedBucket;
+        this.sharedUrlTemplate = sharedUrlTemplate;
     }
 
     public DeployResult deployStatic(String projectId) {
@@ -31,17 +48,38 @@ public class StaticDeployService {
                 throw new RuntimeException("Project is not a static website");
             }
 
-            // Generate bucket name
-            String bucketName = s3Service.generateBucketName();
+            // Recompress oversized images and generate width variants in a copy of the site
+            ImageOptimizationService.OptimizationReport imageReport = imageOptimizationService.optimizeSite(
+                    projectInfo.getExtractedPath(), Paths.get(buildDir, "static", projectId).toString());
+            projectInfo.setImageBytesSaved(imageReport.getBytesSaved());
+            projectInfo.setImageVariantBytes(imageReport.getVariantBytes());
+            String siteRootPath = imageReport.getSiteRootPath();
+
+            String bucketName;
+            String websiteUrl;
+
+            if (isSharedHosting()) {
+                // All sites live in one pre-provisioned bucket under sites/<projectId>/
+                bucketName = sharedBucket;
+                s3Service.ensureSharedHostingBucket(bucketName);
+
+                String keyPrefix = "sites/" + projectId + "/";
+                s3Service.uploadStaticSite(bucketName, keyPrefix, siteRootPath);
 
-            // Create bucket (also configures website + public policy)
-            s3Service.createBucket(bucketName);
+                websiteUrl = getSharedSiteUrl(bucketName, keyPrefix, projectId);
+            } else {
+                // Generate bucket name
+                bucketName = s3Service.generateBucketName();
 
-            // Upload static site (index.html + css/js) from the root folder
-            s3Service.uploadStaticSite(bucketName, projectInfo.getExtractedPath());
+                // Create bucket (also configures website + public policy)
+                s3Service.createBucket(bucketName);
 
-            // Get website URL
-            String websiteUrl = s3Service.getWebsiteUrl(bucketName);
+                // Upload static site (index.html + css/js) from the root folder
+                s3Service.uploadStaticSite(bucketName, siteRootPath);
+
+                // Get website URL
+                websiteUrl = s3Service.getWebsiteUrl(bucketName);
+            }
 
             // Update project status (optional: save URL/bucket if you have fields)
             projectInfo.setStatus("DEPLOYED");
@@ -65,4 +103,25 @@ public class StaticDeployService {
             return result;
         }
     }
+
+    private boolean isSharedHosting() {
+        if (!"SHARED".equalsIgnoreCase(hostingMode)) {
+            return false;
+        }
+        if (sharedBucket == null || sharedBucket.isEmpty()) {
+            throw new IllegalStateException("sail.static.shared.bucket must be configured for SHARED hosting mode");
+        }
+        return true;
+    }
+
+    /**
+     * Prefix routing by default; a URL template such as "https://{projectId}.sites.example.com/"
+     * enables host routing when a CDN in front of the bucket maps hosts to prefixes.
+     */
+    private String getSharedSiteUrl(String bucketName, String keyPrefix, String projectId) {
+        if (sharedUrlTemplate != null && !sharedUrlTemplate.isEmpty()) {
+            return sharedUrlTemplate.replace("{projectId}", projectId);
+        }
+        return s3Service.getWebsiteUrl(bucketName) + "/" + keyPrefix;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,309 @@
+package com.sail.service;
+
+import com.sail.aws.ApiGatewayService;
+import com.sail.aws.HttpApiService;
+import com.sail.aws.LambdaService;
+import com.sail.aws.SharedApiService;
+import com.sail.model.ProjectInfo;
+import com.sail.model.WarmPoolEntry;
+import com.sail.repository.ProjectInfoRepository;
+import com.sail.repository.WarmPoolEntryRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of pre-provisioned function and API pairs for first deploys.
+ *
+ * A first deploy otherwise spends many seconds creating the function, the API, its stage
+ * and the invoke permission. The pool keeps sail.pool.size pairs ready for the configured
+ * API target, each with placeholder code (answering 503) and everything else in place. A
+ * project's first deploy claims one: the pair is recorded as the project's function and API,
+ * so the deploy takes the redeploy path and only updates the function's code and configuration.
+ *
+ * The pool is refilled in the background after every claim and on a fixed interval, one pair
+ * at a time. Ready pairs older than the idle expiry, or made for another API target or alias
+ * setting, are deleted and replaced.
+ */
+@Service
+public class WarmPoolService {
+
+    static final String STATUS_PROVISIONING = "PROVISIONING";
+    static final String STATUS_READY = "READY";
+
+    private static final String STAGE_NAME = "prod";
+
+    private final WarmPoolEntryRepository poolRepository;
+    private final ProjectInfoRepository projectInfoRepository;
+    private final LambdaService lambdaService;
+    private final ApiGatewayService apiGatewayService;
+    private final HttpApiService httpApiService;
+    private final SharedApiService sharedApiService;
+    private final LambdaAdapterService lambdaAdapterService;
+    private final OpenApiDefinitionService openApiDefinitionService;
+    private final String region;
+    private final boolean enabled;
+    private final int size;
+    private final long idleExpiryMinutes;
+    private final long maintenanceIntervalSeconds;
+    private final String liveAliasName;
+    private final ScheduledExecutorService maintenanceExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    public WarmPoolService(WarmPoolEntryRepository poolRepository,
+                           ProjectInfoRepository projectInfoRepository,
+                           LambdaService lambdaService,
+                           ApiGatewayService apiGatewayService,
+                           HttpApiService httpApiService,
+                           SharedApiService sharedApiService,
+                           LambdaAdapterService lambdaAdapterService,
+                           OpenApiDefinitionService openApiDefinitionService,
+                           @Value("${aws.region}") String region,
+                           @Value("${sail.pool.enabled:false}") boolean enabled,
+                           @Value("${sail.pool.size:2}") int size,
+                           @Value("${sail.pool.idle.expiry.minutes:1440}") long idleExpiryMinutes,
+                           @Value("${sail.pool.maintenance.interval.seconds:300}") long maintenanceIntervalSeconds,
+                           @Value("${sail.lambda.alias.name:live}") String liveAliasName) {
+        this.poolRepository = poolRepository;
+        this.projectInfoRepository = projectInfoRepository;
+        this.lambdaService = lambdaService;
+        this.apiGatewayService = apiGatewayService;
+        this.httpApiService = httpApiService;
+        this.sharedApiService = sharedApiService;
+        this.lambdaAdapterService = lambdaAdapterService;
+        this.openApiDefinitionService = openApiDefinitionService;
+        this.region = region;
+        this.enabled = enabled;
+        this.size = size;
+        this.idleExpiryMinutes = idleExpiryMinutes;
+        this.maintenanceIntervalSeconds = maintenanceIntervalSeconds;
+        this.liveAliasName = liveAliasName;
+    }
+
+    /**
+     * Starts the periodic refill. With the pool disabled, pairs left from an earlier run are
+     * deleted once.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) {
+            maintenanceExecutor.scheduleWithFixedDelay(this::maintain, 0, maintenanceIntervalSeconds,
+                    TimeUnit.SECONDS);
+        } else if (poolRepository.count() > 0) {
+            maintenanceExecutor.execute(this::maintain);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        maintenanceExecutor.shutdownNow();
+    }
+
+    /**
+     * Projects on the shared API have no function/API pair of their own to pre-provision.
+     */
+    public boolean isEnabled() {
+        return enabled && !sharedApiService.isEnabled();
+    }
+
+    /**
+     * Hands a ready pair to the project: records it as the project's function and API, as if
+     * deployed before, and schedules a refill. Returns the claimed pair, empty when none is ready.
+     */
+    public synchronized Optional<WarmPoolEntry> claim(ProjectInfo projectInfo) {
+        if (!isEnabled()) {
+            return Optional.empty();
+        }
+        Optional<WarmPoolEntry> ready = poolRepository.findByStatusOrderByCreatedAtAsc(STATUS_READY).stream()
+                .filter(this::isCompatible)
+                .findFirst();
+        if (ready.isEmpty()) {
+            System.out.println("Warm pool: no ready function/API pair, project " + projectInfo.getProjectId()
+                    + " gets new ones");
+            refillAsync();
+            return Optional.empty();
+        }
+
+        WarmPoolEntry entry = ready.get();
+        projectInfo.setLambdaFunctionName(entry.getFunctionName());
+        projectInfo.setLambdaInvokeArn(entry.getInvokeArn());
+        projectInfo.setApiTarget(entry.getApiTarget());
+        if (LambdaAdapterService.ApiTarget.REST_API.name().equals(entry.getApiTarget())) {
+            projectInfo.setRestApiId(entry.getApiId());
+            projectInfo.setApiBasePath(null);
+        } else if (LambdaAdapterService.ApiTarget.HTTP_API.name().equals(entry.getApiTarget())) {
+            projectInfo.setHttpApiId(entry.getApiId());
+        }
+        projectInfo.setApiName(entry.getApiName());
+        projectInfo.setApiDefinitionSha256(entry.getApiDefinitionSha256());
+        projectInfo.setApiUrl(entry.getApiUrl());
+        projectInfoRepository.save(projectInfo);
+        poolRepository.delete(entry);
+
+        System.out.println("Warm pool: project " + projectInfo.getProjectId() + " claimed function "
+                + entry.getFunctionName() + (entry.getApiId() != null ? " and API " + entry.getApiId() : ""));
+        refillAsync();
+        return ready;
+    }
+
+    /**
+     * Gives a claimed pair back after the claiming deploy failed before its function step, so
+     * the pair still has its placeholder code and API: the project no longer refers to it, and
+     * the next first deploy can claim it.
+     */
+    public synchronized void release(ProjectInfo projectInfo, WarmPoolEntry entry) {
+        projectInfo.setLambdaFunctionName(null);
+        projectInfo.setLambdaInvokeArn(null);
+        projectInfo.setApiTarget(null);
+        projectInfo.setRestApiId(null);
+        projectInfo.setHttpApiId(null);
+        projectInfo.setApiName(null);
+        projectInfo.setApiDefinitionSha256(null);
+        projectInfo.setApiUrl(null);
+        projectInfoRepository.save(projectInfo);
+
+        WarmPoolEntry released = new WarmPoolEntry();
+        released.setStatus(STATUS_READY);
+        released.setFunctionName(entry.getFunctionName());
+        released.setAliasName(entry.getAliasName());
+        released.setInvokeArn(entry.getInvokeArn());
+        released.setApiTarget(entry.getApiTarget());
+        released.setApiId(entry.getApiId());
+        released.setApiName(entry.getApiName());
+        released.setApiDefinitionSha256(entry.getApiDefinitionSha256());
+        released.setApiUrl(entry.getApiUrl());
+        poolRepository.save(released);
+        System.out.println("Warm pool: project " + projectInfo.getProjectId() + " released function "
+                + entry.getFunctionName() + " - its deploy failed before using it");
+    }
+
+    private void refillAsync() {
+        maintenanceExecutor.execute(this::maintain);
+    }
+
+    /**
+     * Deletes leftover, expired and incompatible pairs, then provisions pairs until the pool is
+     * full. Runs on the single maintenance thread only.
+     */
+    private void maintain() {
+        try {
+            LocalDateTime expiry = LocalDateTime.now().minusMinutes(idleExpiryMinutes);
+            List<WarmPoolEntry> stale = new ArrayList<>();
+            synchronized (this) {
+                for (WarmPoolEntry entry : poolRepository.findAll()) {
+                    // PROVISIONING entries here were interrupted: provisioning completes within maintain()
+                    if (STATUS_PROVISIONING.equals(entry.getStatus()) || !isCompatible(entry)
+                            || entry.getCreatedAt().isBefore(expiry)) {
+                        stale.add(entry);
+                    }
+                }
+                // Removed first, so a concurrent claim cannot take a pair being deleted
+                poolRepository.deleteAll(stale);
+            }
+            for (WarmPoolEntry entry : stale) {
+                System.out.println("Warm pool: deleting " + entry.getStatus().toLowerCase() + " function "
+                        + entry.getFunctionName());
+                deleteResources(entry);
+            }
+
+            if (!isEnabled()) {
+                return;
+            }
+            long ready = poolRepository.findByStatusOrderByCreatedAtAsc(STATUS_READY).size();
+            for (long i = ready; i < size; i++) {
+                provision();
+            }
+        } catch (RuntimeException e) {
+            // Retried on the next run
+            System.out.println("Warm pool maintenance failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Creates one pair for the configured API target: placeholder function (and the live alias
+     * when versions are published), then the API with its stage and invoke permission, or the function URL.
+     */
+    private void provision() {
+        LambdaAdapterService.ApiTarget apiTarget = lambdaAdapterService.getApiTarget();
+        String poolId = "pool-" + UUID.randomUUID().toString().substring(0, 8);
+
+        WarmPoolEntry entry = new WarmPoolEntry();
+        entry.setStatus(STATUS_PROVISIONING);
+        entry.setApiTarget(apiTarget.name());
+        entry.setFunctionName(lambdaService.getFunctionNameForProject(poolId));
+        entry.setApiName(apiGatewayService.getApiNameForProject(poolId));
+        entry.setAliasName(lambdaService.usesAlias() ? liveAliasName : null);
+        entry.setInvokeArn(lambdaService.getFunctionArn(entry.getFunctionName(), entry.getAliasName()));
+        // Recorded before anything is created, so an interrupted attempt is cleaned up later
+        entry = poolRepository.save(entry);
+
+        try {
+            lambdaService.createPlaceholderFunction(entry.getFunctionName());
+            if (entry.getAliasName() != null) {
+                lambdaService.publishVersionAndAlias(entry.getFunctionName(), entry.getAliasName());
+            }
+
+            if (apiTarget == LambdaAdapterService.ApiTarget.FUNCTION_URL) {
+                entry.setApiUrl(lambdaService.createFunctionUrlAsync(entry.getFunctionName(),
+                        entry.getAliasName()).join());
+            } else {
+                if (apiTarget == LambdaAdapterService.ApiTarget.HTTP_API) {
+                    entry.setApiId(httpApiService.createHttpApiAsync(entry.getApiName(), entry.getInvokeArn()).join());
+                    entry.setApiUrl(httpApiService.getApiUrl(entry.getApiId()));
+                } else {
+                    OpenApiDefinitionService.ApiDefinition definition = openApiDefinitionService
+                            .buildLambdaProxyDefinition(entry.getApiName(), entry.getInvokeArn(), null);
+                    entry.setApiId(apiGatewayService.importRestApiAsync(definition.getBody()).join());
+                    entry.setApiDefinitionSha256(definition.getSha256());
+                    entry = poolRepository.save(entry);
+                    entry.setApiUrl(apiGatewayService.deployStageAsync(entry.getApiId(), STAGE_NAME).join());
+                }
+                entry = poolRepository.save(entry);
+                lambdaService.addInvokePermissionForApiAsync(entry.getInvokeArn(), entry.getApiId(), region).join();
+            }
+
+            entry.setStatus(STATUS_READY);
+            poolRepository.save(entry);
+            System.out.println("Warm pool: " + entry.getFunctionName() + " ready at " + entry.getApiUrl());
+        } catch (RuntimeException e) {
+            poolRepository.delete(entry);
+            deleteResources(entry);
+            throw new RuntimeException("Failed to provision " + entry.getFunctionName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Best effort: failures are logged and the resources left in place.
+     */
+    private void deleteResources(WarmPoolEntry entry) {
+        CompletableFuture<Void> api = CompletableFuture.completedFuture(null);
+        if (entry.getApiId() != null) {
+            api = LambdaAdapterService.ApiTarget.HTTP_API.name().equals(entry.getApiTarget())
+                    ? httpApiService.deleteHttpApiAsync(entry.getApiId())
+                    : apiGatewayService.deleteRestApiAsync(entry.getApiId());
+        }
+        try {
+            CompletableFuture.allOf(api, lambdaService.deleteFunctionAsync(entry.getFunctionName())).join();
+        } catch (RuntimeException e) {
+            System.out.println("Warm pool: could not delete " + entry.getFunctionName() + ": " + e.getMessage());
+        }
+    }
+
+    private boolean isCompatible(WarmPoolEntry entry) {
+        return isEnabled()
+                && lambdaAdapterService.getApiTarget().name().equals(entry.getApiTarget())
+                && Objects.equals(entry.getAliasName(), lambdaService.usesAlias() ? liveAliasName : null);
+    }
+}
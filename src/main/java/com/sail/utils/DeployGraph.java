@@ -0,0 +1,199 @@
+package com.sail.utils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Small dependency graph of deploy steps.
+ *
+ * Each step starts as soon as all of its dependencies have completed, so independent
+ * steps (e.g. API Gateway setup and the Maven build) run concurrently and the deploy
+ * takes roughly as long as its critical path. Steps either block on the executor or
+ * return a future from an async SDK client. Every step is timed.
+ *
+ * Steps completed by an earlier attempt can be skipped, which makes a failed deploy
+ * resumable from its first incomplete step.
+ */
+public class DeployGraph {
+
+    private final String name;
+    private final Executor executor;
+    private final Map<String, CompletableFuture<Void>> steps = new LinkedHashMap<>();
+    private final CompletableFuture<Void> started = new CompletableFuture<>();
+    private final Map<String, Long> startOffsetsMs = new ConcurrentHashMap<>();
+    private final Map<String, Long> durationsMs = new ConcurrentHashMap<>();
+    private final Map<String, Throwable> failures = new ConcurrentHashMap<>();
+    private final Set<String> previouslyCompleted;
+    private final Set<String> skipped = new HashSet<>();
+    private final Consumer<String> onStepCompleted;
+    private long startNanos;
+
+    public DeployGraph(String name, Executor executor) {
+        this(name, executor, Set.of(), stepName -> { });
+    }
+
+    /**
+     * @param previouslyCompleted steps completed by an earlier attempt; such a step is skipped
+     *                            if all of its dependencies were skipped too
+     * @param onStepCompleted     called on the executor after each step succeeds (before its
+     *                            dependents start), e.g. to persist a checkpoint
+     */
+    public DeployGraph(String name, Executor executor, Set<String> previouslyCompleted,
+                       Consumer<String> onStepCompleted) {
+        this.name = name;
+        this.executor = executor;
+        this.previouslyCompleted = previouslyCompleted;
+        this.onStepCompleted = onStepCompleted;
+    }
+
+    /**
+     * Adds a step whose action returns a future (typically from an async SDK client).
+     * Steps must be added after their dependencies.
+     */
+    public void step(String stepName, List<String> dependsOn, Supplier<CompletableFuture<?>> action) {
+        if (steps.containsKey(stepName)) {
+            throw new IllegalArgumentException("Duplicate deploy step: " + stepName);
+        }
+        List<CompletableFuture<Void>> dependencies = new ArrayList<>();
+        dependencies.add(started);
+        boolean dependenciesSkipped = true;
+        for (String dependency : dependsOn) {
+            CompletableFuture<Void> future = steps.get(dependency);
+            if (future == null) {
+                throw new IllegalArgumentException("Deploy step " + stepName + " depends on unknown step " + dependency);
+            }
+            dependencies.add(future);
+            dependenciesSkipped &= skipped.contains(dependency);
+        }
+
+        if (dependenciesSkipped && previouslyCompleted.contains(stepName)) {
+            skipped.add(stepName);
+            steps.put(stepName, CompletableFuture.completedFuture(null));
+            return;
+        }
+
+        CompletableFuture<Void> future = CompletableFuture.allOf(dependencies.toArray(new CompletableFuture[0]))
+                .thenComposeAsync(ignored -> {
+                    long stepStart = System.nanoTime();
+                    startOffsetsMs.put(stepName, (stepStart - startNanos) / 1_000_000);
+                    CompletableFuture<?> result;
+                    try {
+                        result = action.get();
+                        if (result == null) {
+                            result = CompletableFuture.failedFuture(
+                                    new IllegalStateException("Deploy step " + stepName + " returned no future"));
+                        }
+                    } catch (RuntimeException e) {
+                        // Thrown before the step returned its future: fails the step like any other error
+                        result = CompletableFuture.failedFuture(e);
+                    }
+                    return result.whenComplete((value, error) -> {
+                        durationsMs.put(stepName, (System.nanoTime() - stepStart) / 1_000_000);
+                        if (error != null) {
+                            failures.put(stepName, unwrap(error));
+                        }
+                    });
+                }, executor)
+                .thenRunAsync(() -> {
+                    try {
+                        onStepCompleted.accept(stepName);
+                    } catch (RuntimeException e) {
+                        failures.put(stepName, e);
+                        throw e;
+                    }
+                }, executor);
+
+        steps.put(stepName, future);
+    }
+
+    /**
+     * Adds a step that runs synchronously on the graph's executor.
+     */
+    public void blockingStep(String stepName, List<String> dependsOn, BlockingAction action) {
+        step(stepName, dependsOn, () -> {
+            try {
+                action.run();
+                return CompletableFuture.completedFuture(null);
+            } catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        });
+    }
+
+    /**
+     * Starts the graph and waits for every step to finish. Throws if any step failed,
+     * naming the first failed step; dependents of a failed step are not started.
+     * No step runs before this is called, so step start offsets are relative to it.
+     */
+    public void run() {
+        startNanos = System.nanoTime();
+        started.complete(null);
+        CompletableFuture<Void> all = CompletableFuture.allOf(steps.values().toArray(new CompletableFuture[0]));
+        Throwable graphFailure = null;
+        try {
+            all.join();
+        } catch (CompletionException e) {
+            // Reported below with the name of the step that failed
+            graphFailure = unwrap(e);
+        } finally {
+            logTimings();
+        }
+
+        for (String stepName : steps.keySet()) {
+            Throwable failure = failures.get(stepName);
+            if (failure != null) {
+                throw new RuntimeException("Deploy step '" + stepName + "' failed: " + failure.getMessage(), failure);
+            }
+        }
+        if (graphFailure != null) {
+            // Never report success for a graph that did not complete
+            throw new RuntimeException("Deploy failed: " + graphFailure.getMessage(), graphFailure);
+        }
+    }
+
+    private void logTimings() {
+        long wallClockMs = (System.nanoTime() - startNanos) / 1_000_000;
+        long sumMs = 0;
+        System.out.println("Deploy timings for " + name + ":");
+        for (String stepName : steps.keySet()) {
+            Long duration = durationsMs.get(stepName);
+            if (skipped.contains(stepName)) {
+                System.out.println("  " + stepName + ": skipped (completed by an earlier attempt)");
+                continue;
+            }
+            if (duration == null) {
+                System.out.println("  " + stepName + ": not run");
+                continue;
+            }
+            sumMs += duration;
+            System.out.println("  " + stepName + ": " + duration + " ms (started at +"
+                    + startOffsetsMs.get(stepName) + " ms)" + (failures.containsKey(stepName) ? " FAILED" : ""));
+        }
+        System.out.println("  total: " + wallClockMs + " ms wall clock, " + sumMs + " ms summed over steps");
+    }
+
+    /**
+     * Body of a blocking step; may throw checked exceptions, which fail the step.
+     */
+    @FunctionalInterface
+    public interface BlockingAction {
+        void run() throws Exception;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+}
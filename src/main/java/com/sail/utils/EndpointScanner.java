@@ -22,6 +22,19 @@ public class EndpointScanner {
             Pattern.compile("@DeleteMapping\\s*\\([^)]*[\"']([^\"']+)[\"']");
     private static final Pattern REQUEST_MAPPING =
             Pattern.compile("@RequestMapping\\s*\\([^)]*[\"']([^\"']+)[\"']");
+    private static final Pattern FUNCTION_BEAN_METHOD =
+            Pattern.compile("@Bean\\b[^;{}]*?(?:java\\.util\\.function\\.)?(?:Function|Supplier|Consumer)\\s*<.*?>\\s+(\\w+)\\s*\\(",
+                    Pattern.DOTALL);
+    private static final Pattern FUNCTION_COMPONENT =
+            Pattern.compile("class\\s+(\\w+)\\s+implements\\s+[^{]*?\\b(?:Function|Supplier|Consumer)\\s*<");
+    private static final Pattern REQUEST_PARAM =
+            Pattern.compile("@RequestParam\\s*(?:\\(([^)]*)\\))?\\s*(?:final\\s+)?([\\w.\\[\\]]+)(?:\\s*<.*?>)?\\s+(\\w+)");
+    private static final Pattern ANNOTATION_NAME =
+            Pattern.compile("(?:^\\s*|\\b(?:name|value)\\s*=\\s*)\"([^\"]+)\"");
+    // Handler parameters through which a response can depend on headers, cookies, session or identity
+    private static final Pattern REQUEST_SCOPED_PARAMETER =
+            Pattern.compile("@RequestHeader|@CookieValue|@SessionAttribute|@RequestAttribute|Principal\\b"
+                    + "|\\bAuthentication\\b|HttpServletRequest|ServerHttpRequest|\\bWebRequest\\b|HttpSession|HttpEntity\\b");
     private static final Pattern REST_CONTROLLER = Pattern.compile("@RestController");
     private static final Pattern CONTROLLER = Pattern.compile("@Controller");
 
@@ -41,7 +54,7 @@ public class EndpointScanner {
                     try {
                         String content = Files.readString(p);
                         if (isRestController(content)) {
-                            endpoints.addAll(extractEndpoints(content));
+                            endpoints.addAll(extractEndpoints(content, false));
                         }
                     } catch (IOException e) {
                         // Skip file if can't read
@@ -52,6 +65,101 @@ public class EndpointScanner {
         return endpoints.stream().distinct().sorted().toList();
     }
 
+    /**
+     * Like scanEndpoints, but only paths mapped with @GetMapping (safe to call without side effects).
+     */
+    public List<String> scanGetEndpoints(String projectPath) throws IOException {
+        List<String> endpoints = new ArrayList<>();
+        Path javaPath = Paths.get(projectPath, "src/main/java");
+
+        if (!Files.exists(javaPath)) {
+            return endpoints;
+        }
+
+        Files.walk(javaPath)
+                .filter(p -> p.toString().endsWith(".java"))
+                .forEach(p -> {
+                    try {
+                        String content = Files.readString(p);
+                        if (isRestController(content)) {
+                            endpoints.addAll(extractEndpoints(content, true));
+                        }
+                    } catch (IOException e) {
+                        // Skip file if can't read
+                    }
+                });
+
+        return endpoints.stream().distinct().sorted().toList();
+    }
+
+    /**
+     * @GetMapping paths (as in scanGetEndpoints) with the names of the @RequestParam query
+     * parameters declared by the mapped method. Paths with a method that reads headers, cookies,
+     * the session or the caller's identity are left out: their responses depend on more than
+     * the path and query string.
+     */
+    public Map<String, List<String>> scanGetEndpointQueryParameters(String projectPath) throws IOException {
+        Map<String, List<String>> endpoints = new TreeMap<>();
+        Set<String> requestScoped = new HashSet<>();
+        Path javaPath = Paths.get(projectPath, "src/main/java");
+
+        if (!Files.exists(javaPath)) {
+            return endpoints;
+        }
+
+        Files.walk(javaPath)
+                .filter(p -> p.toString().endsWith(".java"))
+                .forEach(p -> {
+                    try {
+                        String content = Files.readString(p);
+                        if (isRestController(content)) {
+                            extractQueryParameters(content, requestScoped).forEach((endpoint, params) -> endpoints
+                                    .computeIfAbsent(endpoint, k -> new ArrayList<>()).addAll(params));
+                        }
+                    } catch (IOException e) {
+                        // Skip file if can't read
+                    }
+                });
+
+        endpoints.keySet().removeAll(requestScoped);
+        endpoints.replaceAll((endpoint, params) -> params.stream().distinct().sorted().toList());
+        return endpoints;
+    }
+
+    /**
+     * Names of java.util.function Function/Supplier/Consumer beans, declared either as
+     * {@code @Bean} methods or as {@code @Component} classes implementing the interface.
+     */
+    public List<String> scanFunctionBeans(String projectPath) throws IOException {
+        List<String> beans = new ArrayList<>();
+        Path javaPath = Paths.get(projectPath, "src/main/java");
+
+        if (!Files.exists(javaPath)) {
+            return beans;
+        }
+
+        Files.walk(javaPath)
+                .filter(p -> p.toString().endsWith(".java"))
+                .forEach(p -> {
+                    try {
+                        String content = Files.readString(p);
+                        Matcher bm = FUNCTION_BEAN_METHOD.matcher(content);
+                        while (bm.find()) {
+                            beans.add(bm.group(1));
+                        }
+                        Matcher cm = FUNCTION_COMPONENT.matcher(content);
+                        if (content.contains("@Component") && cm.find()) {
+                            String className = cm.group(1);
+                            beans.add(Character.toLowerCase(className.charAt(0)) + className.substring(1));
+                        }
+                    } catch (IOException e) {
+                        // Skip file if can't read
+                    }
+                });
+
+        return beans.stream().distinct().sorted().toList();
+    }
+
     public String findMainClass(String projectPath) throws IOException {
         Path javaPath = Paths.get(projectPath, "src/main/java");
 
@@ -90,8 +198,9 @@ public class EndpointScanner {
      * Extract endpoints from a single controller file.
      * We scan line-by-line to avoid regex crossing into other annotations/methods.
      * We also combine class-level @RequestMapping("/base") with method-level mappings.
+     * With getOnly, only @GetMapping methods are returned.
      */
-    private List<String> extractEndpoints(String content) {
+    private List<String> extractEndpoints(String content, boolean getOnly) {
         List<String> endpoints = new ArrayList<>();
 
         String[] lines = content.split("\\R"); // split on any line break
@@ -105,7 +214,9 @@ public class EndpointScanner {
             if (classBase == null && classRm.find() && looksLikeClassLevel(trimmed)) {
                 classBase = classRm.group(1);
                 // You can optionally add the base itself as an endpoint
-                endpoints.add(normalizePath(classBase, ""));
+                if (!getOnly) {
+                    endpoints.add(normalizePath(classBase, ""));
+                }
                 continue;
             }
 
@@ -117,6 +228,13 @@ public class EndpointScanner {
                 methodPath = gm.group(1);
             }
 
+            if (getOnly) {
+                if (methodPath != null) {
+                    endpoints.add(normalizePath(classBase, methodPath));
+                }
+                continue;
+            }
+
             Matcher pm = POST_MAPPING.matcher(trimmed);
             if (pm.find()) {
                 methodPath = pm.group(1);
@@ -148,6 +266,57 @@ public class EndpointScanner {
         return endpoints;
     }
 
+    /**
+     * @GetMapping paths of one controller file, each with the query parameters of the
+     * method signature that follows the annotation (up to the method body).
+     */
+    private Map<String, List<String>> extractQueryParameters(String content, Set<String> requestScoped) {
+        Map<String, List<String>> endpoints = new LinkedHashMap<>();
+
+        String classBase = null;
+        String[] lines = content.split("\\R");
+        for (String line : lines) {
+            Matcher classRm = REQUEST_MAPPING.matcher(line.trim());
+            if (classRm.find() && looksLikeClassLevel(line.trim())) {
+                classBase = classRm.group(1);
+                break;
+            }
+        }
+
+        for (int i = 0; i < lines.length; i++) {
+            // Matched per line, like extractEndpoints, so the mapping regex stays on its annotation
+            Matcher gm = GET_MAPPING.matcher(lines[i].trim());
+            if (!gm.find()) {
+                continue;
+            }
+            StringBuilder signature = new StringBuilder(lines[i].substring(lines[i].indexOf(gm.group(1))
+                    + gm.group(1).length()));
+            for (int j = i + 1; j < lines.length && signature.indexOf("{") < 0; j++) {
+                signature.append(' ').append(lines[j]);
+            }
+            int bodyStart = signature.indexOf("{");
+
+            String parameters = bodyStart < 0 ? signature.toString() : signature.substring(0, bodyStart);
+            String endpoint = normalizePath(classBase, gm.group(1));
+            if (REQUEST_SCOPED_PARAMETER.matcher(parameters).find()) {
+                requestScoped.add(endpoint);
+            }
+
+            List<String> params = new ArrayList<>();
+            Matcher rp = REQUEST_PARAM.matcher(parameters);
+            while (rp.find()) {
+                if (rp.group(2).endsWith("Map")) {
+                    continue; // Map of all parameters, no names to declare
+                }
+                // @RequestParam("q") / @RequestParam(name = "q") / plain @RequestParam String q
+                Matcher name = ANNOTATION_NAME.matcher(rp.group(1) != null ? rp.group(1) : "");
+                params.add(name.find() ? name.group(1) : rp.group(3));
+            }
+            endpoints.computeIfAbsent(endpoint, k -> new ArrayList<>()).addAll(params);
+        }
+        return endpoints;
+    }
+
     /**
      * Heuristic: treat @RequestMapping lines before 'class' as class-level.
      */
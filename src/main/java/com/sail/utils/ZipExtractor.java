@@ -8,6 +8,11 @@ import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 @Component
 public class ZipExtractor {
@@ -45,5 +50,35 @@ public class ZipExtractor {
             return extractZip(fis, extractToPath);
         }
     }
-}
 
+    /**
+     * Rewrites the jar/zip with an extra top-level entry (replacing any entry of the same name).
+     */
+    public void addEntry(File archive, String entryName, Path content) throws IOException {
+        Path rewritten = Paths.get(archive.getAbsolutePath() + ".tmp");
+
+        try (ZipFile source = new ZipFile(archive);
+             OutputStream out = Files.newOutputStream(rewritten);
+             ZipOutputStream zip = new ZipOutputStream(out)) {
+
+            Enumeration<? extends ZipEntry> entries = source.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.getName().equals(entryName)) {
+                    continue;
+                }
+                zip.putNextEntry(new ZipEntry(entry.getName()));
+                try (InputStream in = source.getInputStream(entry)) {
+                    in.transferTo(zip);
+                }
+                zip.closeEntry();
+            }
+
+            zip.putNextEntry(new ZipEntry(entryName));
+            Files.copy(content, zip);
+            zip.closeEntry();
+        }
+
+        Files.move(rewritten, archive.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,61 @@
+package com.sail.aws;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AwsRateLimiterTest {
+
+    private final AwsRateLimiter rateLimiter = new AwsRateLimiter("ApiGateway.CreateDeployment=2", 10);
+
+    @AfterEach
+    void shutdown() {
+        rateLimiter.shutdown();
+    }
+
+    @Test
+    void queuedAsyncCallsDoNotBlockTheCaller() throws Exception {
+        AtomicInteger sent = new AtomicInteger();
+        // The bucket holds one second of requests (2); the third call has to wait ~0.5 s
+        for (int i = 0; i < 2; i++) {
+            rateLimiter.whenPermitted("eu-west-1", "ApiGateway", "CreateDeployment",
+                    () -> CompletableFuture.completedFuture(sent.incrementAndGet())).join();
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<Integer> queued = rateLimiter.whenPermitted("eu-west-1", "ApiGateway",
+                "CreateDeployment", () -> CompletableFuture.completedFuture(sent.incrementAndGet()));
+        long returnedAfterMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(returnedAfterMs < 100, "returned after " + returnedAfterMs + " ms");
+        assertFalse(queued.isDone());
+        assertEquals(3, (int) queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void bucketsArePerRegion() {
+        for (int i = 0; i < 2; i++) {
+            rateLimiter.whenPermitted("eu-west-1", "ApiGateway", "CreateDeployment",
+                    () -> CompletableFuture.completedFuture(null)).join();
+        }
+        CompletableFuture<Object> otherRegion = rateLimiter.whenPermitted("us-east-1", "ApiGateway",
+                "CreateDeployment", () -> CompletableFuture.completedFuture(null));
+
+        assertTrue(otherRegion.isDone());
+    }
+
+    @Test
+    void onlyS3TreatsServiceUnavailableAsThrottling() {
+        assertTrue(AwsRateLimiter.isThrottled("Lambda", 429));
+        assertTrue(AwsRateLimiter.isThrottled("S3", 503));
+        assertFalse(AwsRateLimiter.isThrottled("ApiGateway", 503));
+        assertFalse(AwsRateLimiter.isThrottled("S3", 500));
+    }
+}
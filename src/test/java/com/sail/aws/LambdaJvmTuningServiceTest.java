@@ -0,0 +1,72 @@
+package com.sail.aws;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
+import software.amazon.awssdk.services.s3.model.HeadBucketResponse;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static com.sail.aws.LambdaDatabaseConfigurationService.DatabaseType.NONE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LambdaJvmTuningServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void countsTheClassesOfTheShadedJar() throws Exception {
+        File jar = jar(tempDir.resolve("target").resolve("app.jar"), "com/example/Handler.class");
+
+        assertEquals(1, service().tune(jar, NONE, 512).getClassCount());
+    }
+
+    @Test
+    void countsTheDependencyLayerOfALayeredBuild() throws Exception {
+        File jar = jar(tempDir.resolve("target").resolve("app.jar"), "com/example/Handler.class");
+        Path lib = tempDir.resolve("target").resolve("lambda-layer").resolve("java").resolve("lib");
+        jar(lib.resolve("dep-a-1.0.jar"), "a/A.class", "a/B.class");
+        jar(lib.resolve("dep-b-2.0.jar"), "b/C.class");
+
+        assertEquals(4, service().tune(jar, NONE, 512).getClassCount());
+    }
+
+    private LambdaJvmTuningService service() {
+        S3Client s3Client = new S3Client() {
+            @Override
+            public HeadBucketResponse headBucket(HeadBucketRequest request) {
+                return HeadBucketResponse.builder().build();
+            }
+
+            @Override
+            public String serviceName() {
+                return "s3";
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        LambdaCodeStorageService codeStorageService = new LambdaCodeStorageService(s3Client, "eu-west-1",
+                "sail-code", "", true, 10_485_760, 16_777_216, 8_388_608, 1);
+        return new LambdaJvmTuningService(codeStorageService, 15000);
+    }
+
+    private static File jar(Path path, String... classes) throws Exception {
+        Files.createDirectories(path.getParent());
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(path))) {
+            for (String name : classes) {
+                zip.putNextEntry(new ZipEntry(name));
+                zip.write(new byte[]{(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE});
+                zip.closeEntry();
+            }
+        }
+        return path.toFile();
+    }
+}
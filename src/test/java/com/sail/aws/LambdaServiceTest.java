@@ -0,0 +1,186 @@
+package com.sail.aws;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.services.lambda.LambdaClient;
+import software.amazon.awssdk.services.lambda.model.CreateFunctionRequest;
+import software.amazon.awssdk.services.lambda.model.CreateFunctionResponse;
+import software.amazon.awssdk.services.lambda.model.FunctionConfiguration;
+import software.amazon.awssdk.services.lambda.model.GetFunctionRequest;
+import software.amazon.awssdk.services.lambda.model.GetFunctionResponse;
+import software.amazon.awssdk.services.lambda.model.LastUpdateStatus;
+import software.amazon.awssdk.services.lambda.model.ResourceConflictException;
+import software.amazon.awssdk.services.lambda.model.Runtime;
+import software.amazon.awssdk.services.lambda.model.SnapStartApplyOn;
+import software.amazon.awssdk.services.lambda.model.State;
+import software.amazon.awssdk.services.lambda.model.UpdateFunctionCodeRequest;
+import software.amazon.awssdk.services.lambda.model.UpdateFunctionCodeResponse;
+import software.amazon.awssdk.services.lambda.model.UpdateFunctionConfigurationRequest;
+import software.amazon.awssdk.services.lambda.model.UpdateFunctionConfigurationResponse;
+import software.amazon.awssdk.services.lambda.waiters.LambdaWaiter;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
+import software.amazon.awssdk.services.s3.model.HeadBucketResponse;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static com.sail.aws.LambdaDatabaseConfigurationService.DatabaseType.NONE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LambdaServiceTest {
+
+    private static final String FUNCTION_ARN = "arn:aws:lambda:eu-west-1:123456789012:function:sail-app";
+
+    @TempDir
+    Path tempDir;
+
+    private final AwsRateLimiter rateLimiter = new AwsRateLimiter("", 10);
+    private final RecordingLambdaClient lambdaClient = new RecordingLambdaClient();
+
+    @AfterEach
+    void shutdown() {
+        rateLimiter.shutdown();
+    }
+
+    @Test
+    void enablesSnapStartOnPublishedVersionsOfJavaFunctions() throws Exception {
+        LambdaService service = service(true, false);
+
+        service.createFunction("sail-app", jar(), "com.example.Handler", NONE, List.of(), Map.of(),
+                Runtime.JAVA17, 512, 60);
+
+        assertEquals(SnapStartApplyOn.PUBLISHED_VERSIONS, lambdaClient.created.snapStart().applyOn());
+        assertTrue(lambdaClient.created.environment().variables().containsKey("JAVA_TOOL_OPTIONS"));
+        assertTrue(service.usesAlias());
+    }
+
+    @Test
+    void leavesSnapStartOffForNativeFunctions() throws Exception {
+        LambdaService service = service(true, true);
+
+        service.createFunction("sail-app", jar(), "bootstrap", NONE, List.of(), Map.of(),
+                Runtime.PROVIDED_AL2023, 512, 60);
+
+        assertEquals(SnapStartApplyOn.NONE, lambdaClient.created.snapStart().applyOn());
+        // No JVM to tune
+        assertFalse(lambdaClient.created.environment().variables().containsKey("JAVA_TOOL_OPTIONS"));
+    }
+
+    @Test
+    void leavesSnapStartOffWhenDisabled() throws Exception {
+        LambdaService service = service(false, false);
+
+        service.createFunction("sail-app", jar(), "com.example.Handler", NONE, List.of(), Map.of(),
+                Runtime.JAVA17, 512, 60);
+
+        assertEquals(SnapStartApplyOn.NONE, lambdaClient.created.snapStart().applyOn());
+        assertFalse(service.usesAlias());
+    }
+
+    @Test
+    void appliesSnapStartWhenTheFunctionAlreadyExists() throws Exception {
+        lambdaClient.exists = true;
+        LambdaService service = service(true, false);
+
+        service.createFunction("sail-app", jar(), "com.example.Handler", NONE, List.of(), Map.of(),
+                Runtime.JAVA17, 512, 60);
+
+        assertEquals("com.example.Handler", lambdaClient.reconfigured.handler());
+        assertEquals(SnapStartApplyOn.PUBLISHED_VERSIONS, lambdaClient.reconfigured.snapStart().applyOn());
+    }
+
+    private LambdaService service(boolean snapStartEnabled, boolean versionsEnabled) {
+        S3Client s3Client = new S3Client() {
+            @Override
+            public HeadBucketResponse headBucket(HeadBucketRequest request) {
+                return HeadBucketResponse.builder().build();
+            }
+
+            @Override
+            public String serviceName() {
+                return "s3";
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        // Inline code, so nothing is uploaded
+        LambdaCodeStorageService codeStorageService = new LambdaCodeStorageService(s3Client, "eu-west-1",
+                "sail-code", "", true, 10_485_760, 16_777_216, 8_388_608, 1);
+        return new LambdaService(lambdaClient, null, rateLimiter, "eu-west-1", "sail-",
+                "arn:aws:iam::123456789012:role/sail-lambda", "123456789012", codeStorageService,
+                new LambdaDatabaseConfigurationService(), new LambdaJvmTuningService(codeStorageService, 15000),
+                snapStartEnabled, versionsEnabled, 3, 512, 60);
+    }
+
+    private File jar() throws Exception {
+        File jar = tempDir.resolve("app.jar").toFile();
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar.toPath()))) {
+            zip.putNextEntry(new ZipEntry("com/example/Handler.class"));
+            zip.write(new byte[]{(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE});
+            zip.closeEntry();
+        }
+        return jar;
+    }
+
+    private static class RecordingLambdaClient implements LambdaClient {
+        private boolean exists;
+        private CreateFunctionRequest created;
+        private UpdateFunctionConfigurationRequest reconfigured;
+
+        @Override
+        public CreateFunctionResponse createFunction(CreateFunctionRequest request) {
+            if (exists) {
+                throw ResourceConflictException.builder().message("Function already exist").build();
+            }
+            created = request;
+            return CreateFunctionResponse.builder().functionArn(FUNCTION_ARN).build();
+        }
+
+        @Override
+        public UpdateFunctionCodeResponse updateFunctionCode(UpdateFunctionCodeRequest request) {
+            return UpdateFunctionCodeResponse.builder().functionArn(FUNCTION_ARN).build();
+        }
+
+        @Override
+        public LambdaWaiter waiter() {
+            return LambdaWaiter.builder().client(this).build();
+        }
+
+        @Override
+        public GetFunctionResponse getFunction(GetFunctionRequest request) {
+            // Polled by the waiter before the configuration update
+            return GetFunctionResponse.builder()
+                    .configuration(FunctionConfiguration.builder()
+                            .state(State.ACTIVE)
+                            .lastUpdateStatus(LastUpdateStatus.SUCCESSFUL)
+                            .build())
+                    .build();
+        }
+
+        @Override
+        public UpdateFunctionConfigurationResponse updateFunctionConfiguration(UpdateFunctionConfigurationRequest request) {
+            reconfigured = request;
+            return UpdateFunctionConfigurationResponse.builder().functionArn(FUNCTION_ARN).build();
+        }
+
+        @Override
+        public String serviceName() {
+            return "lambda";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.sail.aws;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchClient;
+import software.amazon.awssdk.services.cloudwatch.model.Datapoint;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricStatisticsRequest;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricStatisticsResponse;
+import software.amazon.awssdk.services.cloudwatch.model.Statistic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ProvisionedConcurrencyServiceTest {
+
+    private static final double WEEKS_PER_MONTH = 52.0 / 12;
+
+    private final MetricsClient cloudWatch = new MetricsClient();
+
+    @Test
+    void sizesFromTheHighestHourlyMaximum() {
+        cloudWatch.maxima.addAll(List.of(3.0, 7.0, 2.0));
+
+        ProvisionedConcurrencyService.Sizing sizing = service("MON-FRI", 50).size("sail-app", null, null);
+
+        assertEquals(ProvisionedConcurrencyService.SOURCE_CLOUDWATCH, sizing.getSource());
+        assertEquals(7.0, sizing.getPeakConcurrency());
+        // ceil(7 x 1.2)
+        assertEquals(9, sizing.getConcurrency());
+        assertEquals("ConcurrentExecutions", cloudWatch.request.metricName());
+        assertEquals(List.of(Statistic.MAXIMUM), cloudWatch.request.statistics());
+        assertEquals(3600, (int) cloudWatch.request.period());
+    }
+
+    @Test
+    void sizesFromTheTrafficProfile() {
+        // 20 req/s x 250 ms = 5 in flight
+        ProvisionedConcurrencyService.Sizing sizing = service("MON-FRI", 50).size("sail-app", 20.0, 250.0);
+
+        assertEquals(ProvisionedConcurrencyService.SOURCE_PROFILE, sizing.getSource());
+        assertEquals(5.0, sizing.getPeakConcurrency());
+        assertEquals(6, sizing.getConcurrency());
+        assertNull(cloudWatch.request);
+    }
+
+    @Test
+    void capsAtMaxAndFallsBackToInitial() {
+        cloudWatch.maxima.add(100.0);
+        assertEquals(10, service("MON-FRI", 10).size("sail-app", null, null).getConcurrency());
+
+        cloudWatch.maxima.clear();
+        ProvisionedConcurrencyService.Sizing sizing = service("MON-FRI", 10).size("sail-app", null, null);
+        assertEquals(ProvisionedConcurrencyService.SOURCE_INITIAL, sizing.getSource());
+        assertEquals(2, sizing.getConcurrency());
+    }
+
+    @Test
+    void activeHoursFollowTheScheduledDays() {
+        assertEquals(5 * 10 * WEEKS_PER_MONTH, service("MON-FRI", 50).getActiveHoursPerMonth(), 1e-9);
+        assertEquals(3 * 10 * WEEKS_PER_MONTH, service("MON,WED,FRI", 50).getActiveHoursPerMonth(), 1e-9);
+        // Ranges may wrap around the week
+        assertEquals(4 * 10 * WEEKS_PER_MONTH, service("fri-mon", 50).getActiveHoursPerMonth(), 1e-9);
+        assertThrows(IllegalArgumentException.class, () -> service("MON-FRY", 50).getActiveHoursPerMonth());
+    }
+
+    private ProvisionedConcurrencyService service(String scheduleDays, int maxConcurrency) {
+        return new ProvisionedConcurrencyService(null, null, cloudWatch, ProvisionedConcurrencyService.Mode.SCHEDULED,
+                scheduleDays, 8, 18, "UTC", 1.2, maxConcurrency, 2, 7, 100);
+    }
+
+    private static class MetricsClient implements CloudWatchClient {
+        private final List<Double> maxima = new ArrayList<>();
+        private GetMetricStatisticsRequest request;
+
+        @Override
+        public GetMetricStatisticsResponse getMetricStatistics(GetMetricStatisticsRequest request) {
+            this.request = request;
+            List<Datapoint> datapoints = new ArrayList<>();
+            for (Double maximum : maxima) {
+                datapoints.add(Datapoint.builder().maximum(maximum).build());
+            }
+            return GetMetricStatisticsResponse.builder().datapoints(datapoints).build();
+        }
+
+        @Override
+        public String serviceName() {
+            return "monitoring";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
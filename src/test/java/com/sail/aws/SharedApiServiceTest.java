@@ -0,0 +1,87 @@
+package com.sail.aws;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.apigateway.model.Resource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SharedApiServiceTest {
+
+    private static final List<String> PATHS = List.of("/p/abc", "/p/abc/{proxy+}", "/p/abc/orders/{id}");
+
+    private final RecordingApiGateway apiGateway = new RecordingApiGateway();
+
+    @Test
+    void replacesTheProjectSubtreeBeforeMerging() {
+        apiGateway.resources.addAll(List.of(resource("r0", "/"), resource("r1", "/p"), resource("r2", "/p/abc"),
+                resource("r3", "/p/abc/health"), resource("r4", "/p/other")));
+
+        service(300).mountProjectAsync("/p/abc", "{}", PATHS).join();
+
+        assertEquals(List.of("delete r2", "merge"), apiGateway.calls);
+    }
+
+    @Test
+    void mergesAFirstMountWithoutDeleting() {
+        apiGateway.resources.addAll(List.of(resource("r0", "/"), resource("r1", "/p/abcd")));
+
+        service(300).mountProjectAsync("/p/abc", "{}", PATHS).join();
+
+        assertEquals(List.of("merge"), apiGateway.calls);
+    }
+
+    @Test
+    void failsWithoutChangesWhenTheResourceQuotaWouldBeExceeded() {
+        // "/", "/p" and "/p/other" stay; the project adds 4 more
+        apiGateway.resources.addAll(List.of(resource("r0", "/"), resource("r1", "/p"), resource("r2", "/p/abc"),
+                resource("r4", "/p/other")));
+
+        service(7).mountProjectAsync("/p/abc", "{}", PATHS).join();
+        CompletionException error = assertThrows(CompletionException.class,
+                () -> service(6).mountProjectAsync("/p/abc", "{}", PATHS).join());
+
+        assertTrue(error.getCause() instanceof IllegalStateException);
+        assertEquals(List.of("delete r2", "merge"), apiGateway.calls);
+    }
+
+    private SharedApiService service(int maxResources) {
+        return new SharedApiService(apiGateway, "SHARED", "shared1", "prod", 0, maxResources);
+    }
+
+    private static Resource resource(String id, String path) {
+        return Resource.builder().id(id).path(path).build();
+    }
+
+    private static class RecordingApiGateway extends ApiGatewayService {
+        private final List<Resource> resources = new ArrayList<>();
+        private final List<String> calls = new ArrayList<>();
+
+        RecordingApiGateway() {
+            super(null, null, null, "eu-west-1", "sail-", "0.5", 300);
+        }
+
+        @Override
+        public CompletableFuture<List<Resource>> getResourcesAsync(String restApiId) {
+            return CompletableFuture.completedFuture(resources);
+        }
+
+        @Override
+        public CompletableFuture<Void> deleteResourceAsync(String restApiId, String resourceId) {
+            calls.add("delete " + resourceId);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public CompletableFuture<Void> mergeRestApiAsync(String restApiId, String openApiDefinition) {
+            calls.add("merge");
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}
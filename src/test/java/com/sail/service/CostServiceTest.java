@@ -0,0 +1,144 @@
+package com.sail.service;
+
+import com.sail.aws.ProvisionedConcurrencyService;
+import com.sail.dto.CostResult;
+import com.sail.model.ProjectInfo;
+import com.sail.repository.ProjectInfoRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CostServiceTest {
+
+    private static final double PROVISIONED_PER_GB_SECOND = 0.0000041667;
+
+    @TempDir
+    Path tempDir;
+
+    private final ProjectInfo projectInfo = new ProjectInfo();
+    private long cachingSharedProjects;
+
+    @Test
+    void pricesProvisionedConcurrencyInEveryRegion() {
+        projectInfo.setProjectType("SPRINGBOOT");
+        projectInfo.setProvisionedConcurrency(2);
+        projectInfo.setRegionalProvisionedConcurrency("{\"us-east-1\":3}");
+
+        CostResult result = service(ProvisionedConcurrencyService.Mode.FIXED).calculateCost("p1");
+
+        assertEquals(5, (int) result.getProvisionedConcurrency());
+        assertEquals(5 * 0.5 * 730 * 3600 * PROVISIONED_PER_GB_SECOND, result.getProvisionedConcurrencyCost(), 1e-9);
+    }
+
+    @Test
+    void appliesAnOverrideToEachRegion() {
+        projectInfo.setProjectType("SPRINGBOOT");
+        projectInfo.setProvisionedConcurrency(2);
+        projectInfo.setRegionalProvisionedConcurrency("{\"us-east-1\":3}");
+
+        CostResult result = service(ProvisionedConcurrencyService.Mode.FIXED).calculateCost("p1", 4);
+
+        assertEquals(8, (int) result.getProvisionedConcurrency());
+    }
+
+    @Test
+    void billsScheduledConcurrencyForTheScheduledHoursOnly() {
+        projectInfo.setProjectType("SPRINGBOOT");
+        projectInfo.setProvisionedConcurrency(1);
+
+        CostResult result = service(ProvisionedConcurrencyService.Mode.SCHEDULED).calculateCost("p1");
+
+        double activeHours = 5 * 10 * 52.0 / 12;
+        assertEquals(0.5 * activeHours * 3600 * PROVISIONED_PER_GB_SECOND, result.getProvisionedConcurrencyCost(), 1e-9);
+    }
+
+    @Test
+    void cacheHitsOnlySaveTheCachedRoutesShare() {
+        projectInfo.setProjectType("SPRINGBOOT");
+        projectInfo.setApiCachedRoutes(1);
+        projectInfo.setApiRoutes(4);
+
+        CostResult result = service(ProvisionedConcurrencyService.Mode.OFF).calculateCost("p1");
+
+        // 1M requests x 0.5 hit ratio x 1/4 of the traffic
+        assertEquals(125_000L, (long) result.getLambdaInvocationsSaved());
+        assertEquals(0, (int) result.getProvisionedConcurrency());
+    }
+
+    @Test
+    void pricesTheCacheClusterBySize() {
+        projectInfo.setProjectType("SPRINGBOOT");
+        projectInfo.setApiCachedRoutes(1);
+
+        double cacheCost = service(ProvisionedConcurrencyService.Mode.OFF).calculateCost("p1").getApiGatewayCost() - 3.50;
+
+        // The 1.6 GB cluster's hourly price, not the 0.5 GB one
+        assertEquals(0.038 * 730, cacheCost, 1e-9);
+    }
+
+    @Test
+    void splitsTheSharedCacheClusterAcrossCachingProjects() {
+        projectInfo.setProjectType("SPRINGBOOT");
+        projectInfo.setApiBasePath("/p/p1");
+        projectInfo.setApiCachedRoutes(1);
+        cachingSharedProjects = 4;
+
+        double cacheCost = service(ProvisionedConcurrencyService.Mode.OFF).calculateCost("p1").getApiGatewayCost() - 3.50;
+
+        assertEquals(0.038 * 730 / 4, cacheCost, 1e-9);
+    }
+
+    @Test
+    void staticTransferShrinksWithTheImageBytesSaved() throws Exception {
+        Files.write(tempDir.resolve("hero.png"), new byte[1024 * 1024]);
+        projectInfo.setProjectType("STATIC");
+        projectInfo.setExtractedPath(tempDir.toString());
+        projectInfo.setImageBytesSaved(512 * 1024L);
+
+        CostResult result = service(ProvisionedConcurrencyService.Mode.OFF).calculateCost("p1");
+
+        // Half of the 1 MB site is stored, and half of the 10 GB transfer remains
+        double storage = 1 / 1024.0 * 0.5 * 0.023;
+        double transfer = 10 * 0.5 * 0.09;
+        assertEquals(storage + transfer, result.getS3Cost(), 1e-9);
+    }
+
+    @Test
+    void staticStorageIncludesTheWidthVariants() throws Exception {
+        Files.write(tempDir.resolve("hero.png"), new byte[1024 * 1024]);
+        projectInfo.setProjectType("STATIC");
+        projectInfo.setExtractedPath(tempDir.toString());
+        projectInfo.setImageBytesSaved(512 * 1024L);
+        projectInfo.setImageVariantBytes(256 * 1024L);
+
+        CostResult result = service(ProvisionedConcurrencyService.Mode.OFF).calculateCost("p1");
+
+        // 0.5 MB recompressed image + 0.25 MB of variants stored; only the savings shrink the transfer
+        double storage = 1 / 1024.0 * 0.75 * 0.023;
+        double transfer = 10 * 0.5 * 0.09;
+        assertEquals(storage + transfer, result.getS3Cost(), 1e-9);
+    }
+
+    private CostService service(ProvisionedConcurrencyService.Mode mode) {
+        ProjectInfoRepository repository = (ProjectInfoRepository) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{ProjectInfoRepository.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("findById")) {
+                        return Optional.of(projectInfo);
+                    }
+                    if (method.getName().equals("countByApiBasePathIsNotNullAndApiCachedRoutesGreaterThan")) {
+                        return cachingSharedProjects;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        ProvisionedConcurrencyService provisionedConcurrencyService = new ProvisionedConcurrencyService(null, null,
+                null, mode, "MON-FRI", 8, 18, "UTC", 1.2, 50, 1, 7, 100);
+        return new CostService(repository, provisionedConcurrencyService, 0.20, 3.50, 1.00, 0.023, 0.09,
+                0.0000166667, 100, 512, 0.5, "1.6", "0.5=0.020,1.6=0.038", PROVISIONED_PER_GB_SECOND, 0.0000097222);
+    }
+}
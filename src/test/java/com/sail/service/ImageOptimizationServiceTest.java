@@ -0,0 +1,86 @@
+package com.sail.service;
+
+import com.sail.utils.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImageOptimizationServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ImageOptimizationService service =
+            new ImageOptimizationService(new FileUtils(), true, 0, 0.8f, "480,960", 2);
+
+    @Test
+    void optimizesACopyAndLeavesTheSourcesUntouched() throws Exception {
+        Path site = tempDir.resolve("site");
+        Path hero = writeImage(site.resolve("img/hero.png"), 1200);
+        byte[] original = Files.readAllBytes(hero);
+        Files.writeString(site.resolve("index.html"), "<html><body><img src=\"img/hero.png\" alt=\"Hero\"></body></html>");
+
+        ImageOptimizationService.OptimizationReport report =
+                service.optimizeSite(site.toString(), tempDir.resolve("out").toString());
+
+        assertEquals(tempDir.resolve("out").toString(), report.getSiteRootPath());
+        assertArrayEquals(original, Files.readAllBytes(hero));
+        assertFalse(Files.exists(site.resolve("img/hero-480w.png")));
+        assertTrue(Files.exists(tempDir.resolve("out/img/hero-480w.png")));
+        assertTrue(Files.exists(tempDir.resolve("out/img/hero-960w.png")));
+        assertEquals(2, report.getVariantsCreated());
+        assertEquals(Files.size(tempDir.resolve("out/img/hero-480w.png"))
+                + Files.size(tempDir.resolve("out/img/hero-960w.png")), report.getVariantBytes());
+    }
+
+    @Test
+    void addsTheVariantsAsSrcset() throws Exception {
+        Path site = tempDir.resolve("site");
+        writeImage(site.resolve("img/hero.png"), 1200);
+        Files.writeString(site.resolve("index.html"),
+                "<img src=\"img/hero.png\" alt=\"Hero\"/>\n<img src=\"img/hero.png\" srcset=\"custom.png 2x\">");
+
+        service.optimizeSite(site.toString(), tempDir.resolve("out").toString());
+
+        String html = Files.readString(tempDir.resolve("out/index.html"));
+        assertTrue(html.contains("<img src=\"img/hero.png\" alt=\"Hero\" srcset=\"img/hero-480w.png 480w, "
+                + "img/hero-960w.png 960w, img/hero.png 1200w\" sizes=\"100vw\"/>"), html);
+        assertTrue(html.contains("<img src=\"img/hero.png\" srcset=\"custom.png 2x\">"), html);
+    }
+
+    @Test
+    void treatsFilesNamedLikeVariantsAsSiteImages() throws Exception {
+        Path site = tempDir.resolve("site");
+        writeImage(site.resolve("banner-480w.png"), 600);
+        // Its own 480w variant would overwrite the file above
+        writeImage(site.resolve("banner.png"), 600);
+
+        ImageOptimizationService.OptimizationReport report =
+                service.optimizeSite(site.toString(), tempDir.resolve("out").toString());
+
+        assertEquals(1, report.getVariantsCreated());
+        assertTrue(Files.exists(tempDir.resolve("out/banner-480w-480w.png")));
+        assertEquals(600, ImageIO.read(tempDir.resolve("out/banner-480w.png").toFile()).getWidth());
+    }
+
+    private Path writeImage(Path path, int width) throws Exception {
+        BufferedImage image = new BufferedImage(width, width / 2, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < image.getWidth(); x++) {
+            for (int y = 0; y < image.getHeight(); y++) {
+                image.setRGB(x, y, (x * 31 + y * 17) & 0xFFFFFF);
+            }
+        }
+        Files.createDirectories(path.getParent());
+        ImageIO.write(image, "png", path.toFile());
+        return path;
+    }
+}
@@ -0,0 +1,70 @@
+package com.sail.service;
+
+import com.sail.utils.ZipExtractor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocalInvocationServiceTest {
+
+    // "sh -c <script>" stands in for the JVM; -cp and the probe class become the script's $0 and $1
+    private static final File ARTIFACT = new File("app.jar");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void collectsProbeMetrics() throws Exception {
+        LocalInvocationService service = new LocalInvocationService(new ZipExtractor(), "sh", 10);
+
+        LocalInvocationService.ProbeResult result = service.runProbe("/tmp", ARTIFACT,
+                LambdaAdapterService.PackagingMode.SHADED, "Probe", Map.of(),
+                List.of("-c", "echo SAIL_INIT_MS=42; echo SAIL_PEAK_RSS_KB=1024"), null);
+
+        assertTrue(result.isSuccessful());
+        assertEquals(42, result.getInitMs());
+        assertEquals(1024, result.getPeakRssKb());
+        assertEquals(-1, result.getFirstRequestMs());
+    }
+
+    @Test
+    void timesOutWhenTheProbeHangs() {
+        LocalInvocationService service = new LocalInvocationService(new ZipExtractor(), "sh", 1);
+
+        long start = System.nanoTime();
+        IOException e = assertThrows(IOException.class, () -> service.runProbe("/tmp", ARTIFACT,
+                LambdaAdapterService.PackagingMode.SHADED, "Probe", Map.of(),
+                List.of("-c", "echo SAIL_INIT_MS=42; sleep 30"), null));
+
+        assertTrue(e.getMessage().contains("timed out"));
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 10);
+    }
+
+    @Test
+    void compilesTheProbeOutsideTheProjectSources() throws Exception {
+        Path source = tempDir.resolve("sail-probe").resolve("SailLocalProbe.java");
+        Files.createDirectories(source.getParent());
+        Files.writeString(source, "public class SailLocalProbe { public static void main(String[] args) {"
+                + " System.out.println(\"SAIL_INIT_MS=7\"); } }");
+        String java = ProcessHandle.current().info().command().orElse("java");
+        LocalInvocationService service = new LocalInvocationService(new ZipExtractor(), java, 60);
+
+        LocalInvocationService.ProbeResult result = service.runProbe(tempDir.toString(), ARTIFACT,
+                LambdaAdapterService.PackagingMode.SHADED, "SailLocalProbe", Map.of(), List.of(), null);
+
+        assertTrue(result.isSuccessful());
+        assertEquals(7, result.getInitMs());
+        assertTrue(Files.exists(tempDir.resolve("target/sail-probe/SailLocalProbe.class")));
+    }
+}
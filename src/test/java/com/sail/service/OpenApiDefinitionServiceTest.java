@@ -0,0 +1,91 @@
+package com.sail.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sail.utils.EndpointScanner;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OpenApiDefinitionServiceTest {
+
+    private static final String FUNCTION_ARN = "arn:aws:lambda:eu-west-1:123456789012:function:sail-app";
+
+    @Test
+    void namesSiblingVariablesLikeTheFirstRoute() throws Exception {
+        OpenApiDefinitionService service = service(List.of("/orders/{id}/items", "/orders/{orderId}",
+                "/orders/{orderId}/lines/{lineId}"), Map.of());
+
+        List<String> paths = paths(service.buildLambdaProxyDefinition("api", FUNCTION_ARN, "/project"));
+
+        assertTrue(paths.contains("/orders/{id}/items"), paths.toString());
+        assertTrue(paths.contains("/orders/{id}"), paths.toString());
+        assertTrue(paths.contains("/orders/{id}/lines/{lineId}"), paths.toString());
+        assertFalse(paths.contains("/orders/{orderId}"), paths.toString());
+    }
+
+    @Test
+    void leavesTopLevelVariablesToTheProxyResource() throws Exception {
+        OpenApiDefinitionService service = service(List.of("/{slug}", "/{slug}/comments", "/health"), Map.of());
+
+        List<String> paths = paths(service.buildLambdaProxyDefinition("api", FUNCTION_ARN, "/project", "/p/abc"));
+
+        assertEquals(List.of("/p/abc", "/p/abc/{proxy+}", "/p/abc/health"), paths);
+    }
+
+    @Test
+    void skipsRoutesThatWouldRepeatAVariableName() throws Exception {
+        OpenApiDefinitionService service = service(List.of("/users/{id}", "/users/{userId}/orders/{id}"), Map.of());
+
+        List<String> paths = paths(service.buildLambdaProxyDefinition("api", FUNCTION_ARN, "/project"));
+
+        assertEquals(List.of("/", "/{proxy+}", "/users/{id}"), paths);
+    }
+
+    @Test
+    void cachedRoutesShareTheScannedResourceAndKeyPerCaller() throws Exception {
+        OpenApiDefinitionService service = service(List.of("/orders/{id}"),
+                Map.of("/orders/{orderId}", List.of("expand")));
+
+        OpenApiDefinitionService.ApiDefinition definition =
+                service.buildLambdaProxyDefinition("api", FUNCTION_ARN, "/project");
+
+        assertEquals(List.of("/orders/{id}"), definition.getCachedPaths());
+        JsonNode cacheKeys = new ObjectMapper().readTree(definition.getBody())
+                .at("/paths/~1orders~1{id}/get/x-amazon-apigateway-integration/cacheKeyParameters");
+        List<String> keys = new ArrayList<>();
+        cacheKeys.forEach(key -> keys.add(key.asText()));
+        assertEquals(List.of("method.request.header.Authorization", "method.request.header.Cookie",
+                "method.request.path.id", "method.request.querystring.expand"), keys);
+    }
+
+    private OpenApiDefinitionService service(List<String> endpoints, Map<String, List<String>> getEndpoints) {
+        EndpointScanner scanner = new EndpointScanner() {
+            @Override
+            public List<String> scanEndpoints(String projectPath) {
+                return endpoints;
+            }
+
+            @Override
+            public Map<String, List<String>> scanGetEndpointQueryParameters(String projectPath) {
+                return new LinkedHashMap<>(getEndpoints);
+            }
+        };
+        return new OpenApiDefinitionService(scanner, "eu-west-1", true, !getEndpoints.isEmpty());
+    }
+
+    private List<String> paths(OpenApiDefinitionService.ApiDefinition definition) throws Exception {
+        List<String> paths = new ArrayList<>();
+        Iterator<String> names = new ObjectMapper().readTree(definition.getBody()).get("paths").fieldNames();
+        names.forEachRemaining(paths::add);
+        return paths;
+    }
+}
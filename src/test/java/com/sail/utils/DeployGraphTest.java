@@ -0,0 +1,135 @@
+package com.sail.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeployGraphTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void runsStepsAfterTheirDependencies() {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        DeployGraph graph = new DeployGraph("test", executor);
+        graph.blockingStep("build", List.of(), () -> order.add("build"));
+        graph.blockingStep("function", List.of("build"), () -> order.add("function"));
+        graph.step("api", List.of(), () -> CompletableFuture.runAsync(() -> order.add("api")));
+        graph.blockingStep("permission", List.of("function", "api"), () -> order.add("permission"));
+
+        graph.run();
+
+        assertEquals(4, order.size());
+        assertTrue(order.indexOf("build") < order.indexOf("function"));
+        assertEquals("permission", order.get(3));
+    }
+
+    @Test
+    void runsIndependentStepsConcurrently() {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        DeployGraph graph = new DeployGraph("test", executor);
+        // Each step waits for the other one to start, which only succeeds if they overlap
+        graph.blockingStep("build", List.of(), () -> {
+            bothStarted.countDown();
+            assertTrue(bothStarted.await(5, TimeUnit.SECONDS));
+        });
+        graph.blockingStep("api", List.of(), () -> {
+            bothStarted.countDown();
+            assertTrue(bothStarted.await(5, TimeUnit.SECONDS));
+        });
+
+        graph.run();
+    }
+
+    @Test
+    void startsNoStepBeforeRun() throws InterruptedException {
+        AtomicBoolean ran = new AtomicBoolean();
+        DeployGraph graph = new DeployGraph("test", executor);
+        graph.blockingStep("prepare", List.of(), () -> ran.set(true));
+
+        Thread.sleep(100);
+        assertFalse(ran.get());
+        graph.run();
+        assertTrue(ran.get());
+    }
+
+    @Test
+    void failsWhenAStepThrowsBeforeReturningItsFuture() {
+        DeployGraph graph = new DeployGraph("test", executor);
+        graph.step("api", List.of(), () -> {
+            throw new IllegalStateException("no credentials");
+        });
+
+        RuntimeException e = assertThrows(RuntimeException.class, graph::run);
+        assertTrue(e.getMessage().contains("'api'"));
+        assertTrue(e.getMessage().contains("no credentials"));
+    }
+
+    @Test
+    void doesNotStartDependentsOfAFailedStep() {
+        AtomicBoolean functionRan = new AtomicBoolean();
+        DeployGraph graph = new DeployGraph("test", executor);
+        graph.blockingStep("build", List.of(), () -> {
+            throw new java.io.IOException("mvn failed");
+        });
+        graph.blockingStep("function", List.of("build"), () -> functionRan.set(true));
+
+        RuntimeException e = assertThrows(RuntimeException.class, graph::run);
+        assertTrue(e.getMessage().contains("'build'"));
+        assertFalse(functionRan.get());
+    }
+
+    @Test
+    void failsWhenTheCompletionCallbackFails() {
+        DeployGraph graph = new DeployGraph("test", executor, Set.of(), stepName -> {
+            throw new IllegalStateException("checkpoint not saved");
+        });
+        graph.blockingStep("build", List.of(), () -> { });
+
+        RuntimeException e = assertThrows(RuntimeException.class, graph::run);
+        assertTrue(e.getMessage().contains("checkpoint not saved"));
+    }
+
+    @Test
+    void skipsPreviouslyCompletedStepsUntilTheFirstIncompleteOne() {
+        List<String> ran = Collections.synchronizedList(new ArrayList<>());
+        List<String> completed = Collections.synchronizedList(new ArrayList<>());
+        DeployGraph graph = new DeployGraph("test", executor, Set.of("prepare", "build", "alias"), completed::add);
+        graph.blockingStep("prepare", List.of(), () -> ran.add("prepare"));
+        graph.blockingStep("build", List.of("prepare"), () -> ran.add("build"));
+        graph.blockingStep("function", List.of("build"), () -> ran.add("function"));
+        // Completed before, but its dependency runs again, so it does too
+        graph.blockingStep("alias", List.of("function"), () -> ran.add("alias"));
+
+        graph.run();
+
+        assertEquals(List.of("function", "alias"), ran);
+        assertEquals(List.of("function", "alias"), completed);
+    }
+
+    @Test
+    void rejectsUnknownDependencies() {
+        DeployGraph graph = new DeployGraph("test", executor);
+        assertThrows(IllegalArgumentException.class, () -> graph.blockingStep("function", List.of("build"), () -> { }));
+    }
+}